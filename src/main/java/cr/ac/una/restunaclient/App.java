@@ -1,6 +1,8 @@
 package cr.ac.una.restunaclient;
+import cr.ac.una.restunaclient.service.HttpClientManager;
 import cr.ac.una.restunaclient.util.AppContext;
 import cr.ac.una.restunaclient.util.FlowController;
+import cr.ac.una.restunaclient.util.IoScheduler;
 import javafx.application.Application;
 import javafx.stage.Stage;
 /**
@@ -23,7 +25,12 @@ public void start(Stage stage) {
 }
 }
 
-
+    @Override
+    public void stop() {
+        // Cancela la E/S pendiente y cierra el pool HTTP al cerrar la ventana
+        IoScheduler.getInstance().shutdown();
+        HttpClientManager.shutdown();
+    }
 
     public static void main(String[] args) {
         launch(args);
@@ -3,6 +3,7 @@ package cr.ac.una.restunaclient.controller;
 import cr.ac.una.restunaclient.model.CierreCaja;
 import cr.ac.una.restunaclient.util.FlowController;
 import cr.ac.una.restunaclient.util.AppContext;
+import cr.ac.una.restunaclient.util.IoScheduler;
 import cr.ac.una.restunaclient.service.RestClient;
 
 import com.google.gson.Gson;
@@ -283,9 +284,20 @@ setAbrirCajaVisible(true);  // <- mostrar botón
             mostrarAlerta("Sesión", "No se encontró el usuario en sesión.", Alert.AlertType.ERROR);
             return;
         }
+        String url = "/cierres/usuario/" + usuarioId + "/abierto/totales";
+        RestClient.getAsync(url).whenComplete((json, error) -> {
+            if (error != null) {
+                if (IoScheduler.isCancelacion(error)) return; // se salió de la pantalla
+                error.printStackTrace();
+                mostrarAlerta("Error", "No se pudo cargar la caja actual.\n" + error.getMessage(), Alert.AlertType.ERROR);
+                return;
+            }
+            procesarCierreActual(json);
+        });
+    }
+
+    private void procesarCierreActual(String json) {
         try {
-            String url = "/cierres/usuario/" + usuarioId + "/abierto/totales";
-            String json = RestClient.get(url);
             Map<String, Object> resp = gson.fromJson(json, new TypeToken<Map<String, Object>>(){}.getType());
             Object data = resp.get("data");
 
@@ -309,8 +321,20 @@ setAbrirCajaVisible(true);  // <- mostrar botón
     private void cargarHistorialUsuario() {
         Long usuarioId = getUsuarioId();
         if (usuarioId == null) return;
+        RestClient.getAsync("/cierres/usuario/" + usuarioId).whenComplete((json, error) -> {
+            if (error != null) {
+                if (IoScheduler.isCancelacion(error)) return; // se salió de la pantalla
+                error.printStackTrace();
+                listaCierres.clear();
+                mostrarAlerta("Error", "No se pudo cargar el historial.\n" + error.getMessage(), Alert.AlertType.ERROR);
+                return;
+            }
+            procesarHistorialUsuario(json);
+        });
+    }
+
+    private void procesarHistorialUsuario(String json) {
         try {
-            String json = RestClient.get("/cierres/usuario/" + usuarioId);
             Map<String, Object> resp = gson.fromJson(json, new TypeToken<Map<String, Object>>(){}.getType());
             if (Boolean.TRUE.equals(resp.get("success"))) {
                 List<CierreCaja> lista = gson.fromJson(
@@ -1,6 +1,7 @@
 package cr.ac.una.restunaclient.controller;
 
 import cr.ac.una.restunaclient.model.Usuario;
+import cr.ac.una.restunaclient.service.CatalogService;
 import cr.ac.una.restunaclient.service.RestClient;
 import cr.ac.una.restunaclient.util.AppContext;
 import cr.ac.una.restunaclient.util.FlowController;
@@ -123,6 +124,9 @@ private void onLogin(ActionEvent event) {
                     : txtUsername.getText().trim();
             Mensaje.showSuccess(I18n.get("app.exito"), I18n.get("login.exito", nombreMostrar));
 
+            // Catálogo y menú rápido en segundo plano, para que las pantallas de venta abran de memoria
+            CatalogService.getInstance().precalentar();
+
             // ✅ SOLO cerrar el login (ventana separada). NO navegar aquí.
             loginStage.close();
 
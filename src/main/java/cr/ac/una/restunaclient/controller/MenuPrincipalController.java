@@ -1,10 +1,9 @@
 package cr.ac.una.restunaclient.controller;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import cr.ac.una.restunaclient.model.Salon;
 import cr.ac.una.restunaclient.model.Usuario;
-import cr.ac.una.restunaclient.service.RestClient;
+import cr.ac.una.restunaclient.service.ApiResponse;
+import cr.ac.una.restunaclient.service.SalonService;
 import cr.ac.una.restunaclient.util.AppContext;
 import cr.ac.una.restunaclient.util.FlowController;
 import cr.ac.una.restunaclient.util.I18n;
@@ -275,16 +274,14 @@ public class MenuPrincipalController implements Initializable {
      */
     private boolean existenBarras() {
         try {
-            String jsonResponse = RestClient.get("/salones");
-            Map<String, Object> response = RestClient.parseResponse(jsonResponse);
+            // Solo importan tipo y estado: listado sin imágenes
+            ApiResponse<List<Salon>> response = SalonService.getInstance().listarResumen("/salones");
 
-            if (!Boolean.TRUE.equals(response.get("success"))) {
+            if (!response.isSuccess()) {
                 return false;
             }
 
-            Gson gson = new Gson();
-            String dataJson = gson.toJson(response.get("data"));
-            List<Salon> salones = gson.fromJson(dataJson, new TypeToken<List<Salon>>(){}.getType());
+            List<Salon> salones = response.getData();
 
             if (salones == null || salones.isEmpty()) {
                 return false;
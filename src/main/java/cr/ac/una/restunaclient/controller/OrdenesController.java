@@ -5,27 +5,38 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.reflect.TypeToken;
 import cr.ac.una.restunaclient.model.*;
+import cr.ac.una.restunaclient.service.ApiResponse;
+import cr.ac.una.restunaclient.service.CatalogService;
+import cr.ac.una.restunaclient.service.PricingEngine;
 import cr.ac.una.restunaclient.service.RestClient;
+import cr.ac.una.restunaclient.service.SalonService;
+import cr.ac.una.restunaclient.service.TableStatusFeed;
 import cr.ac.una.restunaclient.util.AppContext;
 import cr.ac.una.restunaclient.util.FlowController;
 import cr.ac.una.restunaclient.util.I18n;
+import cr.ac.una.restunaclient.util.IoScheduler;
+import cr.ac.una.restunaclient.util.ListasObservables;
+import cr.ac.una.restunaclient.util.Log;
 import cr.ac.una.restunaclient.util.Mensaje;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.collections.transformation.SortedList;
 import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.FlowPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 
-import java.math.BigDecimal;
 import java.net.URL;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -58,8 +69,7 @@ public class OrdenesController implements Initializable {
     @FXML private TableColumn<DetalleOrden, String> colPrecio;
     @FXML private TableColumn<DetalleOrden, String> colSubtotal;
     @FXML private Label lblTotal;
-    @FXML private ScrollPane scrollOrdenes;
-    @FXML private VBox vboxOrdenes;
+    @FXML private ListView<Orden> lvOrdenes;
     @FXML private HBox hboxSelectorBarra;
     @FXML private Button btnFacturar;
     
@@ -68,9 +78,13 @@ public class OrdenesController implements Initializable {
     private Salon salonSeleccionado;
     private Salon barraSeleccionada;
     private ObservableList<DetalleOrden> detallesOrden;
+    // Subtotal acumulado de la orden (no se vuelve a sumar en cada cambio)
+    private final PricingEngine totales = new PricingEngine();
     private List<GrupoProducto> listaGrupos;
     private List<Producto> listaProductos;
+    // ⭐ Órdenes activas: modelo que se actualiza por diferencias y una ListView que recicla celdas
     private final ObservableList<Orden> listaOrdenes = FXCollections.observableArrayList();
+    private final Label lblOrdenesVacio = new Label("No hay órdenes activas");
     private boolean modoEdicion = false;
     private String modoOrden = "SALON";
     private final ObservableList<Salon> listaBarrasDisponibles = FXCollections.observableArrayList();
@@ -107,6 +121,7 @@ public class OrdenesController implements Initializable {
         }
         
         configurarTabla();
+        configurarListaOrdenes();
         configurarCombosProductos();
         configurarSelectorBarra();
         
@@ -114,8 +129,7 @@ public class OrdenesController implements Initializable {
             cargarBarras();
         }
         
-        cargarGrupos();
-        cargarProductos();
+        cargarCatalogo();
         cargarOrdenExistente();
         configurarBotonFacturar();
         actualizarHeaderInformativo();
@@ -140,6 +154,7 @@ public class OrdenesController implements Initializable {
         
         detallesOrden = FXCollections.observableArrayList();
         tblDetalles.setItems(detallesOrden);
+        totales.enlazar(detallesOrden);
         
         tblDetalles.setOnMouseClicked(e -> {
             if (e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2) {
@@ -273,19 +288,16 @@ public class OrdenesController implements Initializable {
         try {
             System.out.println("🔄 Cargando barras disponibles...");
 
-            String jsonResponse = RestClient.get("/salones");
-            Map<String, Object> response = RestClient.parseResponse(jsonResponse);
+            // Listado sin imágenes: las barras no las dibujan
+            ApiResponse<List<Salon>> response = SalonService.getInstance().listarResumen("/salones");
 
-            if (!Boolean.TRUE.equals(response.get("success"))) {
-                System.err.println("❌ Error al cargar barras: " + response.get("message"));
+            if (!response.isSuccess()) {
+                System.err.println("❌ Error al cargar barras: " + response.getMessage());
                 listaBarrasDisponibles.clear();
                 return;
             }
 
-            Gson gson = new Gson();
-            String dataJson = gson.toJson(response.get("data"));
-            List<Salon> salones = gson.fromJson(dataJson, new TypeToken<List<Salon>>() {
-            }.getType());
+            List<Salon> salones = response.getData() != null ? response.getData() : List.of();
 
             List<Salon> barras = new ArrayList<>();
             for (Salon salon : salones) {
@@ -327,78 +339,48 @@ public class OrdenesController implements Initializable {
     
     
     
-    private void cargarGrupos() {
-        try {
-            String jsonResponse = RestClient.get("/grupos");
-            Map<String, Object> response = RestClient.parseResponse(jsonResponse);
-            
-            if (Boolean.TRUE.equals(response.get("success"))) {
-                Gson gson = new Gson();
-                String dataJson = gson.toJson(response.get("data"));
-                listaGrupos = gson.fromJson(dataJson, new TypeToken<List<GrupoProducto>>(){}.getType());
-                
-                cmbGrupos.getItems().clear();
-                cmbGrupos.getItems().add(null);
-                cmbGrupos.getItems().addAll(listaGrupos);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            Mensaje.showError("Error", "Error al cargar grupos:\n" + e.getMessage());
-        }
-    }
-
-    private void cargarProductos() {
-    try {
-        System.out.println("📦 Cargando productos desde el backend...");
-        
-        String jsonResponse = RestClient.get("/productos");
-        
-        if (jsonResponse == null || jsonResponse.trim().startsWith("<")) {
-            System.err.println("❌ Respuesta inválida del servidor (HTML o null)");
+    /**
+     * Grupos y productos salen del catálogo compartido; si ya estaba cargado
+     * (otra pantalla lo pidió) no se vuelve a ir al backend.
+     */
+    private void cargarCatalogo() {
+    System.out.println("📦 Cargando catálogo de productos...");
+    listaProductos = new ArrayList<>();
+
+    // La petición corre fuera del hilo de JavaFX; el resultado vuelve a él
+    CatalogService.getInstance().cargarAsync().whenComplete((catalogo, error) -> {
+        if (error != null) {
+            if (IoScheduler.isCancelacion(error)) return; // se salió de la pantalla
+            error.printStackTrace();
+            System.err.println("❌ Excepción al cargar productos: " + error.getMessage());
             listaProductos = new ArrayList<>();
             mostrarProductos(listaProductos);
-            Mensaje.showError("Error", "No se pudieron cargar los productos.");
+            Mensaje.showError("Error", "Error al cargar productos:\n" + error.getMessage());
             return;
         }
-        
-        Map<String, Object> response = RestClient.parseResponse(jsonResponse);
-        
-        if (Boolean.TRUE.equals(response.get("success"))) {
-            Gson gson = new Gson();
-            String dataJson = gson.toJson(response.get("data"));
-            listaProductos = gson.fromJson(dataJson, new TypeToken<List<Producto>>(){}.getType());
-            
-            System.out.println("✅ Productos cargados: " + listaProductos.size());
-            
-            // ⭐ DEBUG: Mostrar cada producto con su grupoId
-            if (!listaProductos.isEmpty()) {
-                System.out.println("📋 Detalle de productos:");
-                for (Producto p : listaProductos) {
-                    System.out.println("   📌 " + p.getNombre() + 
-                        " (ID: " + p.getId() + 
-                        ", GrupoID: " + p.getGrupoId() + 
-                        ", Precio: " + p.getPrecioFormateado() + ")");
-                }
-            }
-            
-            // Mostrar todos los productos inicialmente
-            mostrarProductos(listaProductos);
-            
+        procesarCatalogo(catalogo);
+    });
+}
+
+    private void procesarCatalogo(CatalogService catalogo) {
+        listaGrupos = catalogo.getGrupos();
+        listaProductos = catalogo.getProductos();
+
+        GrupoProducto grupoActual = cmbGrupos.getSelectionModel().getSelectedItem();
+        cmbGrupos.getItems().clear();
+        cmbGrupos.getItems().add(null);
+        cmbGrupos.getItems().addAll(listaGrupos);
+
+        Log.info("Ordenes", "Productos cargados: " + listaProductos.size());
+
+        // Si el usuario ya eligió un grupo mientras cargaba, respetarlo
+        if (grupoActual != null) {
+            cmbGrupos.getSelectionModel().select(grupoActual);
+            filtrarProductosPorGrupo(grupoActual);
         } else {
-            System.err.println("❌ Error en respuesta del servidor: " + response.get("message"));
-            listaProductos = new ArrayList<>();
             mostrarProductos(listaProductos);
-            Mensaje.showWarning("Aviso", String.valueOf(response.get("message")));
         }
-        
-    } catch (Exception e) {
-        e.printStackTrace();
-        System.err.println("❌ Excepción al cargar productos: " + e.getMessage());
-        listaProductos = new ArrayList<>();
-        mostrarProductos(listaProductos);
-        Mensaje.showError("Error", "Error al cargar productos:\n" + e.getMessage());
     }
-}
 
     private void cargarOrdenExistente() {
         if ("BARRA".equals(modoOrden) || mesaSeleccionada == null || !mesaSeleccionada.isOcupada()) {
@@ -621,26 +603,8 @@ public class OrdenesController implements Initializable {
             return;
         }
 
-        // Filtrar productos que pertenecen al grupo seleccionado
-        List<Producto> filtrados = new ArrayList<>();
-
-        System.out.println("🔎 Buscando productos del grupo ID: " + grupo.getId());
-
-        for (Producto p : listaProductos) {
-            // ⭐ VALIDACIÓN: Verificar si el producto pertenece al grupo
-            boolean perteneceAlGrupo = false;
-
-            if (p.getGrupoId() != null && p.getGrupoId().equals(grupo.getId())) {
-                perteneceAlGrupo = true;
-                System.out.println("   ✅ " + p.getNombre() + " (grupoId=" + p.getGrupoId() + ") → pertenece");
-            } else {
-                System.out.println("   ⚪ " + p.getNombre() + " (grupoId=" + p.getGrupoId() + ") → NO pertenece");
-            }
-
-            if (perteneceAlGrupo) {
-                filtrados.add(p);
-            }
-        }
+        // Índice por grupo del catálogo: no se recorre la lista completa
+        List<Producto> filtrados = CatalogService.getInstance().getProductosDeGrupo(grupo.getId());
 
         System.out.println("📊 Productos filtrados: " + filtrados.size() + " de " + listaProductos.size());
 
@@ -659,6 +623,7 @@ public class OrdenesController implements Initializable {
                 detalle.getProducto().getId().equals(producto.getId())) {
                 detalle.setCantidad(detalle.getCantidad() + 1);
                 detalle.calcularSubtotal();
+                totales.lineaCambiada(detalle);
                 tblDetalles.refresh();
                 calcularTotal();
                 return;
@@ -689,6 +654,7 @@ public class OrdenesController implements Initializable {
                 if (nuevaCantidad > 0) {
                     detalle.setCantidad(nuevaCantidad);
                     detalle.calcularSubtotal();
+                    totales.lineaCambiada(detalle);
                     tblDetalles.refresh();
                     calcularTotal();
                 } else {
@@ -719,11 +685,7 @@ public class OrdenesController implements Initializable {
     }
 
     private void calcularTotal() {
-        BigDecimal total = BigDecimal.ZERO;
-        for (DetalleOrden d : detallesOrden) {
-            total = total.add(d.getSubtotal());
-        }
-        lblTotal.setText(String.format("₡%.2f", total));
+        lblTotal.setText(String.format("₡%.2f", totales.getSubtotal()));
     }
 
  
@@ -874,8 +836,15 @@ public class OrdenesController implements Initializable {
                 
                 if (!modoEdicion && "SALON".equals(modoOrden) && mesaSeleccionada != null) {
                     try {
-                        RestClient.post("/mesas/" + mesaSeleccionada.getId() + "/ocupar", null);
-                        System.out.println("✅ Mesa marcada como ocupada");
+                        Map<String, Object> ocupar = RestClient.parseResponse(
+                                RestClient.post("/mesas/" + mesaSeleccionada.getId() + "/ocupar", null));
+                        // Solo se avisa si el backend la ocupó; si no, el feed trae el estado real
+                        if (Boolean.TRUE.equals(ocupar.get("success"))) {
+                            publicarEstadoMesa("OCUPADA");
+                            System.out.println("✅ Mesa marcada como ocupada");
+                        } else {
+                            System.err.println("⚠ No se pudo marcar mesa como ocupada: " + ocupar.get("message"));
+                        }
                     } catch (Exception e) {
                         System.err.println("⚠ No se pudo marcar mesa como ocupada: " + e.getMessage());
                     }
@@ -909,6 +878,16 @@ public class OrdenesController implements Initializable {
     }
 
     
+    /**
+     * Avisa a la vista de salones (si está escuchando) que la mesa cambió,
+     * sin esperar al próximo evento o sondeo del backend.
+     */
+    private void publicarEstadoMesa(String estado) {
+        mesaSeleccionada.setEstado(estado);
+        Long salonId = salonSeleccionado != null ? salonSeleccionado.getId() : mesaSeleccionada.getSalonId();
+        TableStatusFeed.getInstance().publicarLocal(salonId, mesaSeleccionada.getId(), estado);
+    }
+
     private void limpiarFormularioParaNuevaOrden() {
         // Limpiar detalles
         detallesOrden.clear();
@@ -977,14 +956,19 @@ public class OrdenesController implements Initializable {
                         : "Order cancelled successfully");
 
                 if (mesaSeleccionada != null && "SALON".equals(modoOrden)) {
+                    boolean liberada = false;
                     try {
-                        RestClient.post("/salones/mesas/" + mesaSeleccionada.getId() + "/liberar", null);
+                        liberada = Boolean.TRUE.equals(RestClient.parseResponse(RestClient.post(
+                                "/salones/mesas/" + mesaSeleccionada.getId() + "/liberar", null)).get("success"));
                     } catch (Exception ignore) {
                     }
                     try {
-                        RestClient.post("/mesas/" + mesaSeleccionada.getId() + "/liberar", null);
+                        liberada |= Boolean.TRUE.equals(RestClient.parseResponse(RestClient.post(
+                                "/mesas/" + mesaSeleccionada.getId() + "/liberar", null)).get("success"));
                     } catch (Exception ignore) {
                     }
+                    // Solo se avisa si el backend la liberó; si no, el feed trae el estado real
+                    if (liberada) publicarEstadoMesa("LIBRE");
                 }
 
                 // ⭐ CAMBIO: NO salir, solo limpiar
@@ -1136,84 +1120,137 @@ public class OrdenesController implements Initializable {
     }
 
     private void cargarListaOrdenes() {
-        try {
-            String jsonResponse = RestClient.get("/ordenes/activas");
-            
-            if (jsonResponse == null || jsonResponse.trim().startsWith("<")) {
-                vboxOrdenes.getChildren().setAll(new Label("No hay órdenes activas."));
+        RestClient.<List<Orden>>getTypedAsync("/ordenes/activas", new TypeToken<List<Orden>>() {}.getType(), gson)
+                .whenComplete((response, error) -> {
+            if (error != null) {
+                if (IoScheduler.isCancelacion(error)) return; // se salió de la pantalla
+                error.printStackTrace();
+                mostrarListaOrdenesVacia("Error al cargar órdenes.");
                 return;
             }
-            
-            Map<String, Object> response = RestClient.parseResponse(jsonResponse);
-            
-            if (!Boolean.TRUE.equals(response.get("success"))) {
-                vboxOrdenes.getChildren().setAll(new Label("No hay órdenes activas."));
+            procesarListaOrdenes(response);
+        });
+    }
+
+    private void procesarListaOrdenes(ApiResponse<List<Orden>> response) {
+        try {
+            if (response.isRaw() || !response.isSuccess()) {
+                mostrarListaOrdenesVacia("No hay órdenes activas.");
                 return;
             }
             
-            String dataJson = gson.toJson(response.get("data"));
-            List<Orden> ordenes = gson.fromJson(dataJson, new TypeToken<List<Orden>>() {}.getType());
-            if (ordenes == null) ordenes = Collections.emptyList();
-            
-            ordenes.sort((a, b) -> {
-                LocalDateTime ta = a.getFechaHora();
-                LocalDateTime tb = b.getFechaHora();
-                if (ta != null && tb != null) {
-                    return tb.compareTo(ta);
-                }
-                if (a.getId() != null && b.getId() != null) {
-                    return Long.compare(b.getId(), a.getId());
-                }
-                return 0;
-            });
+            List<Orden> ordenes = response.getData();
+            if (ordenes == null) ordenes = new ArrayList<>();
             
-            listaOrdenes.setAll(ordenes);
-            mostrarOrdenesEnLista();
+            lblOrdenesVacio.setText("No hay órdenes activas");
+            int cambios = ListasObservables.sincronizar(listaOrdenes, ordenes, Orden::getId, OrdenesController::mismaTarjeta);
+            Log.debug("Ordenes", () -> "Lista de órdenes: " + listaOrdenes.size() + " activas, " + cambios + " cambios");
         } catch (Exception e) {
             e.printStackTrace();
-            vboxOrdenes.getChildren().setAll(new Label("Error al cargar órdenes."));
+            mostrarListaOrdenesVacia("Error al cargar órdenes.");
         }
     }
 
-    private void mostrarOrdenesEnLista() {
-        vboxOrdenes.getChildren().clear();
-        
-        if (listaOrdenes.isEmpty()) {
-            Label lblVacio = new Label("No hay órdenes activas");
-            lblVacio.setStyle("-fx-text-fill: #999; -fx-font-size: 13px;");
-            vboxOrdenes.getChildren().add(lblVacio);
-            return;
+    private void mostrarListaOrdenesVacia(String mensaje) {
+        listaOrdenes.clear();
+        lblOrdenesVacio.setText(mensaje);
+    }
+
+    // ⭐ Tarjetas de órdenes: estilos constantes y manejadores compartidos por todas
+    private static final String ESTILO_TARJETA_ORDEN = "-fx-background-color: #FFF8F0; -fx-background-radius: 8; "
+        + "-fx-padding: 10; -fx-border-color: #FF7A00; -fx-border-radius: 8; -fx-cursor: hand;";
+    private static final String ESTILO_TARJETA_ORDEN_HOVER = "-fx-background-color: #FFEBD2; -fx-background-radius: 8; "
+        + "-fx-padding: 10; -fx-border-color: #FF7A00; -fx-border-radius: 8; -fx-cursor: hand;";
+    private static final String ESTILO_UBICACION_ORDEN = "-fx-font-weight: bold; -fx-text-fill: #333;";
+    private static final String ESTILO_ESTADO_ORDEN = "-fx-text-fill: #666; -fx-font-size: 12px;";
+    private static final String ESTILO_CELDA_ORDEN = "-fx-background-color: transparent; -fx-padding: 0 0 8 0;";
+    private static final DateTimeFormatter FMT_TARJETA_ORDEN = DateTimeFormatter.ofPattern("dd/MM HH:mm");
+
+    /** Más recientes primero; sin fecha, por id descendente. */
+    private static final Comparator<Orden> ORDEN_RECIENTES = (a, b) -> {
+        LocalDateTime ta = a.getFechaHora();
+        LocalDateTime tb = b.getFechaHora();
+        if (ta != null && tb != null) {
+            return tb.compareTo(ta);
         }
-        
-        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("dd/MM HH:mm");
-        
-        for (Orden o : listaOrdenes) {
-            VBox card = new VBox(4);
-            card.setStyle("-fx-background-color: #FFF8F0; -fx-background-radius: 8; "
-                + "-fx-padding: 10; -fx-border-color: #FF7A00; "
-                + "-fx-border-radius: 8; -fx-cursor: hand;");
-            card.setOnMouseEntered(e -> card.setStyle("-fx-background-color: #FFEBD2; -fx-background-radius: 8; "
-                + "-fx-padding: 10; -fx-border-color: #FF7A00; -fx-border-radius: 8; -fx-cursor: hand;"));
-            card.setOnMouseExited(e -> card.setStyle("-fx-background-color: #FFF8F0; -fx-background-radius: 8; "
-                + "-fx-padding: 10; -fx-border-color: #FF7A00; -fx-border-radius: 8; -fx-cursor: hand;"));
-            
-            Label lblUbicacion = new Label("🪑 " + formatearUbicacion(o));
-            lblUbicacion.setStyle("-fx-font-weight: bold; -fx-text-fill: #333;");
-            
-            String atendidoPor = (o.getUsuario() != null && o.getUsuario().getNombre() != null)
-                ? o.getUsuario().getNombre()
-                : (o.getUsuarioId() != null ? "ID " + o.getUsuarioId() : "—");
-            Label lblAtiende = new Label("👤 Atendido por: " + atendidoPor);
-            
-            String fechaCorta = (o.getFechaHora() != null) ? o.getFechaHora().format(fmt) : "";
-            Label lblEstado = new Label("📅 " + (o.getEstado() != null ? o.getEstado() : "—")
-                + (fechaCorta.isBlank() ? "" : " · " + fechaCorta));
-            lblEstado.setStyle("-fx-text-fill: #666; -fx-font-size: 12px;");
-            
-            card.getChildren().addAll(lblUbicacion, lblAtiende, lblEstado);
-            card.setOnMouseClicked(e -> abrirOrdenExistente(o));
-            vboxOrdenes.getChildren().add(card);
+        if (a.getId() != null && b.getId() != null) {
+            return Long.compare(b.getId(), a.getId());
         }
+        return 0;
+    };
+    
+    private final EventHandler<MouseEvent> hoverTarjetaOrden = e -> ((Node) e.getSource()).setStyle(
+        e.getEventType() == MouseEvent.MOUSE_ENTERED ? ESTILO_TARJETA_ORDEN_HOVER : ESTILO_TARJETA_ORDEN);
+    
+    /**
+     * La ListView solo crea las celdas visibles y las reutiliza al hacer
+     * scroll; cada celda arma su tarjeta una vez y luego solo cambia textos.
+     * El orden lo mantiene una SortedList sobre el modelo.
+     */
+    private void configurarListaOrdenes() {
+        lblOrdenesVacio.setStyle("-fx-text-fill: #999; -fx-font-size: 13px;");
+        lvOrdenes.setPlaceholder(lblOrdenesVacio);
+        lvOrdenes.setFocusTraversable(false);
+        lvOrdenes.setItems(new SortedList<>(listaOrdenes, ORDEN_RECIENTES));
+        lvOrdenes.setCellFactory(lv -> new ListCell<>() {
+            private final Label lblUbicacion = new Label();
+            private final Label lblAtiende = new Label();
+            private final Label lblEstado = new Label();
+            private final VBox card = new VBox(4, lblUbicacion, lblAtiende, lblEstado);
+
+            {
+                card.setStyle(ESTILO_TARJETA_ORDEN);
+                card.setOnMouseEntered(hoverTarjetaOrden);
+                card.setOnMouseExited(hoverTarjetaOrden);
+                lblUbicacion.setStyle(ESTILO_UBICACION_ORDEN);
+                lblEstado.setStyle(ESTILO_ESTADO_ORDEN);
+                setStyle(ESTILO_CELDA_ORDEN);
+                setPrefWidth(0); // que la tarjeta se ajuste al ancho de la lista (sin scroll horizontal)
+                setOnMouseClicked(e -> {
+                    if (!isEmpty() && getItem() != null) abrirOrdenExistente(getItem());
+                });
+            }
+
+            @Override
+            protected void updateItem(Orden o, boolean empty) {
+                super.updateItem(o, empty);
+                if (empty || o == null) {
+                    setGraphic(null);
+                    return;
+                }
+                lblUbicacion.setText("🪑 " + formatearUbicacion(o));
+                
+                String atendidoPor = (o.getUsuario() != null && o.getUsuario().getNombre() != null)
+                    ? o.getUsuario().getNombre()
+                    : (o.getUsuarioId() != null ? "ID " + o.getUsuarioId() : "—");
+                lblAtiende.setText("👤 Atendido por: " + atendidoPor);
+                
+                String fechaCorta = (o.getFechaHora() != null) ? o.getFechaHora().format(FMT_TARJETA_ORDEN) : "";
+                lblEstado.setText("📅 " + (o.getEstado() != null ? o.getEstado() : "—")
+                    + (fechaCorta.isBlank() ? "" : " · " + fechaCorta));
+                card.setStyle(ESTILO_TARJETA_ORDEN);
+                setGraphic(card);
+            }
+        });
+    }
+
+    /** true si la tarjeta de la orden se vería igual (no hace falta repintarla). */
+    private static boolean mismaTarjeta(Orden a, Orden b) {
+        return Objects.equals(a.getVersion(), b.getVersion())
+            && Objects.equals(a.getEstado(), b.getEstado())
+            && Objects.equals(a.getFechaHora(), b.getFechaHora())
+            && Objects.equals(a.getMesaId(), b.getMesaId())
+            && Objects.equals(a.getUsuarioId(), b.getUsuarioId())
+            && Objects.equals(nombreUsuario(a), nombreUsuario(b))
+            && Objects.equals(identificadorMesa(a), identificadorMesa(b));
+    }
+
+    private static String nombreUsuario(Orden o) {
+        return o.getUsuario() != null ? o.getUsuario().getNombre() : null;
+    }
+
+    private static String identificadorMesa(Orden o) {
+        return o.getMesa() != null ? o.getMesa().getIdentificador() + "@" + o.getMesa().getSalonId() : null;
     }
 
     private void abrirOrdenExistente(Orden orden) {
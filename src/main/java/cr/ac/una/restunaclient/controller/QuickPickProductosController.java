@@ -1,8 +1,12 @@
 package cr.ac.una.restunaclient.controller;
 
 import cr.ac.una.restunaclient.model.Producto;
+import cr.ac.una.restunaclient.service.CatalogService;
+import cr.ac.una.restunaclient.service.ProductSearchIndex;
 import cr.ac.una.restunaclient.service.RestClient;
+import cr.ac.una.restunaclient.util.GrillaVirtual;
 import cr.ac.una.restunaclient.util.I18n;
+import cr.ac.una.restunaclient.util.Log;
 import cr.ac.una.restunaclient.util.Mensaje;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
@@ -10,10 +14,10 @@ import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.control.*;
-import javafx.scene.layout.Region;
-import javafx.scene.layout.TilePane;
+import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
@@ -36,7 +40,7 @@ public class QuickPickProductosController implements Initializable {
     @FXML private TextField txtBuscar;
     @FXML private ListView<Map<String,Object>> listGrupos; // cada item: {id, nombre, ventas, productos?}
     @FXML private Label lblGrupoActual;
-    @FXML private TilePane tileProductos;
+    @FXML private StackPane contProductos;
     @FXML private Spinner<Integer> spCantidad;
     @FXML private Button btnAgregar, btnCancelar;
 
@@ -49,8 +53,17 @@ public class QuickPickProductosController implements Initializable {
     // catálogo cargado del grupo actual (para filtrar por texto)
     private List<Producto> productosDelGrupo = new ArrayList<>();
 
-    // cache productos por grupo (si /grupos/ventas ya los trae)
-    private final Map<Long, List<Producto>> productosPorGrupo = new HashMap<>();
+    // búsqueda indexada del grupo actual (null si los productos no vienen del catálogo)
+    private ProductSearchIndex.Sesion busqueda;
+
+    // grilla virtualizada: solo existen las tarjetas visibles y se reciclan al hacer scroll
+    private static final double ANCHO_TARJETA = 220, ALTO_TARJETA = 140, ESPACIO_TARJETAS = 16;
+    private static final String ESTILO_TARJETA = "-fx-background-color: white; -fx-border-color: #E0E0E0; "
+            + "-fx-background-radius: 12; -fx-border-radius: 12; -fx-cursor: hand;";
+    private static final String ESTILO_TARJETA_SELECCIONADA = "-fx-background-color: white; -fx-border-color: #3B82F6; "
+            + "-fx-background-radius: 12; -fx-border-radius: 12; -fx-cursor: hand;";
+    private GrillaVirtual<Producto> grillaProductos;
+
 
     @Override
 public void initialize(URL url, ResourceBundle rb) {
@@ -75,12 +88,14 @@ public void initialize(URL url, ResourceBundle rb) {
         }
     });
 
-    // ===== Tile táctil =====
-    tileProductos.setHgap(16);
-    tileProductos.setVgap(16);
-    tileProductos.setPadding(new Insets(12));
-    tileProductos.setPrefTileWidth(220);
-    tileProductos.setPrefTileHeight(140);
+    // ===== Grilla táctil (virtualizada) =====
+    grillaProductos = new GrillaVirtual<>(ANCHO_TARJETA, ALTO_TARJETA, ESPACIO_TARJETAS,
+            TarjetaProducto::new, (tarjeta, p) -> ((TarjetaProducto) tarjeta).enlazar(p));
+    grillaProductos.setOnTarjeta(this::seleccionarProducto);
+    Label vacio = new Label(I18n.isSpanish() ? "Sin productos" : "No products");
+    vacio.setStyle("-fx-text-fill: #888; -fx-font-size: 14px;");
+    grillaProductos.setPlaceholder(vacio);
+    contProductos.getChildren().setAll(grillaProductos);
 
     cargarGruposOrdenados();
     configurarEventos();
@@ -111,27 +126,18 @@ private void cargarProductosDesdeItemSeleccionado(Map<String,Object> item) {
     lblGrupoActual.setText(String.valueOf(item.getOrDefault("nombre", "—")));
     Long grupoId = parseLong(item.get("id"));
 
-    // 1) Intentar con los productos embebidos del endpoint /grupos/ventas
-    List<Producto> productos = extraerProductos(item.get("productos"));
+    // 1) Catálogo compartido: ya indexado por grupo y ordenado por ventas
+    List<Producto> productos = productosDeCatalogo(grupoId);
+    busqueda = productos.isEmpty() ? null
+            : CatalogService.getInstance().getBuscador().nuevaSesion(productos);
 
-    // 2) Fallback: si vienen vacíos, pedirlos al WS por grupo (endpoint común)
-    if (productos.isEmpty() && grupoId != null) {
-        try {
-            // Usa el que tengas implementado: prueba primero /productos?grupoId=
-            String res = RestClient.get("/productos?grupoId=" + grupoId);
-            Map<String,Object> body = RestClient.parseResponse(res);
-            if (Boolean.TRUE.equals(body.get("success"))) {
-                String dataJson = gson.toJson(body.get("data"));
-                productos = gson.fromJson(dataJson, new com.google.gson.reflect.TypeToken<List<Producto>>(){}.getType());
-            }
-        } catch (Exception ignored) {}
+    // 2) Fallback: productos embebidos del endpoint /grupos/ventas
+    if (productos.isEmpty()) {
+        productos = safe(extraerProductos(item.get("productos"))).stream()
+                .sorted((p1,p2) -> Long.compare(getVentas(p2), getVentas(p1)))
+                .collect(Collectors.toList());
     }
 
-    // Orden por ventas desc (si no hay totalVentas, queda 0)
-    productos = safe(productos).stream()
-            .sorted((p1,p2) -> Long.compare(getVentas(p2), getVentas(p1)))
-            .collect(Collectors.toList());
-
     productosDelGrupo = productos;
     renderProductosFiltrados(txtBuscar.getText());
 
@@ -176,45 +182,50 @@ private List<Producto> extraerProductos(Object prodsObj) {
 
     /* === REST helpers (ajusta endpoints según tu WS) ====================== */
 
+    /**
+     * Grupos y productos salen de la foto de {@link CatalogService} (precargada
+     * tras el login): al abrir y al tocar un grupo no hay peticiones. Si aún
+     * no hay catálogo, se precarga en segundo plano y se pinta al llegar.
+     */
     private void cargarGruposOrdenados() {
-    try {
-        String res = RestClient.get("/grupos/ventas");
-        Map<String,Object> body = RestClient.parseResponse(res);
-
-        List<Map<String,Object>> grupos = new ArrayList<>();
-        if (Boolean.TRUE.equals(body.get("success"))) {
-            String dataJson = gson.toJson(body.get("data"));
-            Type t = new TypeToken<List<Map<String,Object>>>(){}.getType();
-            grupos = gson.fromJson(dataJson, t);
+        CatalogService catalogo = CatalogService.getInstance();
+        if (catalogo.isCargado() && !catalogo.getGruposPorVentas().isEmpty()) {
+            mostrarGrupos(catalogo.getGruposPorVentas());
+            catalogo.refrescarSiVencido();
+            return;
         }
 
-        // ⚠️ Orden por totalVentasGrupo (así lo devuelve el WS)
-        grupos = safe(grupos).stream()
-                .sorted((a,b) -> Long.compare(
-                        parseLong(b.get("totalVentasGrupo")),
-                        parseLong(a.get("totalVentasGrupo"))))
-                .collect(Collectors.toList());
+        lblGrupoActual.setText(I18n.isSpanish() ? "Cargando…" : "Loading…");
+        catalogo.precalentar().whenComplete((c, error) -> {
+            if (listGrupos.getScene() == null) return; // ya se cerró la ventana
+            if (error != null || catalogo.getGruposPorVentas().isEmpty()) {
+                if (error != null) Log.warn("QuickPick", "Catálogo no disponible: " + error.getMessage());
+                Mensaje.showError("Grupos", "No fue posible cargar los grupos.");
+                lblGrupoActual.setText("—");
+                return;
+            }
+            mostrarGrupos(catalogo.getGruposPorVentas());
+        });
+    }
 
+    private void mostrarGrupos(List<Map<String,Object>> grupos) {
         listGrupos.getItems().setAll(grupos);
         if (!grupos.isEmpty()) {
             listGrupos.getSelectionModel().select(0); // dispara el listener y pinta productos
         }
-    } catch (Exception e) {
-        e.printStackTrace();
-        Mensaje.showError("Grupos", "No fue posible cargar los grupos.");
     }
-}
 
     private void cargarProductosDesdeGrupoSeleccion(Map<String,Object> grupoItem, Long grupoId) {
-        productosDelGrupo.clear();
-        tileProductos.getChildren().clear();
+        productosDelGrupo = List.of();
+        grillaProductos.setItems(List.of());
         productoSeleccionado = null;
         if (grupoId == null) return;
 
-        // 1) Si ya tenemos productos del backend en cache, úsalo
-        List<Producto> cache = productosPorGrupo.get(grupoId);
-        if (cache != null && !cache.isEmpty()) {
+        // 1) Si el catálogo compartido ya tiene el grupo, úsalo
+        List<Producto> cache = productosDeCatalogo(grupoId);
+        if (!cache.isEmpty()) {
             productosDelGrupo = cache;
+            busqueda = CatalogService.getInstance().getBuscador().nuevaSesion(cache);
             renderProductosFiltrados(txtBuscar.getText());
             return;
         }
@@ -224,8 +235,9 @@ private List<Producto> extraerProductos(Object prodsObj) {
     }
 
     private void cargarProductosDelGrupoOrdenados(Long grupoId) {
-        productosDelGrupo.clear();
-        tileProductos.getChildren().clear();
+        productosDelGrupo = List.of();
+        busqueda = null;
+        grillaProductos.setItems(List.of());
         productoSeleccionado = null;
 
         if (grupoId == null) return;
@@ -253,68 +265,75 @@ private List<Producto> extraerProductos(Object prodsObj) {
         }
     }
 
+    /**
+     * Productos del grupo desde la foto en memoria de {@link CatalogService},
+     * ya ordenados por ventas (vista sin copia). No bloquea: si el catálogo
+     * venció se refresca en segundo plano para el próximo toque.
+     */
+    private List<Producto> productosDeCatalogo(Long grupoId) {
+        if (grupoId == null) return List.of();
+        CatalogService catalogo = CatalogService.getInstance();
+        catalogo.refrescarSiVencido();
+        return catalogo.getProductosDeGrupoPorVentas(grupoId);
+    }
+
     /* === UI render ======================================================== */
 
     private void renderProductosFiltrados(String filtro) {
-        tileProductos.getChildren().clear();
-
-        String f = (filtro == null ? "" : filtro.trim().toLowerCase());
-        List<Producto> lista = productosDelGrupo.stream()
-                .filter(p -> f.isBlank() || matches(p, f))
-                .collect(Collectors.toList());
-
-        for (Producto p : lista) {
-            tileProductos.getChildren().add(crearBotonProducto(p));
+        List<Producto> lista;
+        if (busqueda != null) {
+            // Índice del catálogo: sin tildes, rankeado y acotando mientras se teclea
+            lista = busqueda.buscar(filtro);
+        } else {
+            String f = (filtro == null ? "" : filtro.trim().toLowerCase());
+            lista = productosDelGrupo.stream()
+                    .filter(p -> f.isBlank() || matches(p, f))
+                    .collect(Collectors.toList());
         }
-        
-        if (tileProductos.getChildren().isEmpty()) {
-    Label vacio = new Label(I18n.isSpanish() ? "Sin productos" : "No products");
-    vacio.setStyle("-fx-text-fill: #888; -fx-font-size: 14px;");
-    tileProductos.getChildren().add(vacio);
-}
-    }
-
-    private Region crearBotonProducto(Producto p) {
-    String nombre = (p.getNombre() != null ? p.getNombre() : I18n.get("facturacion.producto"));
-    String precio = (p.getPrecio() != null ? p.getPrecio().toPlainString() : "0");
-
-    VBox card = new VBox(8);
-    card.setAlignment(Pos.CENTER);
-    card.setPadding(new Insets(14));
-    card.setPrefSize(220, 140); // tamaño táctil
-    card.setStyle("""
-        -fx-background-color: white;
-        -fx-border-color: #E0E0E0;
-        -fx-background-radius: 12;
-        -fx-border-radius: 12;
-        -fx-cursor: hand;
-    """);
 
-    Label emoji = new Label("🍽");
-    emoji.setStyle("-fx-font-size: 22px;");
-
-    Label lblNombre = new Label(nombre);
-    lblNombre.setStyle("-fx-font-size: 15px; -fx-font-weight: 700; -fx-text-fill: #333;");
-    lblNombre.setWrapText(true);
-    lblNombre.setMaxWidth(200);
-
-    Label lblPrecio = new Label("₡" + precio);
-    lblPrecio.setStyle("-fx-font-size: 13px; -fx-text-fill: #555;");
-
-    Label lblVentas = new Label("Ventas: " + getVentas(p));
-    lblVentas.setStyle("-fx-font-size: 12px; -fx-text-fill: #888;");
+        // Solo se reparten los datos: las tarjetas visibles se reutilizan
+        grillaProductos.setItems(lista);
+    }
 
-    card.getChildren().addAll(emoji, lblNombre, lblPrecio, lblVentas);
+    private void seleccionarProducto(Producto p) {
+        this.productoSeleccionado = p;
+        grillaProductos.refrescar();
+    }
 
-    card.setOnMouseClicked(ev -> selectProductoCard(card, p));
-    return card;
-}
+    /**
+     * Tarjeta de producto reciclable: se arma una vez y {@link #enlazar}
+     * solo cambia textos y el borde de selección.
+     */
+    private final class TarjetaProducto extends VBox {
+        private final Label lblNombre = new Label();
+        private final Label lblPrecio = new Label();
+        private final Label lblVentas = new Label();
+
+        TarjetaProducto() {
+            super(8);
+            setAlignment(Pos.CENTER);
+            setPadding(new Insets(14));
+            setStyle(ESTILO_TARJETA);
+            setCache(true); // se mueve como bitmap al hacer scroll en terminales lentas
+
+            Label emoji = new Label("🍽");
+            emoji.setStyle("-fx-font-size: 22px;");
+
+            lblNombre.setStyle("-fx-font-size: 15px; -fx-font-weight: 700; -fx-text-fill: #333;");
+            lblNombre.setWrapText(true);
+            lblNombre.setMaxWidth(200);
+            lblPrecio.setStyle("-fx-font-size: 13px; -fx-text-fill: #555;");
+            lblVentas.setStyle("-fx-font-size: 12px; -fx-text-fill: #888;");
+
+            getChildren().addAll(emoji, lblNombre, lblPrecio, lblVentas);
+        }
 
-    private void selectProductoCard(VBox card, Producto p) {
-        tileProductos.getChildren().forEach(n ->
-                n.setStyle(n.getStyle().replace("-fx-border-color: #3B82F6;", "-fx-border-color: #E0E0E0;")));
-        card.setStyle(card.getStyle().replace("-fx-border-color: #E0E0E0;", "-fx-border-color: #3B82F6;"));
-        this.productoSeleccionado = p;
+        void enlazar(Producto p) {
+            lblNombre.setText(p.getNombre() != null ? p.getNombre() : I18n.get("facturacion.producto"));
+            lblPrecio.setText("₡" + (p.getPrecio() != null ? p.getPrecio().toPlainString() : "0"));
+            lblVentas.setText("Ventas: " + getVentas(p));
+            setStyle(p == productoSeleccionado ? ESTILO_TARJETA_SELECCIONADA : ESTILO_TARJETA);
+        }
     }
 
     /* === Acciones ========================================================= */
@@ -362,6 +381,7 @@ private List<Producto> extraerProductos(Object prodsObj) {
     }
 
     private long parseLong(Object o) {
+        if (o instanceof Number n) return n.longValue(); // Gson entrega los números de un Map como Double
         try { return Long.parseLong(String.valueOf(o)); } catch (Exception e) { return 0L; }
     }
 
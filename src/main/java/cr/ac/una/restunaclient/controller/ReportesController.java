@@ -1,18 +1,20 @@
 package cr.ac.una.restunaclient.controller;
 
 import cr.ac.una.restunaclient.service.ReportesService;
+import cr.ac.una.restunaclient.service.RestClient;
 import cr.ac.una.restunaclient.util.AppContext;
 import cr.ac.una.restunaclient.util.FlowController;
 import cr.ac.una.restunaclient.util.Mensaje;
 import cr.ac.una.restunaclient.util.PdfPrinter; // <— nuevo
 import cr.ac.una.restunaclient.util.I18n;
+import cr.ac.una.restunaclient.util.IoScheduler;
+import cr.ac.una.restunaclient.util.Log;
 
 
 
 import javafx.application.Platform;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.FXCollections;
-import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.scene.Node;
 import javafx.scene.control.*;
@@ -21,6 +23,7 @@ import javafx.scene.layout.VBox;
 import java.io.File;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class ReportesController {
     
@@ -102,6 +105,7 @@ public class ReportesController {
         setVisibleManaged(formCierres, false);
 
         reportesService = new ReportesService();
+        precargarTablas();
 
         // Si tienes un endpoint para cajeros, aquí podrías llenarlo; de momento vacío.
         // cargarCajerosAsync();
@@ -275,6 +279,35 @@ if (facturasComboEstado != null) {
         FlowController.getInstance().goHomeWithFade();
     }
 
+    // ---------------------- PRECARGA ----------------------
+
+    private static final List<String> COLS_FACTURAS = List.of("id","fecha","estado","subtotal","impuestoVenta","impuestoServicio","descuento","total","usuario","cliente","ordenId");
+    private static final List<String> COLS_PRODUCTOS = List.of("id","nombre","nombreCorto","grupo","precio","totalVentas","estado");
+
+    /**
+     * Llena las tablas de facturas y productos con el rango por defecto al
+     * abrir la pantalla; las dos consultas viajan a la vez y quedan en la
+     * caché del servicio para el primer "Generar".
+     */
+    private void precargarTablas() {
+        if (facturasDateInicio == null || productosDateInicio == null) return;
+        LocalDate fDesde = facturasDateInicio.getValue(), fHasta = facturasDateFin.getValue();
+        LocalDate pDesde = productosDateInicio.getValue(), pHasta = productosDateFin.getValue();
+        Integer top = parseTop(getValue(productosComboTop));
+
+        Map<String, ReportesService.Consulta<List<Map<String, Object>>>> consultas = new LinkedHashMap<>();
+        consultas.put("facturas", s -> s.facturas(fDesde, fHasta, null, null));
+        consultas.put("productos", s -> s.productosTop(pDesde, pHasta, null, top));
+        reportesService.enParalelo(consultas).whenComplete((res, ex) -> {
+            if (ex != null) {
+                if (!IoScheduler.isCancelacion(ex)) Log.warn("Reportes", "Precarga de reportes: " + ex.getMessage());
+                return;
+            }
+            renderTable(tableFacturas, res.get("facturas"), COLS_FACTURAS);
+            renderTable(tableProductos, res.get("productos"), COLS_PRODUCTOS);
+        });
+    }
+
     // ---------------------- FACTURAS ----------------------
 
     @FXML private void handleGenerarFacturas() {
@@ -284,7 +317,7 @@ if (facturasComboEstado != null) {
         runAsync(
             () -> reportesService.facturas(facturasDateInicio.getValue(), facturasDateFin.getValue(), null, estadoBD),
             data -> {
-                renderTable(tableFacturas, data, List.of("id","fecha","estado","subtotal","impuestoVenta","impuestoServicio","descuento","total","usuario","cliente","ordenId"));
+                renderTable(tableFacturas, data, COLS_FACTURAS);
                 info("Facturas", "Registros: " + size(data));
             },
             "Consultando facturas…"
@@ -295,8 +328,8 @@ if (facturasComboEstado != null) {
         // OJO: solo funcionará si expusiste /api/reportes/facturas/pdf en el WS
         if (!validarRango(facturasDateInicio, facturasDateFin)) return;
         String estadoBD = mapEstadoFactura(getValue(facturasComboEstado));
-        runAsync(
-            () -> reportesService.facturasPdf(facturasDateInicio.getValue(), facturasDateFin.getValue(), null, estadoBD),
+        runPdf(
+            s -> s.facturasPdf(facturasDateInicio.getValue(), facturasDateFin.getValue(), null, estadoBD),
             this::abrirPdf,
             "Generando PDF (Facturas)…"
         );
@@ -307,8 +340,8 @@ private void handleImprimirFacturas() {
     if (!validarRango(facturasDateInicio, facturasDateFin)) return;
     String estadoBD = mapEstadoFactura(getValue(facturasComboEstado));
 
-    runAsync(
-        () -> reportesService.facturasPdf(
+    runPdf(
+        s -> s.facturasPdf(
                 facturasDateInicio.getValue(),
                 facturasDateFin.getValue(),
                 null,
@@ -338,7 +371,7 @@ private void handleImprimirFacturas() {
                     productosDateInicio.getValue(), productosDateFin.getValue(),
                     null, parseTop(getValue(productosComboTop))),
             data -> {
-                renderTable(tableProductos, data, List.of("id","nombre","nombreCorto","grupo","precio","totalVentas","estado"));
+                renderTable(tableProductos, data, COLS_PRODUCTOS);
                 info("Productos Top", "Registros: " + size(data));
             },
             "Consultando productos…"
@@ -346,8 +379,8 @@ private void handleImprimirFacturas() {
     }
 
     @FXML private void handlePDFProductos() {
-        runAsync(
-            () -> reportesService.productosTopPdf(
+        runPdf(
+            s -> s.productosTopPdf(
                     productosDateInicio.getValue(), productosDateFin.getValue(),
                     null, parseTop(getValue(productosComboTop))),
             this::abrirPdf,
@@ -356,8 +389,8 @@ private void handleImprimirFacturas() {
     }
 
     @FXML private void handleImprimirProductos() {
-        runAsync(
-            () -> reportesService.productosTopPdf(
+        runPdf(
+            s -> s.productosTopPdf(
                     productosDateInicio.getValue(), productosDateFin.getValue(),
                     null, parseTop(getValue(productosComboTop))),
             this::imprimirPdf,
@@ -394,8 +427,8 @@ private void handlePDFCierres() {
         return;
     }
     String cajero = cajeroSeleccionadoONull();
-    runAsync(
-        () -> reportesService.cierrePdf(cierresDateFecha.getValue(), cajero),
+    runPdf(
+        s -> s.cierrePdf(cierresDateFecha.getValue(), cajero),
         this::abrirPdf,
         "Generando PDF (Cierre)…"
     );
@@ -408,8 +441,8 @@ private void handleImprimirCierres() {
         return;
     }
     String cajero = cajeroSeleccionadoONull();
-    runAsync(
-        () -> reportesService.cierrePdf(cierresDateFecha.getValue(), cajero),
+    runPdf(
+        s -> s.cierrePdf(cierresDateFecha.getValue(), cajero),
         this::imprimirPdf,
         "Preparando impresión (Cierre)…"
     );
@@ -471,24 +504,59 @@ private void asegurarCajeroPorDefecto() {
     private <T> void runAsync(java.util.concurrent.Callable<T> work,
                               java.util.function.Consumer<T> onOk,
                               String tituloCarga) {
+        runAsync(work, onOk, tituloCarga, new ProgressIndicator());
+    }
+
+    /**
+     * Como runAsync, pero para descargas de PDF: el indicador muestra el
+     * avance real de la descarga (o queda indeterminado si el servidor no
+     * informa el tamaño).
+     */
+    private void runPdf(ReportesService.Consulta<File> consulta,
+                        java.util.function.Consumer<File> onOk,
+                        String tituloCarga) {
+        ProgressIndicator pi = new ProgressIndicator();
+        // Último avance leído en el hilo de la descarga; se pinta como mucho una vez por pulso
+        java.util.concurrent.atomic.AtomicLong avance = new java.util.concurrent.atomic.AtomicLong(-1);
+        java.util.concurrent.atomic.AtomicBoolean pintura = new java.util.concurrent.atomic.AtomicBoolean();
+        ReportesService.Progreso progreso = (bytes, total) -> {
+            if (total <= 0) return;
+            avance.set(Math.min(1000, bytes * 1000 / total));
+            if (pintura.compareAndSet(false, true)) {
+                Platform.runLater(() -> {
+                    pintura.set(false);
+                    pi.setProgress(avance.get() / 1000.0);
+                });
+            }
+        };
+        runAsync(() -> reportesService.conProgreso(progreso, consulta), onOk, tituloCarga, pi);
+    }
+
+    private <T> void runAsync(java.util.concurrent.Callable<T> work,
+                              java.util.function.Consumer<T> onOk,
+                              String tituloCarga,
+                              ProgressIndicator pi) {
         Dialog<Void> dlg = new Dialog<>();
         dlg.setTitle(tituloCarga);
-        ProgressIndicator pi = new ProgressIndicator();
         dlg.getDialogPane().setContent(pi);
         dlg.getDialogPane().getButtonTypes().add(ButtonType.CANCEL);
 
-        Task<T> task = new Task<>() { @Override protected T call() throws Exception { return work.call(); } };
-        task.setOnSucceeded(ev -> { dlg.close(); try { onOk.accept(task.getValue()); } catch (Exception ignored) {} });
-        task.setOnFailed(ev -> { dlg.close(); Throwable ex = task.getException();
-            err("Error", (ex == null ? "Error desconocido" : ex.getMessage())); });
-
-        dlg.setResultConverter(btn -> { if (btn == ButtonType.CANCEL) task.cancel(true); return null; });
+        // Corre en el IoScheduler (hilo virtual, scope de esta pantalla); vuelve al hilo FX
+        CompletableFuture<T> future = RestClient.callAsync(work);
+        future.whenComplete((value, ex) -> {
+            dlg.close();
+            if (ex != null) {
+                if (!IoScheduler.isCancelacion(ex)) {
+                    err("Error", (ex.getMessage() == null ? "Error desconocido" : ex.getMessage()));
+                }
+                return;
+            }
+            try { onOk.accept(value); } catch (Exception ignored) {}
+        });
 
-        Thread t = new Thread(task, "Reporte-Task");
-        t.setDaemon(true);
-        t.start();
+        dlg.setResultConverter(btn -> { if (btn == ButtonType.CANCEL) future.cancel(true); return null; });
 
-        dlg.showAndWait();
+        if (!future.isDone()) dlg.showAndWait();
     }
 
     private void abrirPdf(File f) {
@@ -6,11 +6,21 @@ import com.google.gson.JsonDeserializer;
 import com.google.gson.reflect.TypeToken;
 import cr.ac.una.restunaclient.model.DetalleOrden;
 import cr.ac.una.restunaclient.model.Orden;
+import cr.ac.una.restunaclient.model.Parametros;
 import cr.ac.una.restunaclient.model.Producto;
+import cr.ac.una.restunaclient.service.ApiResponse;
+import cr.ac.una.restunaclient.service.CheckoutService;
+import cr.ac.una.restunaclient.service.CatalogService;
+import cr.ac.una.restunaclient.service.CustomerSearch;
+import cr.ac.una.restunaclient.service.OrderLineBatcher;
+import cr.ac.una.restunaclient.service.PricingEngine;
+import cr.ac.una.restunaclient.service.ProductSearchIndex;
 import cr.ac.una.restunaclient.service.RestClient;
 import cr.ac.una.restunaclient.util.AppContext;
 import cr.ac.una.restunaclient.util.FlowController;
 import cr.ac.una.restunaclient.util.I18n;
+import cr.ac.una.restunaclient.util.IoScheduler;
+import cr.ac.una.restunaclient.util.Log;
 import cr.ac.una.restunaclient.util.Mensaje;
 import javafx.animation.PauseTransition;
 import javafx.beans.property.SimpleStringProperty;
@@ -36,6 +46,7 @@ import java.net.URL;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import javafx.scene.Parent;
 
 
@@ -206,13 +217,16 @@ public class VentanaVentasController implements Initializable {
     private List<Map<String,Object>> ultimosClientes = Collections.emptyList();
     private final PauseTransition clienteSearchDelay = new PauseTransition(Duration.millis(250));
 
-    // Catálogo productos
-    private final ObservableList<Producto> catalogoProductos = FXCollections.observableArrayList();
+    // Cambios de líneas acumulados; se envían juntos tras una pausa de edición
+    private OrderLineBatcher lotePendiente;
+    private final PauseTransition loteDelay = new PauseTransition(Duration.millis(600));
 
-    // Config negocio
-    private static final BigDecimal IV_PORC       = new BigDecimal("0.13"); // 13%
-    private static final BigDecimal SERV_PORC     = new BigDecimal("0.10"); // 10%
-    private static final BigDecimal DESCUENTO_MAX = new BigDecimal("15");   // 15%
+    // Catálogo productos: vista del catálogo compartido (no se copia)
+    private List<Producto> catalogoProductos = Collections.emptyList();
+
+    // Totales: se mantienen al cambiar las líneas; porcentajes de /parametros
+    private final PricingEngine totales = new PricingEngine();
+    private PricingEngine.Resumen resumenMostrado;
     
     private boolean esVentaDirecta = false;
 
@@ -234,6 +248,8 @@ public class VentanaVentasController implements Initializable {
         colAcciones.setCellValueFactory(d -> new SimpleStringProperty(""));
 
         tblProductos.setItems(lineas);
+        totales.enlazar(lineas);
+        cargarParametros();
 
         tblProductos.getSelectionModel().selectedItemProperty().addListener(
                 (obs, oldSel, newSel) -> updateBotonesEdicion()
@@ -255,6 +271,8 @@ public class VentanaVentasController implements Initializable {
 
         // Autocomplete cliente
         clienteSearchDelay.setOnFinished(e -> buscarYMostrarSugerencias(txtCliente.getText().trim()));
+        CustomerSearch.getInstance().precalentar();
+        loteDelay.setOnFinished(e -> enviarLote());
         txtCliente.focusedProperty().addListener((obs, oldV, newV) -> {
             if (!newV) {
                 menuClientes.hide();
@@ -291,6 +309,7 @@ public class VentanaVentasController implements Initializable {
         lblImpuestoServicio.setText("₡0.00");
         lblDescuento.setText("-₡0.00");
         lblTotal.setText("₡0.00");
+        resumenMostrado = null;
         lblVuelto.setText("₡0.00");
 
         txtDescuento.setText("0");
@@ -299,6 +318,7 @@ public class VentanaVentasController implements Initializable {
         chkImpuestoVentas.setSelected(true);
         chkImpuestoServicio.setSelected(true);
 
+        enviarLote();
         ordenSeleccionada = null;
         esVentaDirecta = false; // ⭐ Reset flag
         updateBotonesEdicion();
@@ -404,22 +424,34 @@ public class VentanaVentasController implements Initializable {
     // ========== NAVEGACIÓN ==========
     @FXML
     private void onVolver(ActionEvent event) {
+        enviarLote(); // corre en el scope global: no se cancela al salir
         FlowController.getInstance().goToView("MenuPrincipal", "RestUNA - Menú", 1000, 560);
     }
 
     // ========== ORDENES ==========
     @FXML
     private void onSeleccionarOrden(ActionEvent event) {
+        // La petición corre fuera del hilo de JavaFX; el diálogo se abre al volver
+        RestClient.<List<Orden>>getTypedAsync("/ordenes/activas", new TypeToken<List<Orden>>(){}.getType(), gson)
+                .whenComplete((res, error) -> {
+            if (error != null) {
+                if (IoScheduler.isCancelacion(error)) return; // se salió de la pantalla
+                error.printStackTrace();
+                Mensaje.showError(I18n.get("app.error"), I18n.get("facturacion.errorCargarListaOrdenes"));
+                return;
+            }
+            mostrarSelectorOrdenes(res);
+        });
+    }
+
+    private void mostrarSelectorOrdenes(ApiResponse<List<Orden>> res) {
         try {
-            String res = RestClient.get("/ordenes/activas");
-            Map<String, Object> body = RestClient.parseResponse(res);
-            if (!Boolean.TRUE.equals(body.get("success"))) {
+            if (!res.isSuccess()) {
                 Mensaje.showWarning(I18n.get("facturacion.titulo"), I18n.get("facturacion.errorCargarOrdenes"));
                 return;
             }
 
-            String data = gson.toJson(body.get("data"));
-            List<Orden> ordenes = gson.fromJson(data, new TypeToken<List<Orden>>(){}.getType());
+            List<Orden> ordenes = res.getData();
             if (ordenes == null || ordenes.isEmpty()) {
                 Mensaje.showInfo(I18n.get("facturacion.titulo"), I18n.get("facturacion.noOrdenesAbiertas"));
                 return;
@@ -439,6 +471,7 @@ public class VentanaVentasController implements Initializable {
             Optional<String> opt = dlg.showAndWait();
             if (opt.isEmpty()) return;
 
+            enviarLote();
             this.ordenSeleccionada = map.get(opt.get());
             cargarDetallesDeOrden(this.ordenSeleccionada.getId());
 
@@ -476,8 +509,23 @@ public class VentanaVentasController implements Initializable {
     }
 
     private void cargarDetallesDeOrden(Long ordenId) {
+        RestClient.getAsync("/ordenes/" + ordenId + "/detalles").whenComplete((res, error) -> {
+            // Si mientras tanto se eligió otra orden, esta respuesta ya no aplica
+            if (ordenSeleccionada == null || !Objects.equals(ordenSeleccionada.getId(), ordenId)) {
+                return;
+            }
+            if (error != null) {
+                if (IoScheduler.isCancelacion(error)) return; // se salió de la pantalla
+                error.printStackTrace();
+                Mensaje.showError(I18n.get("app.error"), I18n.get("facturacion.errorCargarDetallesOrden"));
+                return;
+            }
+            procesarDetallesDeOrden(res);
+        });
+    }
+
+    private void procesarDetallesDeOrden(String res) {
         try {
-            String res = RestClient.get("/ordenes/" + ordenId + "/detalles");
             Map<String, Object> body = RestClient.parseResponse(res);
             if (!Boolean.TRUE.equals(body.get("success"))) {
                 Mensaje.showWarning(I18n.get("facturacion.titulo"), I18n.get("facturacion.errorCargarDetalles"));
@@ -509,64 +557,67 @@ public class VentanaVentasController implements Initializable {
         }
 
         clienteSearchDelay.stop();
+        // Si la caché ya tiene la respuesta se muestra al instante; si no,
+        // se espera a que deje de escribir para ir a la red
+        String term = txtCliente.getText().trim();
+        if (clienteSeleccionadoId == null && !term.isEmpty()) {
+            Optional<List<Map<String, Object>>> local = CustomerSearch.getInstance().buscarLocal(term);
+            if (local.isPresent()) {
+                mostrarSugerencias(local.get());
+                return;
+            }
+        }
         clienteSearchDelay.playFromStart();
     }
 
     private void buscarYMostrarSugerencias(String term) {
-        try {
-            if (term == null || term.isBlank()) {
-                menuClientes.hide();
-                ultimosClientes = Collections.emptyList();
-                return;
-            }
-
-            String res = RestClient.get("/clientes/buscar?q=" + term);
-            Map<String, Object> body = RestClient.parseResponse(res);
-
-            if (!Boolean.TRUE.equals(body.get("success"))) {
-                menuClientes.hide();
-                ultimosClientes = Collections.emptyList();
+        if (term == null || term.isBlank()) {
+            menuClientes.hide();
+            ultimosClientes = Collections.emptyList();
+            return;
+        }
+        CustomerSearch.getInstance().buscar(term).whenComplete((clientes, error) -> {
+            // Si el cajero siguió escribiendo, esta respuesta ya no aplica
+            if (!term.equals(txtCliente.getText().trim())) return;
+            if (error != null) {
+                if (!IoScheduler.isCancelacion(error)) {
+                    Log.warn("Facturacion", "Búsqueda de clientes falló: " + error.getMessage());
+                    menuClientes.hide();
+                }
                 return;
             }
+            mostrarSugerencias(clientes);
+        });
+    }
 
-            String dataJson = gson.toJson(body.get("data"));
-            List<Map<String, Object>> clientes = gson.fromJson(
-                    dataJson,
-                    new TypeToken<List<Map<String, Object>>>(){}.getType()
-            );
+    private void mostrarSugerencias(List<Map<String, Object>> clientes) {
+        ultimosClientes = (clientes != null) ? clientes : Collections.emptyList();
 
-            ultimosClientes = (clientes != null) ? clientes : Collections.emptyList();
+        if (ultimosClientes.isEmpty() || !txtCliente.isFocused() || txtCliente.getScene() == null) {
+            menuClientes.hide();
+            return;
+        }
 
-            if (ultimosClientes.isEmpty()) {
+        List<MenuItem> items = new ArrayList<>();
+        for (Map<String,Object> c : ultimosClientes) {
+            String display = buildClienteDisplay(c);
+            MenuItem mi = new MenuItem(display);
+            mi.setOnAction(evt -> {
+                seleccionarCliente(c);
                 menuClientes.hide();
-                return;
-            }
-
-            List<MenuItem> items = new ArrayList<>();
-            for (Map<String,Object> c : ultimosClientes) {
-                String display = buildClienteDisplay(c);
-                MenuItem mi = new MenuItem(display);
-                mi.setOnAction(evt -> {
-                    seleccionarCliente(c);
-                    menuClientes.hide();
-                });
-                items.add(mi);
-            }
+            });
+            items.add(mi);
+        }
 
-            menuClientes.getItems().setAll(items);
+        menuClientes.getItems().setAll(items);
 
-            Window w = txtCliente.getScene().getWindow();
-            if (!menuClientes.isShowing()) {
-                menuClientes.show(
-                        txtCliente,
-                        w.getX() + txtCliente.localToScene(0,0).getX() + txtCliente.getScene().getX(),
-                        w.getY() + txtCliente.localToScene(0,0).getY() + txtCliente.getScene().getY() + txtCliente.getHeight()
-                );
-            }
-
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            menuClientes.hide();
+        Window w = txtCliente.getScene().getWindow();
+        if (!menuClientes.isShowing()) {
+            menuClientes.show(
+                    txtCliente,
+                    w.getX() + txtCliente.localToScene(0,0).getX() + txtCliente.getScene().getX(),
+                    w.getY() + txtCliente.localToScene(0,0).getY() + txtCliente.getScene().getY() + txtCliente.getHeight()
+            );
         }
     }
 
@@ -603,58 +654,54 @@ public class VentanaVentasController implements Initializable {
 
     @FXML
     private void onBuscarCliente(ActionEvent event) {
-        try {
-            String criterio = txtCliente.getText() != null ? txtCliente.getText().trim() : "";
-            if (criterio.isEmpty()) {
-                Mensaje.showInfo(I18n.get("facturacion.cliente"), I18n.get("facturacion.digiteCriterio"));
-                txtCliente.requestFocus();
-                return;
-            }
+        String criterio = txtCliente.getText() != null ? txtCliente.getText().trim() : "";
+        if (criterio.isEmpty()) {
+            Mensaje.showInfo(I18n.get("facturacion.cliente"), I18n.get("facturacion.digiteCriterio"));
+            txtCliente.requestFocus();
+            return;
+        }
+        clienteSearchDelay.stop();
+        menuClientes.hide();
 
-            String res = RestClient.get("/clientes/buscar?q=" + criterio);
-            Map<String, Object> body = RestClient.parseResponse(res);
-            if (!Boolean.TRUE.equals(body.get("success"))) {
+        // Búsqueda explícita: todas las coincidencias, sin el tope del autocompletado
+        CustomerSearch.getInstance().buscarCompleto(criterio).whenComplete((clientes, error) -> {
+            if (error != null) {
+                if (IoScheduler.isCancelacion(error)) return;
+                Log.warn("Facturacion", "Búsqueda de clientes falló: " + error.getMessage());
                 Mensaje.showWarning(I18n.get("facturacion.cliente"), I18n.get("facturacion.errorConsultarClientes"));
                 return;
             }
+            elegirCliente(clientes);
+        });
+    }
 
-            String dataJson = gson.toJson(body.get("data"));
-            List<Map<String, Object>> clientes = gson.fromJson(
-                    dataJson,
-                    new TypeToken<List<Map<String, Object>>>(){}.getType()
-            );
-
-            if (clientes == null || clientes.isEmpty()) {
-                Mensaje.showInfo(I18n.get("facturacion.cliente"), I18n.get("facturacion.clientesNoEncontrados"));
-                return;
-            }
-
-            if (clientes.size() == 1) {
-                seleccionarCliente(clientes.get(0));
-                return;
-            }
+    private void elegirCliente(List<Map<String, Object>> clientes) {
+        if (clientes == null || clientes.isEmpty()) {
+            Mensaje.showInfo(I18n.get("facturacion.cliente"), I18n.get("facturacion.clientesNoEncontrados"));
+            return;
+        }
 
-            LinkedHashMap<String, Map<String,Object>> opcionesMap = new LinkedHashMap<>();
-            for (Map<String,Object> c : clientes) {
-                opcionesMap.put(buildClienteDisplay(c), c);
-            }
+        if (clientes.size() == 1) {
+            seleccionarCliente(clientes.get(0));
+            return;
+        }
 
-            List<String> opciones = new ArrayList<>(opcionesMap.keySet());
-            ChoiceDialog<String> dlg = new ChoiceDialog<>(opciones.get(0), opciones);
-            dlg.setTitle(I18n.get("facturacion.seleccionarCliente"));
-            dlg.setHeaderText(I18n.get("facturacion.clientesEncontrados"));
-            dlg.setContentText(I18n.get("facturacion.seleccione"));
+        LinkedHashMap<String, Map<String,Object>> opcionesMap = new LinkedHashMap<>();
+        for (Map<String,Object> c : clientes) {
+            opcionesMap.put(buildClienteDisplay(c), c);
+        }
 
-            Optional<String> elegidoOpt = dlg.showAndWait();
-            if (elegidoOpt.isEmpty()) return;
+        List<String> opciones = new ArrayList<>(opcionesMap.keySet());
+        ChoiceDialog<String> dlg = new ChoiceDialog<>(opciones.get(0), opciones);
+        dlg.setTitle(I18n.get("facturacion.seleccionarCliente"));
+        dlg.setHeaderText(I18n.get("facturacion.clientesEncontrados"));
+        dlg.setContentText(I18n.get("facturacion.seleccione"));
 
-            Map<String,Object> clienteSel = opcionesMap.get(elegidoOpt.get());
-            seleccionarCliente(clienteSel);
+        Optional<String> elegidoOpt = dlg.showAndWait();
+        if (elegidoOpt.isEmpty()) return;
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            Mensaje.showError(I18n.get("facturacion.cliente"), I18n.get("facturacion.errorBuscarCliente") + e.getMessage());
-        }
+        Map<String,Object> clienteSel = opcionesMap.get(elegidoOpt.get());
+        seleccionarCliente(clienteSel);
     }
 
     // ========== PRODUCTOS ==========
@@ -697,21 +744,24 @@ public class VentanaVentasController implements Initializable {
             Long productoId = sel.producto().getId();
             int cantidadNueva = sel.cantidad();
 
+            // Se aplica en la tabla ya y se acumula en el lote de la orden
             DetalleOrden detalleExistente = buscarDetalleExistenteEnOrden(productoId);
-            boolean ok;
             if (detalleExistente != null) {
                 int cantTotal = detalleExistente.getCantidad() + cantidadNueva;
-                ok = actualizarDetalleEnBackend(ordenSeleccionada.getId(), detalleExistente.getId(), cantTotal);
+                detalleExistente.setCantidad(cantTotal);
+                totales.lineaCambiada(detalleExistente);
+                if (detalleExistente.getId() != null) {
+                    lote().cambiarCantidad(detalleExistente.getId(), cantTotal);
+                } else {
+                    lote().agregar(productoId, cantidadNueva);
+                }
             } else {
-                ok = agregarDetalleEnBackend(ordenSeleccionada.getId(), productoId, cantidadNueva);
-            }
-
-            if (!ok) {
-                Mensaje.showError(I18n.get("facturacion.productos"), I18n.get("facturacion.errorAplicarProducto"));
-                return;
+                lineas.add(new DetalleOrden(sel.producto(), cantidadNueva));
+                lote().agregar(productoId, cantidadNueva);
             }
+            tblProductos.refresh();
+            programarLote();
 
-            cargarDetallesDeOrden(ordenSeleccionada.getId());
             onCalcularTotales(null);
             Mensaje.showSuccess(I18n.get("facturacion.productos"), I18n.get("facturacion.productoAplicado"));
 
@@ -736,24 +786,6 @@ public class VentanaVentasController implements Initializable {
         return null;
     }
 
-    private boolean actualizarDetalleEnBackend(Long ordenId, Long detalleId, int nuevaCantidad) {
-        try {
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("cantidad", nuevaCantidad);
-
-            String res = RestClient.put(
-                    "/ordenes/" + ordenId + "/detalles/" + detalleId,
-                    payload
-            );
-
-            Map<String, Object> body = RestClient.parseResponse(res);
-            return Boolean.TRUE.equals(body.get("success"));
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
-        }
-    }
-  
     private boolean crearOrdenTemporal() {
         try {
             System.out.println("🔄 Creando orden temporal para venta directa...");
@@ -822,23 +854,8 @@ public class VentanaVentasController implements Initializable {
 
     private void cargarCatalogoProductosDesdeBackend() {
         try {
-            String res = RestClient.get("/productos");
-            Map<String,Object> body = RestClient.parseResponse(res);
-
-            if (!Boolean.TRUE.equals(body.get("success"))) {
-                Mensaje.showWarning(I18n.get("facturacion.productos"), I18n.get("facturacion.errorObtenerProductos"));
-                return;
-            }
-
-            String dataJson = gson.toJson(body.get("data"));
-            List<Producto> prods = gson.fromJson(
-                    dataJson,
-                    new TypeToken<List<Producto>>(){}.getType()
-            );
-
-            catalogoProductos.setAll(
-                    prods != null ? prods : Collections.emptyList()
-            );
+            // Catálogo compartido: si otra pantalla ya lo cargó no hay petición
+            catalogoProductos = CatalogService.getInstance().cargar().getProductos();
         } catch (Exception e) {
             e.printStackTrace();
             Mensaje.showError(I18n.get("facturacion.productos"), I18n.get("facturacion.errorCargarCatalogo") + e.getMessage());
@@ -905,27 +922,9 @@ public class VentanaVentasController implements Initializable {
         final ProductoCantidadSelection[] resultHolder = new ProductoCantidadSelection[1];
         resultHolder[0] = null;
 
-        txtBuscar.textProperty().addListener((obs, oldV, newV) -> {
-            String filtro = (newV != null) ? newV.trim().toLowerCase() : "";
-            filtrada.clear();
-            if (filtro.isBlank()) {
-                filtrada.addAll(catalogoProductos);
-            } else {
-                for (Producto p : catalogoProductos) {
-                    String nombre      = p.getNombre() != null ? p.getNombre().toLowerCase() : "";
-                    String nombreCorto = p.getNombreCorto() != null ? p.getNombreCorto().toLowerCase() : "";
-                    String idStr       = p.getId() != null ? p.getId().toString() : "";
-                    String precioStr   = p.getPrecio() != null ? p.getPrecio().toPlainString() : "";
-
-                    if (nombre.contains(filtro)
-                            || nombreCorto.contains(filtro)
-                            || idStr.contains(filtro)
-                            || precioStr.contains(filtro)) {
-                        filtrada.add(p);
-                    }
-                }
-            }
-        });
+        // Índice prearmado: sin tildes, rankeado y acotando mientras se teclea
+        ProductSearchIndex.Sesion busqueda = CatalogService.getInstance().getBuscador().nuevaSesion(catalogoProductos);
+        txtBuscar.textProperty().addListener((obs, oldV, newV) -> filtrada.setAll(busqueda.buscar(newV)));
 
         tbl.setOnMouseClicked(ev -> {
             if (ev.getClickCount() == 2) {
@@ -973,23 +972,6 @@ public class VentanaVentasController implements Initializable {
         }
     }
 
-    private boolean agregarDetalleEnBackend(Long ordenId, Long productoId, int cantidad) {
-        try {
-            Map<String,Object> payload = new HashMap<>();
-            payload.put("ordenId", ordenId);
-            payload.put("productoId", productoId);
-            payload.put("cantidad", cantidad);
-
-            String res = RestClient.post("/ordenes/" + ordenId + "/detalles", payload);
-            Map<String,Object> body = RestClient.parseResponse(res);
-
-            return Boolean.TRUE.equals(body.get("success"));
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
-        }
-    }
-
     @FXML
     private void onModificarCantidad(ActionEvent event) {
         DetalleOrden seleccionado = tblProductos.getSelectionModel().getSelectedItem();
@@ -1014,19 +996,18 @@ public class VentanaVentasController implements Initializable {
                 return;
             }
 
-            boolean ok = actualizarDetalleEnBackend(
-                ordenSeleccionada.getId(),
-                seleccionado.getId(),
-                nuevaCantidad
-            );
-
-            if (ok) {
-                cargarDetallesDeOrden(ordenSeleccionada.getId());
-                onCalcularTotales(null);
-                Mensaje.showSuccess(I18n.get("facturacion.modificar"), I18n.get("facturacion.cantidadActualizada"));
+            seleccionado.setCantidad(nuevaCantidad);
+            totales.lineaCambiada(seleccionado);
+            if (seleccionado.getId() != null) {
+                lote().cambiarCantidad(seleccionado.getId(), nuevaCantidad);
             } else {
-                Mensaje.showError(I18n.get("app.error"), I18n.get("facturacion.errorActualizarCantidad"));
+                lote().fijarNuevo(seleccionado.getProductoId(), nuevaCantidad); // aún no enviada
             }
+            tblProductos.refresh();
+            programarLote();
+
+            onCalcularTotales(null);
+            Mensaje.showSuccess(I18n.get("facturacion.modificar"), I18n.get("facturacion.cantidadActualizada"));
 
         } catch (NumberFormatException e) {
             Mensaje.showWarning(I18n.get("facturacion.cantidad"), I18n.get("facturacion.ingreseNumeroValido"));
@@ -1057,90 +1038,167 @@ public class VentanaVentasController implements Initializable {
             return;
         }
 
-        try {
-            String res = RestClient.delete(
-                "/ordenes/" + ordenSeleccionada.getId() + "/detalles/" + seleccionado.getId()
-            );
+        if (seleccionado.getId() != null) {
+            lote().eliminar(seleccionado.getId());
+        } else {
+            lote().quitarNuevo(seleccionado.getProductoId()); // nunca llegó al backend
+        }
+        lineas.remove(seleccionado);
+        programarLote();
 
-            Map<String,Object> body = RestClient.parseResponse(res);
-            if (Boolean.TRUE.equals(body.get("success"))) {
-                cargarDetallesDeOrden(ordenSeleccionada.getId());
-                onCalcularTotales(null);
-                Mensaje.showSuccess(I18n.get("facturacion.eliminar"), I18n.get("facturacion.productoEliminado"));
-            } else {
-                Mensaje.showError(I18n.get("app.error"), I18n.get("facturacion.errorEliminarProducto"));
-            }
+        onCalcularTotales(null);
+        Mensaje.showSuccess(I18n.get("facturacion.eliminar"), I18n.get("facturacion.productoEliminado"));
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            Mensaje.showError(I18n.get("app.error"), I18n.get("facturacion.errorEliminandoProducto") + e.getMessage());
+    // ========== LOTE DE LÍNEAS ==========
+
+    /** Lote de la orden seleccionada (uno solo por orden, ver {@link OrderLineBatcher#de}). */
+    private OrderLineBatcher lote() {
+        Long ordenId = ordenSeleccionada.getId();
+        if (lotePendiente == null || !Objects.equals(lotePendiente.getOrdenId(), ordenId)) {
+            enviarLote(); // lo que quedara de la orden anterior
+            lotePendiente = OrderLineBatcher.de(ordenId);
         }
+        return lotePendiente;
     }
 
-    // ========== TOTALES Y VUELTO ==========
-    @FXML
-    private void onCalcularTotales(ActionEvent event) {
-        BigDecimal subtotal = BigDecimal.ZERO;
-        for (DetalleOrden d : lineas) {
-            subtotal = subtotal.add(nz(d.getSubtotal()));
-        }
-        System.out.println("🔢 Subtotal calculado: " + subtotal);
+    /** Reinicia la espera: el lote sale cuando el usuario deja de editar. */
+    private void programarLote() {
+        loteDelay.stop();
+        loteDelay.playFromStart();
+    }
 
-        BigDecimal iv = BigDecimal.ZERO;
-        if (chkImpuestoVentas.isSelected()) {
-            iv = subtotal.multiply(IV_PORC).setScale(2, RoundingMode.HALF_UP);
-        }
+    /** Envía el lote en segundo plano y recarga la orden al terminar. */
+    private void enviarLote() {
+        loteDelay.stop();
+        OrderLineBatcher lote = lotePendiente;
+        if (lote == null || !lote.hayPendientes()) return;
+
+        lote.flushAsync().whenComplete((r, error) -> resolverLote(lote, r, error));
+    }
+
+    /**
+     * Envía el lote pendiente antes de facturar, sin bloquear el hilo de
+     * JavaFX. Completa (en ese hilo) con false si algún cambio no se guardó.
+     */
+    private CompletableFuture<Boolean> enviarLoteAhora() {
+        loteDelay.stop();
+        OrderLineBatcher lote = lotePendiente;
+        if (lote == null || !lote.hayPendientes()) return CompletableFuture.completedFuture(true);
+        return lote.flushAsync().handle((r, error) -> resolverLote(lote, r, error));
+    }
 
-        BigDecimal serv = BigDecimal.ZERO;
-        if (chkImpuestoServicio.isSelected()) {
-            serv = subtotal.multiply(SERV_PORC).setScale(2, RoundingMode.HALF_UP);
+    /**
+     * Cierra un envío del lote. Si algo falló se avisa qué cambios no se
+     * guardaron, se vacía el lote y se recarga la orden desde el backend
+     * (lo que muestra la pantalla vuelve a ser lo guardado).
+     * @return true si todo se guardó
+     */
+    private boolean resolverLote(OrderLineBatcher lote, OrderLineBatcher.Resultado r, Throwable error) {
+        boolean abierta = ordenSeleccionada != null && Objects.equals(ordenSeleccionada.getId(), lote.getOrdenId());
+        if (error == null && r.isOk()) {
+            // Recarga con los ids/versión reales del backend si sigue siendo la orden abierta
+            if (abierta && !lote.hayPendientes()) cargarDetallesDeOrden(lote.getOrdenId());
+            return true;
+        }
+        Log.warn("Facturacion", "Lote de orden " + lote.getOrdenId() + " con errores: "
+                + (error != null ? error.getMessage() : r.getErrores()));
+        if (error != null && IoScheduler.isCancelacion(error)) return false;
+        lote.descartar();
+        if (abierta) {
+            Mensaje.showError(I18n.get("app.error"), mensajeLote(r));
+            cargarDetallesDeOrden(lote.getOrdenId());
         }
+        return false;
+    }
 
-        BigDecimal descPct = parsePct(txtDescuento.getText());
-        System.out.println("🔢 Descuento %: " + descPct);
-
-        if (descPct.compareTo(DESCUENTO_MAX) > 0) {
-            descPct = DESCUENTO_MAX;
-            txtDescuento.setText(DESCUENTO_MAX.toPlainString());
-        } else if (descPct.compareTo(BigDecimal.ZERO) < 0) {
-            descPct = BigDecimal.ZERO;
-            txtDescuento.setText("0");
+    private String mensajeLote(OrderLineBatcher.Resultado r) {
+        StringBuilder sb = new StringBuilder(I18n.get("facturacion.errorAplicarProducto"));
+        OrderLineBatcher.Descartados d = r != null ? r.getDescartados() : null;
+        if (d != null) {
+            sb.append("\n\n").append(I18n.get("facturacion.loteNoGuardado"));
+            d.nuevas().forEach((productoId, cant) -> sb.append("\n• ").append(nombreProducto(productoId))
+                    .append(" x").append(cant));
+            d.cambios().forEach((detalleId, cant) -> sb.append("\n• ").append(nombreDetalle(detalleId))
+                    .append(" → ").append(cant));
+            d.eliminados().forEach(detalleId -> sb.append("\n• ").append(I18n.get("facturacion.loteEliminar"))
+                    .append(" ").append(nombreDetalle(detalleId)));
+        }
+        if (r != null && !r.getErrores().isEmpty()) {
+            sb.append("\n\n").append(String.join("\n", r.getErrores()));
         }
+        return sb.toString();
+    }
 
-        BigDecimal baseDescuento = subtotal.add(iv).add(serv);
-        BigDecimal descuentoMonto = baseDescuento
-                .multiply(descPct)
-                .divide(new BigDecimal("100"), 2, RoundingMode.HALF_UP);
+    private String nombreProducto(Long productoId) {
+        Producto p = CatalogService.getInstance().getProducto(productoId);
+        return p != null && p.getNombre() != null ? p.getNombre() : "#" + productoId;
+    }
 
-        BigDecimal total = baseDescuento.subtract(descuentoMonto);
+    private String nombreDetalle(Long detalleId) {
+        for (DetalleOrden d : lineas) {
+            if (Objects.equals(d.getId(), detalleId) && d.getProducto() != null) return d.getProducto().getNombre();
+        }
+        return "#" + detalleId;
+    }
 
-        System.out.println("🔢 Total calculado: " + total);
+    // ========== TOTALES Y VUELTO ==========
+    @FXML
+    private void onCalcularTotales(ActionEvent event) {
+        totales.setImpuestoVenta(chkImpuestoVentas.isSelected());
+        totales.setImpuestoServicio(chkImpuestoServicio.isSelected());
 
-        lblSubtotal.setText("₡" + fmt(subtotal));
-        lblImpuestoVentas.setText("₡" + fmt(iv));
-        lblImpuestoServicio.setText("₡" + fmt(serv));
-        lblDescuento.setText("-₡" + fmt(descuentoMonto));
-        lblTotal.setText("₡" + fmt(total));
+        BigDecimal descPct = parsePct(txtDescuento.getText());
+        BigDecimal aplicado = totales.setDescuentoPorcentaje(descPct);
+        if (aplicado.compareTo(descPct) != 0) {
+            txtDescuento.setText(aplicado.toPlainString());
+        }
+
+        PricingEngine.Resumen r = totales.getResumen();
+        if (r != resumenMostrado) {
+            // Solo se reformatea lo que cambió
+            PricingEngine.Resumen antes = resumenMostrado;
+            if (antes == null || antes.subtotal().compareTo(r.subtotal()) != 0) lblSubtotal.setText("₡" + fmt(r.subtotal()));
+            if (antes == null || antes.impuestoVentas().compareTo(r.impuestoVentas()) != 0) lblImpuestoVentas.setText("₡" + fmt(r.impuestoVentas()));
+            if (antes == null || antes.impuestoServicio().compareTo(r.impuestoServicio()) != 0) lblImpuestoServicio.setText("₡" + fmt(r.impuestoServicio()));
+            if (antes == null || antes.descuentoMonto().compareTo(r.descuentoMonto()) != 0) lblDescuento.setText("-₡" + fmt(r.descuentoMonto()));
+            if (antes == null || antes.total().compareTo(r.total()) != 0) lblTotal.setText("₡" + fmt(r.total()));
+            resumenMostrado = r;
+        }
 
         onCalcularVuelto(null);
     }
 
+    /** Porcentajes de impuestos y descuento máximo desde /parametros (cacheado). */
+    private void cargarParametros() {
+        RestClient.<Parametros>getTypedAsync("/parametros", Parametros.class).whenComplete((r, error) -> {
+            if (error != null || r == null || !r.isSuccess() || r.getData() == null) {
+                if (error == null || !IoScheduler.isCancelacion(error)) {
+                    Log.warn("Facturacion", "No se pudieron cargar los parámetros; se usan los porcentajes por defecto");
+                }
+                return;
+            }
+            totales.setParametros(r.getData());
+            lblDescuentoMax.setText(I18n.get("facturacion.descuentoMaximo") + " "
+                    + totales.getDescuentoMaximo().stripTrailingZeros().toPlainString() + "%");
+            onCalcularTotales(null);
+        });
+    }
+
     @FXML
     private void onCalcularVuelto(ActionEvent event) {
-        String totalText = lblTotal.getText();
         String efectivoText = txtEfectivo.getText();
         String tarjetaText = txtTarjeta.getText();
 
         System.out.println("💰 Calculando vuelto:");
-        System.out.println("   Total (texto): '" + totalText + "'");
         System.out.println("   Efectivo (texto): '" + efectivoText + "'");
         System.out.println("   Tarjeta (texto): '" + tarjetaText + "'");
 
-        BigDecimal total = parseMonto(totalText);
+        BigDecimal total = totales.getResumen().total();
         BigDecimal efectivo = parseMonto(efectivoText);
         BigDecimal tarjeta = parseMonto(tarjetaText);
 
-        System.out.println("   Total (parseado): " + total);
+        System.out.println("   Total: " + total);
         System.out.println("   Efectivo (parseado): " + efectivo);
         System.out.println("   Tarjeta (parseado): " + tarjeta);
 
@@ -1173,17 +1231,29 @@ public class VentanaVentasController implements Initializable {
             Mensaje.showWarning(I18n.get("facturacion.titulo"), I18n.get("facturacion.ordenSinProductos"));
             return;
         }
+        // La factura debe salir sobre las líneas ya guardadas
+        Long ordenId = ordenSeleccionada.getId();
+        btnProcesarPago.setDisable(true);
+        enviarLoteAhora().thenAccept(ok -> {
+            btnProcesarPago.setDisable(false);
+            if (ordenSeleccionada == null || !Objects.equals(ordenSeleccionada.getId(), ordenId)) return;
+            if (!ok) return; // resolverLote ya avisó y recargó la orden
+            procesarPago();
+        });
+    }
 
-        String totalText = lblTotal.getText();
+    private void procesarPago() {
+        // Mismos números que se muestran, recalculados con lo que hay en pantalla
+        onCalcularTotales(null);
+        PricingEngine.Resumen resumen = totales.getResumen();
         String efectivoText = txtEfectivo.getText();
         String tarjetaText = txtTarjeta.getText();
 
         System.out.println("\n💳 PROCESANDO PAGO:");
-        System.out.println("   Total: '" + totalText + "'");
         System.out.println("   Efectivo: '" + efectivoText + "'");
         System.out.println("   Tarjeta: '" + tarjetaText + "'");
 
-        BigDecimal total = parseMonto(totalText);
+        BigDecimal total = resumen.total();
         BigDecimal efectivo = parseMonto(efectivoText);
         BigDecimal tarjeta = parseMonto(tarjetaText);
         BigDecimal pagado = efectivo.add(tarjeta);
@@ -1220,19 +1290,7 @@ public class VentanaVentasController implements Initializable {
                 payload.put("clienteCorreo", clienteSeleccionadoCorreo);
             }
 
-            Map<String, Object> resumen = new HashMap<>();
-            resumen.put("subtotal", parseMonto(lblSubtotal.getText()));
-            resumen.put("impuestoVentas", parseMonto(lblImpuestoVentas.getText()));
-            resumen.put("impuestoServicio", parseMonto(lblImpuestoServicio.getText()));
-
-            BigDecimal descuentoPorcentaje = parsePct(txtDescuento.getText());
-            resumen.put("descuentoPorcentaje", descuentoPorcentaje);
-
-            BigDecimal descuentoMonto = parseMonto(lblDescuento.getText());
-            resumen.put("descuentoMonto", descuentoMonto);
-
-            resumen.put("total", total);
-            payload.put("resumen", resumen);
+            payload.put("resumen", resumen.aMapa());
 
             Map<String, Object> pagos = new HashMap<>();
             pagos.put("efectivo", efectivo);
@@ -1252,63 +1310,71 @@ public class VentanaVentasController implements Initializable {
             }
             payload.put("items", items);
 
-            System.out.println("📤 Enviando payload al servidor...");
-            System.out.println(new com.google.gson.GsonBuilder().setPrettyPrinting().create().toJson(payload));
+            if (Log.isDebug()) Log.debug("Facturacion", "Cobro -> " + Log.truncar(RestClient.toJson(payload)));
+
+            // Un solo envío (factura + estado de la orden) con clave de idempotencia;
+            // si se corta la red, reintentar no duplica la factura
+            Long ordenId = ordenSeleccionada.getId();
+            btnProcesarPago.setDisable(true);
+            CheckoutService.getInstance().cobrarAsync(ordenId, payload).whenComplete((r, error) -> {
+                btnProcesarPago.setDisable(false);
+                if (error != null) {
+                    Mensaje.showError(I18n.get("app.error"), I18n.get("facturacion.errorProcesarPago") + error.getMessage());
+                    return;
+                }
+                mostrarResultadoCobro(ordenId, r);
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+            Mensaje.showError(I18n.get("app.error"), I18n.get("facturacion.errorProcesarPago") + e.getMessage());
+        }
+    }
 
-            String resFactura = RestClient.post("/facturas", payload);
-            Map<String, Object> r1 = RestClient.parseResponse(resFactura);
-            if (!Boolean.TRUE.equals(r1.get("success"))) {
-                String errorMsg = r1.get("message") != null ? r1.get("message").toString() : I18n.get("facturacion.errorDesconocido");
+    private void mostrarResultadoCobro(Long ordenId, CheckoutService.Resultado r) {
+        switch (r.getEstado()) {
+            case RECHAZADO -> {
+                String errorMsg = r.getMensaje() != null ? r.getMensaje() : I18n.get("facturacion.errorDesconocido");
                 Mensaje.showError(I18n.get("app.error"), I18n.get("facturacion.errorCrearFactura") + errorMsg);
                 return;
             }
-
-            boolean facturada = false;
-            try {
-                String resFact = RestClient.post("/ordenes/" + ordenSeleccionada.getId() + "/facturar", null);
-                Map<String, Object> rA = RestClient.parseResponse(resFact);
-                facturada = Boolean.TRUE.equals(rA.get("success"));
-            } catch (Exception ignored) {
+            case PENDIENTE -> {
+                // No se sabe si llegó: la pantalla se conserva para reintentar con la misma clave
+                Mensaje.showWarning(I18n.get("facturacion.titulo"), I18n.get("facturacion.cobroSinConfirmar"));
+                return;
             }
-
-            if (!facturada) {
-                Map<String, Object> upd = Map.of("estado", "FACTURADA");
-                try {
-                    String resPut = RestClient.put("/ordenes/" + ordenSeleccionada.getId(), upd);
-                    Map<String, Object> rB = RestClient.parseResponse(resPut);
-                    facturada = Boolean.TRUE.equals(rB.get("success"));
-                } catch (Exception ignored) {
+            case INCIERTO -> {
+                // Flujo sin idempotencia: solo el cajero puede decidir si reintentar
+                if (Mensaje.showConfirmation(I18n.get("facturacion.titulo"), I18n.get("facturacion.cobroIncierto"))) {
+                    CheckoutService.getInstance().descartar(ordenId);
                 }
+                return;
             }
+            default -> { }
+        }
 
-            if (esVentaDirecta) {
-                Mensaje.showSuccess(
-                        I18n.get("app.exito"),
-                        I18n.get("facturacion.ventaDirectaExitosa")
-                );
-            } else {
-                Mensaje.showSuccess(I18n.get("app.exito"), facturada
-                        ? I18n.get("facturacion.facturaRegistradaExito")
-                        : I18n.get("facturacion.facturaRegistradaParcial"));
-            }
-
-            limpiarPantalla();
+        if (esVentaDirecta) {
+            Mensaje.showSuccess(
+                    I18n.get("app.exito"),
+                    I18n.get("facturacion.ventaDirectaExitosa")
+            );
+        } else {
+            Mensaje.showSuccess(I18n.get("app.exito"), r.isFacturada()
+                    ? I18n.get("facturacion.facturaRegistradaExito")
+                    : I18n.get("facturacion.facturaRegistradaParcial"));
+        }
 
-            // ⭐ NUEVO: Si era venta directa, volver al menú automáticamente
-            if (esVentaDirecta) {
-                // Pequeño delay para que el usuario vea el mensaje de éxito
-                javafx.animation.PauseTransition delay = new javafx.animation.PauseTransition(
-                        javafx.util.Duration.seconds(1.5)
-                );
-                delay.setOnFinished(ev -> {
-                    FlowController.getInstance().goToView("MenuPrincipal", "RestUNA - Menú", 1000, 560);
-                });
-                delay.play();
-            }
+        limpiarPantalla();
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            Mensaje.showError(I18n.get("app.error"), I18n.get("facturacion.errorProcesarPago") + e.getMessage());
+        // ⭐ NUEVO: Si era venta directa, volver al menú automáticamente
+        if (esVentaDirecta) {
+            // Pequeño delay para que el usuario vea el mensaje de éxito
+            javafx.animation.PauseTransition delay = new javafx.animation.PauseTransition(
+                    javafx.util.Duration.seconds(1.5)
+            );
+            delay.setOnFinished(ev -> {
+                FlowController.getInstance().goToView("MenuPrincipal", "RestUNA - Menú", 1000, 560);
+            });
+            delay.play();
         }
     }
 
@@ -1398,7 +1464,7 @@ public class VentanaVentasController implements Initializable {
         if (lblDescuentoLabel != null) {
             lblDescuentoLabel.setText(I18n.get("facturacion.descuentoAbrev") + ":");
         }
-        lblDescuentoMax.setText(I18n.get("facturacion.descuentoMaximo") + " 15%");
+        lblDescuentoMax.setText(I18n.get("facturacion.descuentoMaximo") + " " + totales.getDescuentoMaximo().stripTrailingZeros().toPlainString() + "%");
         if (lblTotalLabel != null) {
             lblTotalLabel.setText(I18n.get("facturacion.total").toUpperCase() + ":");
         }
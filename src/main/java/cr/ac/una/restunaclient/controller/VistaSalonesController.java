@@ -1,20 +1,30 @@
 package cr.ac.una.restunaclient.controller;
 
-import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import cr.ac.una.restunaclient.model.Mesa;
 import cr.ac.una.restunaclient.model.Salon;
+import cr.ac.una.restunaclient.service.ApiResponse;
 import cr.ac.una.restunaclient.service.RestClient;
+import cr.ac.una.restunaclient.service.SalonService;
+import cr.ac.una.restunaclient.service.TableLayoutWriter;
+import cr.ac.una.restunaclient.service.TableStatusFeed;
+import cr.ac.una.restunaclient.util.Animador;
 import cr.ac.una.restunaclient.util.AppContext;
 import cr.ac.una.restunaclient.util.FlowController;
 import cr.ac.una.restunaclient.util.I18n;
+import cr.ac.una.restunaclient.util.IndiceEspacial;
+import cr.ac.una.restunaclient.util.IoScheduler;
+import cr.ac.una.restunaclient.util.Log;
 import cr.ac.una.restunaclient.util.Mensaje;
+import cr.ac.una.restunaclient.util.PlanoMesasCanvas;
 import javafx.animation.*;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.geometry.Point2D;
 import javafx.geometry.Pos;
 import javafx.scene.Cursor;
+import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.effect.*;
 import javafx.scene.image.Image;
@@ -30,9 +40,11 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.util.Duration;
 
-import java.io.ByteArrayInputStream;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static cr.ac.una.restunaclient.util.Propiedades.intProp;
 
 /**
  * ⭐ ACTUALIZADO: Zona de facturación mejorada con drag & drop
@@ -70,22 +82,55 @@ public class VistaSalonesController implements Initializable {
     private boolean modoEdicion = false;
     private Map<Long, StackPane> mapaMesasVista = new HashMap<>();
     private Image imagenMesaBase;
+    private static final double TAM_IMAGEN_MESA = 55;
 
     // Variables para animaciones y efectos
     private StackPane mesaSeleccionada = null;
-    private Timeline pulseTimeline;
+
+    // ⭐ Efectos compartidos por todas las mesas (un objeto por estado, no uno por mesa);
+    // las animaciones corren en el reloj único de Animador
+    private static final DropShadow SOMBRA_MESA = sombra(8, 3, 0.2);
+    private static final DropShadow SOMBRA_MESA_ELEVADA = sombra(15, 6, 0.2);
+    private static final DropShadow SOMBRA_MESA_ARRASTRE = sombra(20, 8, 0.2);
+    private static final DropShadow BRILLO_OCUPADA = new DropShadow(10, Color.web("#dc3545"));
+    private static final ColorAdjust AJUSTE_IMAGEN = new ColorAdjust(0, 0, 0.1, 0);
+    private static final Glow BRILLO_COLISION = new Glow(0.8);
+    private static final int MAX_RASTRO = 12;
+    private final Animador animador = Animador.getInstance();
+    private final Circle[] rastro = new Circle[MAX_RASTRO];
+    private int rastroPos;
 
     // Constantes para colisiones
     private static final double MESA_SIZE = 90.0;
     private static final double ZONA_FACTURACION_SIZE = 100.0;
     private static final double MARGEN_BORDE = 10.0;
     private static final double MARGEN_ENTRE_MESAS = 15.0;
+    private static final double PASO_GRILLA = 10.0;
+
+    // ⭐ Índice espacial de mesas + zona de facturación (colisiones, hit-testing, huecos libres)
+    private static final Long ID_ZONA_FACTURACION = Long.MIN_VALUE;
+    private final IndiceEspacial indice = new IndiceEspacial(MESA_SIZE + MARGEN_ENTRE_MESAS);
+
+    // ⭐ Plano en Canvas para salones grandes (-Drestuna.salon.canvasDesde, def. 40 mesas;
+    // -Drestuna.salon.canvas=ids separados por coma para forzarlo en salones concretos)
+    private static final int CANVAS_DESDE = intProp("restuna.salon.canvasDesde", 40);
+    private static final Set<String> CANVAS_SALONES = new HashSet<>(
+            Arrays.asList(System.getProperty("restuna.salon.canvas", "").replace(" ", "").split(",")));
+    private PlanoMesasCanvas plano;
+
+    // ⭐ Guardado del diseño: solo mesas movidas, en segundo plano tras una pausa
+    private TableLayoutWriter disenoPendiente;
+    private final PauseTransition guardadoDelay = new PauseTransition(Duration.millis(800));
+
+    // ⭐ Estado en vivo de las mesas (otras terminales) sin recargar el salón
+    private TableStatusFeed.Suscripcion feedMesas;
 
     @Override
     public void initialize(URL url, ResourceBundle rb) {
         configurarUsuario();
         configurarComboSalones();
         configurarPanelMesas();
+        guardadoDelay.setOnFinished(e -> enviarDiseno());
 
         // ⭐ IMPORTANTE: Crear zona ANTES de cargar salones
         crearZonaFacturacion();
@@ -152,10 +197,9 @@ public class VistaSalonesController implements Initializable {
 
                     // Efecto visual de hover
                     fondo.setFill(Color.web("#218838"));
-                    ScaleTransition scale = new ScaleTransition(Duration.millis(100), zonaFacturacion);
-                    scale.setToX(1.1);
-                    scale.setToY(1.1);
-                    scale.play();
+                    if (zonaFacturacion.getScaleX() < 1.1) {
+                        animador.escalar(zonaFacturacion, 1.1, 100);
+                    }
                 }
                 event.consume();
             });
@@ -163,10 +207,7 @@ public class VistaSalonesController implements Initializable {
             zonaFacturacion.setOnDragExited(event -> {
                 // Restaurar apariencia
                 fondo.setFill(Color.web("#28a745"));
-                ScaleTransition scale = new ScaleTransition(Duration.millis(100), zonaFacturacion);
-                scale.setToX(1.0);
-                scale.setToY(1.0);
-                scale.play();
+                animador.escalar(zonaFacturacion, 1.0, 100);
                 event.consume();
             });
 
@@ -226,6 +267,7 @@ public class VistaSalonesController implements Initializable {
 
                     zonaFacturacion.setLayoutX(newX);
                     zonaFacturacion.setLayoutY(newY);
+                    indice.poner(ID_ZONA_FACTURACION, newX, newY, ZONA_FACTURACION_SIZE, ZONA_FACTURACION_SIZE);
                 }
             });
 
@@ -316,6 +358,7 @@ public class VistaSalonesController implements Initializable {
         cmbSalones.getSelectionModel().selectedItemProperty().addListener(
                 (obs, oldVal, newVal) -> {
                     if (newVal != null) {
+                        enviarDiseno(); // lo movido en el salón anterior
                         if (modoEdicion) {
                             modoEdicion = false;
                             actualizarUIModEdicion();
@@ -337,14 +380,22 @@ public class VistaSalonesController implements Initializable {
 
     // ==================== CARGA DE DATOS ====================
     private void cargarSalones() {
-        try {
-            System.out.println("📤 Solicitando salones tipo SALON...");
-            String jsonResponse = RestClient.get("/salones/tipo/salon");
-
-            System.out.println("📥 Respuesta recibida (" + jsonResponse.length() + " caracteres):");
-            System.out.println(jsonResponse.substring(0, Math.min(300, jsonResponse.length())));
+        System.out.println("📤 Solicitando salones tipo SALON...");
+        // Sin imágenes: cada una se trae cuando su salón se dibuja
+        SalonService.getInstance().listarResumenAsync("/salones/tipo/salon").whenComplete((response, error) -> {
+            if (error != null) {
+                if (IoScheduler.isCancelacion(error)) return; // se salió de la pantalla
+                error.printStackTrace();
+                Mensaje.showError("Error", "Error al cargar salones:\n" + error.getMessage());
+                return;
+            }
+            procesarSalones(response);
+        });
+    }
 
-            if (jsonResponse.trim().startsWith("<")) {
+    private void procesarSalones(ApiResponse<List<Salon>> response) {
+        try {
+            if (response.isRaw()) {
                 System.err.println("❌ El backend devolvió HTML (error 500)");
                 Mensaje.showError("Error del Servidor",
                         "El servidor tuvo un error al cargar los salones.\n\n"
@@ -352,13 +403,8 @@ public class VistaSalonesController implements Initializable {
                 return;
             }
 
-            Map<String, Object> response = RestClient.parseResponse(jsonResponse);
-
-            if (Boolean.TRUE.equals(response.get("success"))) {
-                Gson gson = new Gson();
-                String dataJson = gson.toJson(response.get("data"));
-                listaSalones = gson.fromJson(dataJson, new TypeToken<List<Salon>>() {
-                }.getType());
+            if (response.isSuccess()) {
+                listaSalones = response.getData() != null ? response.getData() : new ArrayList<>();
 
                 cmbSalones.getItems().clear();
                 cmbSalones.getItems().addAll(listaSalones);
@@ -383,35 +429,46 @@ public class VistaSalonesController implements Initializable {
 
             System.out.println("📋 Cargando salón: " + salon.getNombre());
 
-            if (salon.getImagenMesa() != null && salon.getImagenMesa().length > 0) {
-                try {
-                    imagenMesaBase = new Image(new ByteArrayInputStream(salon.getImagenMesa()));
-                    System.out.println("✅ Imagen de mesa cargada correctamente");
-                } catch (Exception e) {
-                    System.err.println("❌ Error al crear imagen desde bytes:");
-                    e.printStackTrace();
-                    imagenMesaBase = null;
+            // Imagen (disco/caché/backend) y mesas en paralelo, fuera del hilo de JavaFX.
+            // Una imagen que falle no impide dibujar las mesas.
+            CompletableFuture<Image> imagen = SalonService.getInstance()
+                    .getImagenAsync(salon, TAM_IMAGEN_MESA, TAM_IMAGEN_MESA)
+                    .exceptionally(ex -> null);
+            RestClient.<List<Mesa>>getTypedAsync("/salones/" + salon.getId() + "/mesas", new TypeToken<List<Mesa>>() {
+            }.getType()).thenCombine(imagen, (response, img) -> {
+                if (salonActual == salon) imagenMesaBase = img;
+                return response;
+            }).whenComplete((response, error) -> {
+                // Si mientras tanto se eligió otro salón, esta respuesta ya no aplica
+                if (salonActual != salon) {
+                    return;
                 }
-            } else {
-                System.out.println("⚠ Salón sin imagen de mesa");
-                imagenMesaBase = null;
-            }
-
-            String jsonResponse = RestClient.get("/salones/" + salon.getId() + "/mesas");
-            Map<String, Object> response = RestClient.parseResponse(jsonResponse);
+                if (error != null) {
+                    if (IoScheduler.isCancelacion(error)) return; // se salió de la pantalla
+                    error.printStackTrace();
+                    Mensaje.showError("Error", "Error al cargar mesas:\n" + error.getMessage());
+                    return;
+                }
+                procesarMesasSalon(salon, response);
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+            Mensaje.showError("Error", "Error al cargar mesas:\n" + e.getMessage());
+        }
+    }
 
-            if (Boolean.TRUE.equals(response.get("success"))) {
-                Gson gson = new Gson();
-                String dataJson = gson.toJson(response.get("data"));
-                List<Mesa> mesas = gson.fromJson(dataJson, new TypeToken<List<Mesa>>() {
-                }.getType());
+    private void procesarMesasSalon(Salon salon, ApiResponse<List<Mesa>> response) {
+        try {
+            if (response.isSuccess()) {
+                List<Mesa> mesas = response.getData() != null ? response.getData() : new ArrayList<>();
 
                 salon.setMesas(mesas);
                 System.out.println("✅ Mesas cargadas: " + mesas.size());
 
                 mostrarMesasEnPanel(salon);
+                suscribirEstados(salon);
             } else {
-                System.err.println("❌ Error al cargar mesas: " + response.get("message"));
+                System.err.println("❌ Error al cargar mesas: " + response.getMessage());
                 Mensaje.showError("Error", "No se pudieron cargar las mesas del salón");
             }
         } catch (Exception e) {
@@ -424,6 +481,7 @@ public class VistaSalonesController implements Initializable {
     private void mostrarMesasEnPanel(Salon salon) {
         panelMesas.getChildren().clear();
         mapaMesasVista.clear();
+        indexarSalon(salon);
 
         // ⭐ SIEMPRE agregar la zona de facturación primero
         if (zonaFacturacion != null) {
@@ -454,12 +512,13 @@ public class VistaSalonesController implements Initializable {
             vboxMensaje.setLayoutY(panelMesas.getPrefHeight() / 2 - 40);
 
             vboxMensaje.setOpacity(0);
-            FadeTransition fade = new FadeTransition(Duration.millis(500), vboxMensaje);
-            fade.setFromValue(0);
-            fade.setToValue(1);
-            fade.play();
-
             panelMesas.getChildren().add(vboxMensaje);
+            animador.opacidad(vboxMensaje, 1, 500);
+            return;
+        }
+
+        if (usarPlano(salon)) {
+            mostrarMesasEnPlano(salon);
             return;
         }
 
@@ -481,28 +540,94 @@ public class VistaSalonesController implements Initializable {
         }
     }
 
+    /**
+     * Reconstruye el índice espacial con las mesas del salón y la zona de
+     * facturación. A partir de aquí se mantiene de forma incremental.
+     */
+    private void indexarSalon(Salon salon) {
+        indice.limpiar();
+        if (zonaFacturacion != null && zonaFacturacion.isVisible()) {
+            indice.poner(ID_ZONA_FACTURACION, zonaFacturacion.getLayoutX(), zonaFacturacion.getLayoutY(),
+                    ZONA_FACTURACION_SIZE, ZONA_FACTURACION_SIZE);
+        }
+        if (salon.getMesas() != null) {
+            for (Mesa mesa : salon.getMesas()) {
+                indice.poner(mesa.getId(), mesa.getPosicionX(), mesa.getPosicionY(), MESA_SIZE, MESA_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Canvas si el salón está forzado por id o supera el umbral de mesas.
+     */
+    private boolean usarPlano(Salon salon) {
+        if (salon.getId() != null && CANVAS_SALONES.contains(salon.getId().toString())) {
+            return true;
+        }
+        return CANVAS_DESDE > 0 && salon.getMesas() != null && salon.getMesas().size() >= CANVAS_DESDE;
+    }
+
+    /**
+     * Dibuja todas las mesas en un único Canvas; la zona de facturación sigue
+     * siendo un nodo encima.
+     */
+    private void mostrarMesasEnPlano(Salon salon) {
+        if (plano == null) {
+            plano = new PlanoMesasCanvas(MESA_SIZE, MARGEN_BORDE, TAM_IMAGEN_MESA);
+            plano.widthProperty().bind(panelMesas.widthProperty());
+            plano.heightProperty().bind(panelMesas.heightProperty());
+            plano.setIndice(indice);
+            plano.setColision(this::hayColision);
+            plano.setOnMesaClic(this::onMesaClick);
+            plano.setOnMesaMovida(mesa -> {
+                indice.poner(mesa.getId(), mesa.getPosicionX(), mesa.getPosicionY(), MESA_SIZE, MESA_SIZE);
+                mesaMovida(mesa);
+                System.out.println("📍 Mesa " + mesa.getIdentificador()
+                        + " reposicionada: (" + mesa.getPosicionX() + ", " + mesa.getPosicionY() + ")");
+            });
+            plano.setOnArrastre(p -> resaltarZonaFacturacion(p != null && dentroDeZonaFacturacion(p)));
+            plano.setOnMesaSoltada((mesa, p) -> {
+                if (dentroDeZonaFacturacion(p)) {
+                    navegarAFacturacionDesdeMesa(mesa);
+                }
+            });
+            plano.setOnMenuMesa((mesa, e) -> crearMenuMesa(mesa).show(plano, e.getScreenX(), e.getScreenY()));
+        }
+        plano.setImagenMesa(imagenMesaBase);
+        plano.setMesas(salon.getMesas(), modoEdicion);
+        panelMesas.getChildren().add(0, plano);
+
+        if (zonaFacturacion != null) {
+            zonaFacturacion.toFront();
+        }
+    }
+
+    private boolean dentroDeZonaFacturacion(Point2D p) {
+        return zonaFacturacion != null && zonaFacturacion.isVisible()
+                && zonaFacturacion.getBoundsInParent().contains(p);
+    }
+
+    private void resaltarZonaFacturacion(boolean resaltar) {
+        if (zonaFacturacion != null) {
+            zonaFacturacion.setScaleX(resaltar ? 1.1 : 1.0);
+            zonaFacturacion.setScaleY(resaltar ? 1.1 : 1.0);
+        }
+    }
+
+    private boolean enPlano() {
+        return plano != null && plano.getParent() == panelMesas;
+    }
+
     private void animarEntradaMesa(StackPane mesaPane, int delay) {
         mesaPane.setScaleX(0);
         mesaPane.setScaleY(0);
         mesaPane.setOpacity(0);
 
-        PauseTransition pause = new PauseTransition(Duration.millis(delay));
-        pause.setOnFinished(e -> {
-            ScaleTransition scale = new ScaleTransition(Duration.millis(400), mesaPane);
-            scale.setFromX(0);
-            scale.setFromY(0);
-            scale.setToX(1);
-            scale.setToY(1);
-            scale.setInterpolator(Interpolator.EASE_OUT);
-
-            FadeTransition fade = new FadeTransition(Duration.millis(400), mesaPane);
-            fade.setFromValue(0);
-            fade.setToValue(1);
-
-            ParallelTransition parallel = new ParallelTransition(scale, fade);
-            parallel.play();
-        });
-        pause.play();
+        animador.animar(mesaPane, "entrada", delay, 400, Interpolator.EASE_OUT, t -> {
+            mesaPane.setScaleX(t);
+            mesaPane.setScaleY(t);
+            mesaPane.setOpacity(t);
+        }, null);
     }
 
     private StackPane crearVistaMesa(Mesa mesa) {
@@ -516,59 +641,25 @@ public class VistaSalonesController implements Initializable {
         fondo.setArcWidth(15);
         fondo.setArcHeight(15);
 
-        DropShadow sombra = new DropShadow();
-        sombra.setRadius(8);
-        sombra.setOffsetY(3);
-        sombra.setColor(Color.rgb(0, 0, 0, 0.2));
-        fondo.setEffect(sombra);
+        fondo.setEffect(SOMBRA_MESA);
 
-        if (modoEdicion) {
-            fondo.setFill(Color.web("#fff3cd"));
-            fondo.setStroke(Color.web("#ffc107"));
-        } else if (mesa.isOcupada()) {
-            fondo.setFill(Color.web("#f8d7da"));
-            fondo.setStroke(Color.web("#dc3545"));
-        } else {
-            fondo.setFill(Color.web("#d4edda"));
-            fondo.setStroke(Color.web("#28a745"));
-        }
+        pintarFondoMesa(fondo, mesa);
         fondo.setStrokeWidth(3);
 
         container.getChildren().add(fondo);
 
         if (mesa.isOcupada() && !modoEdicion) {
-            Circle indicador = new Circle(6);
-            indicador.setFill(Color.web("#dc3545"));
-            indicador.setTranslateX(30);
-            indicador.setTranslateY(-30);
-
-            DropShadow glow = new DropShadow();
-            glow.setColor(Color.web("#dc3545"));
-            glow.setRadius(10);
-            indicador.setEffect(glow);
-
-            ScaleTransition pulse = new ScaleTransition(Duration.millis(1000), indicador);
-            pulse.setFromX(1.0);
-            pulse.setFromY(1.0);
-            pulse.setToX(1.3);
-            pulse.setToY(1.3);
-            pulse.setCycleCount(Timeline.INDEFINITE);
-            pulse.setAutoReverse(true);
-            pulse.play();
-
-            container.getChildren().add(indicador);
+            container.getChildren().add(crearIndicadorOcupada());
         }
 
         if (imagenMesaBase != null) {
             try {
                 ImageView imagen = new ImageView(imagenMesaBase);
-                imagen.setFitWidth(55);
-                imagen.setFitHeight(55);
+                imagen.setFitWidth(TAM_IMAGEN_MESA);
+                imagen.setFitHeight(TAM_IMAGEN_MESA);
                 imagen.setPreserveRatio(true);
 
-                ColorAdjust ajuste = new ColorAdjust();
-                ajuste.setBrightness(0.1);
-                imagen.setEffect(ajuste);
+                imagen.setEffect(AJUSTE_IMAGEN);
 
                 container.getChildren().add(imagen);
             } catch (Exception e) {
@@ -593,20 +684,20 @@ public class VistaSalonesController implements Initializable {
         // ⭐ HOVER (solo si no está en modo drag)
         container.setOnMouseEntered(e -> {
             if (!isDragging(container)) {
-                animarHoverEnter(container, fondo, sombra);
+                animarHoverEnter(container, fondo);
             }
         });
 
         container.setOnMouseExited(e -> {
             if (!isDragging(container)) {
-                animarHoverExit(container, fondo, sombra);
+                animarHoverExit(container, fondo);
             }
         });
 
         // ⭐ CONFIGURACIÓN SEGÚN MODO
         if (modoEdicion) {
             // MODO EDICIÓN: Drag para mover + menú contextual
-            configurarDragAndDrop(container, mesa, fondo, sombra);
+            configurarDragAndDrop(container, mesa, fondo);
             configurarMenuContextual(container, mesa);
 
             // ⭐ LIMPIAR drag de facturación (por si quedó de antes)
@@ -634,6 +725,100 @@ public class VistaSalonesController implements Initializable {
         return container;
     }
 
+    private void pintarFondoMesa(Rectangle fondo, Mesa mesa) {
+        if (modoEdicion) {
+            fondo.setFill(Color.web("#fff3cd"));
+            fondo.setStroke(Color.web("#ffc107"));
+        } else if (mesa.isOcupada()) {
+            fondo.setFill(Color.web("#f8d7da"));
+            fondo.setStroke(Color.web("#dc3545"));
+        } else {
+            fondo.setFill(Color.web("#d4edda"));
+            fondo.setStroke(Color.web("#28a745"));
+        }
+    }
+
+    private Circle crearIndicadorOcupada() {
+        Circle indicador = new Circle(6);
+        indicador.setFill(Color.web("#dc3545"));
+        indicador.setTranslateX(30);
+        indicador.setTranslateY(-30);
+        indicador.setUserData("INDICADOR_OCUPADA");
+
+        indicador.setEffect(BRILLO_OCUPADA);
+
+        // Unos pocos pulsos en el reloj compartido; luego el indicador queda fijo
+        animador.pulso(indicador, 0.3, 1000, 3);
+
+        return indicador;
+    }
+
+    // ==================== ESTADO EN VIVO ====================
+    /**
+     * Escucha los cambios de estado del salón (SSE o sondeo, ver
+     * TableStatusFeed). Se cierra al cambiar de salón o de pantalla.
+     */
+    private void suscribirEstados(Salon salon) {
+        if (feedMesas != null) {
+            feedMesas.close();
+        }
+        Map<Long, String> estados = new HashMap<>();
+        for (Mesa mesa : salon.getMesas()) {
+            estados.put(mesa.getId(), mesa.getEstado());
+        }
+        feedMesas = TableStatusFeed.getInstance().suscribir(salon.getId(), estados,
+                cambios -> aplicarCambiosEstado(salon, cambios));
+    }
+
+    /**
+     * Parcha solo las mesas que cambiaron: colores e indicador en su nodo,
+     * o un redibujo del plano. Sin recargar ni repetir animaciones de entrada.
+     */
+    private void aplicarCambiosEstado(Salon salon, List<TableStatusFeed.Cambio> cambios) {
+        if (salonActual != salon) {
+            return;
+        }
+        for (TableStatusFeed.Cambio cambio : cambios) {
+            Mesa mesa = encontrarMesaPorId(cambio.getMesaId());
+            if (mesa == null) {
+                continue; // mesa nueva de otra terminal: llega con la próxima carga del salón
+            }
+            mesa.setEstado(cambio.getEstado());
+            if (cambio.getVersion() != null) {
+                mesa.setVersion(cambio.getVersion());
+            }
+            StackPane mesaPane = mapaMesasVista.get(mesa.getId());
+            if (mesaPane != null) {
+                actualizarVistaMesa(mesaPane, mesa);
+            }
+        }
+        if (enPlano()) {
+            plano.solicitarCuadro();
+        }
+    }
+
+    private void actualizarVistaMesa(StackPane container, Mesa mesa) {
+        if (container.getChildren().isEmpty() || !(container.getChildren().get(0) instanceof Rectangle fondo)) {
+            return;
+        }
+        pintarFondoMesa(fondo, mesa);
+
+        Node indicador = null;
+        for (Node n : container.getChildren()) {
+            if ("INDICADOR_OCUPADA".equals(n.getUserData())) {
+                indicador = n;
+                break;
+            }
+        }
+        boolean mostrar = mesa.isOcupada() && !modoEdicion;
+        if (mostrar && indicador == null) {
+            container.getChildren().add(1, crearIndicadorOcupada());
+        } else if (!mostrar && indicador != null) {
+            animador.detener(indicador);
+            container.getChildren().remove(indicador);
+        }
+    }
+
     /**
      * ⭐ Configura el drag & drop para facturación en modo normal
      */
@@ -703,7 +888,8 @@ public class VistaSalonesController implements Initializable {
 
             panelMesas.setOnMouseClicked(e -> {
                 if (e.getButton() == MouseButton.SECONDARY) {
-                    if (e.getTarget() == panelMesas) {
+                    if (e.getTarget() == panelMesas
+                            || (e.getTarget() == plano && plano.mesaEn(e.getX(), e.getY()) == null)) {
                         agregarNuevaMesa(e.getX(), e.getY());
                     }
                 }
@@ -717,10 +903,8 @@ public class VistaSalonesController implements Initializable {
                 zonaFacturacion.toFront();
             }
 
-            FadeTransition fade = new FadeTransition(Duration.millis(300), panelMesas);
-            fade.setFromValue(0.7);
-            fade.setToValue(1.0);
-            fade.play();
+            panelMesas.setOpacity(0.7);
+            animador.opacidad(panelMesas, 1.0, 300);
         } else {
             btnModoEdicion.setText(I18n.isSpanish() ? "🛠 Modo Edición" : "🛠 Edit Mode");
             btnModoEdicion.setStyle("-fx-background-color: #17a2b8; -fx-text-fill: white; -fx-cursor: hand; -fx-background-radius: 8;");
@@ -749,50 +933,16 @@ public class VistaSalonesController implements Initializable {
     }
 
     // ==================== ANIMACIONES Y HOVER ====================
-    private void animarHoverEnter(StackPane container, Rectangle fondo, DropShadow sombra) {
+    private void animarHoverEnter(StackPane container, Rectangle fondo) {
         container.setCursor(Cursor.HAND);
-
-        ScaleTransition scale = new ScaleTransition(Duration.millis(200), container);
-        scale.setToX(1.08);
-        scale.setToY(1.08);
-        scale.setInterpolator(Interpolator.EASE_OUT);
-
-        Timeline shadowAnim = new Timeline(
-                new KeyFrame(Duration.ZERO,
-                        new KeyValue(sombra.radiusProperty(), 8),
-                        new KeyValue(sombra.offsetYProperty(), 3)
-                ),
-                new KeyFrame(Duration.millis(200),
-                        new KeyValue(sombra.radiusProperty(), 15, Interpolator.EASE_OUT),
-                        new KeyValue(sombra.offsetYProperty(), 6, Interpolator.EASE_OUT)
-                )
-        );
-
-        scale.play();
-        shadowAnim.play();
+        fondo.setEffect(SOMBRA_MESA_ELEVADA);
+        animador.escalar(container, 1.08, 200);
     }
 
-    private void animarHoverExit(StackPane container, Rectangle fondo, DropShadow sombra) {
+    private void animarHoverExit(StackPane container, Rectangle fondo) {
         container.setCursor(Cursor.DEFAULT);
-
-        ScaleTransition scale = new ScaleTransition(Duration.millis(200), container);
-        scale.setToX(1.0);
-        scale.setToY(1.0);
-        scale.setInterpolator(Interpolator.EASE_OUT);
-
-        Timeline shadowAnim = new Timeline(
-                new KeyFrame(Duration.ZERO,
-                        new KeyValue(sombra.radiusProperty(), 15),
-                        new KeyValue(sombra.offsetYProperty(), 6)
-                ),
-                new KeyFrame(Duration.millis(200),
-                        new KeyValue(sombra.radiusProperty(), 8, Interpolator.EASE_OUT),
-                        new KeyValue(sombra.offsetYProperty(), 3, Interpolator.EASE_OUT)
-                )
-        );
-
-        scale.play();
-        shadowAnim.play();
+        fondo.setEffect(SOMBRA_MESA);
+        animador.escalar(container, 1.0, 200);
     }
 
     private boolean isDragging(StackPane container) {
@@ -800,7 +950,7 @@ public class VistaSalonesController implements Initializable {
         return isDrag != null && (boolean) isDrag;
     }
 
-    private void configurarDragAndDrop(StackPane mesaPane, Mesa mesa, Rectangle fondo, DropShadow sombra) {
+    private void configurarDragAndDrop(StackPane mesaPane, Mesa mesa, Rectangle fondo) {
         final double[] dragDelta = new double[2];
         final double[] originalPos = new double[2];
 
@@ -809,6 +959,12 @@ public class VistaSalonesController implements Initializable {
             if (e.getButton() == MouseButton.PRIMARY) {
                 System.out.println("🛠 Iniciando drag de edición: " + mesa.getIdentificador());
 
+                // Si aún corre el snap del soltado anterior, se completa ya (posición,
+                // índice y guardado) antes de descartar el resto de animaciones
+                animador.terminar(mesaPane, "snap");
+                animador.terminar(mesaPane, "colision");
+                animador.detener(mesaPane);
+
                 dragDelta[0] = mesaPane.getLayoutX() - e.getSceneX();
                 dragDelta[1] = mesaPane.getLayoutY() - e.getSceneY();
                 originalPos[0] = mesaPane.getLayoutX();
@@ -819,13 +975,10 @@ public class VistaSalonesController implements Initializable {
 
                 mesaPane.setScaleX(1.12);
                 mesaPane.setScaleY(1.12);
-                sombra.setRadius(20);
-                sombra.setOffsetY(8);
+                fondo.setEffect(SOMBRA_MESA_ARRASTRE);
                 mesaPane.toFront();
 
-                FadeTransition fade = new FadeTransition(Duration.millis(100), mesaPane);
-                fade.setToValue(0.85);
-                fade.play();
+                animador.opacidad(mesaPane, 0.85, 100);
             }
         });
 
@@ -843,13 +996,12 @@ public class VistaSalonesController implements Initializable {
                 if (!hayColision(newX, newY, mesa.getId())) {
                     mesaPane.setLayoutX(newX);
                     mesaPane.setLayoutY(newY);
+                    indice.poner(mesa.getId(), newX, newY, MESA_SIZE, MESA_SIZE);
                     crearEfectoRastro(newX, newY);
                 } else {
                     // Indicador visual de colisión
-                    mesaPane.setEffect(new Glow(0.8));
-                    PauseTransition pause = new PauseTransition(Duration.millis(100));
-                    pause.setOnFinished(ev -> mesaPane.setEffect(null));
-                    pause.play();
+                    mesaPane.setEffect(BRILLO_COLISION);
+                    animador.despues(mesaPane, "colision", 100, () -> mesaPane.setEffect(null));
                 }
             }
         });
@@ -864,137 +1016,94 @@ public class VistaSalonesController implements Initializable {
                 double currentX = mesaPane.getLayoutX();
                 double currentY = mesaPane.getLayoutY();
 
-                final double finalX = Math.round(currentX / 10) * 10;
-                final double finalY = Math.round(currentY / 10) * 10;
-
-                TranslateTransition snap = new TranslateTransition(Duration.millis(150), mesaPane);
-                snap.setToX(finalX - currentX);
-                snap.setToY(finalY - currentY);
-                snap.setInterpolator(Interpolator.EASE_OUT);
-
-                snap.setOnFinished(ev -> {
+                // Snap a la grilla, salvo que el punto ajustado choque con otra mesa
+                double snapX = IndiceEspacial.ajustar(currentX, PASO_GRILLA);
+                double snapY = IndiceEspacial.ajustar(currentY, PASO_GRILLA);
+                boolean snapLibre = !hayColision(snapX, snapY, mesa.getId());
+                final double finalX = snapLibre ? snapX : currentX;
+                final double finalY = snapLibre ? snapY : currentY;
+                indice.poner(mesa.getId(), finalX, finalY, MESA_SIZE, MESA_SIZE);
+
+                double dx = finalX - currentX, dy = finalY - currentY;
+                animador.animar(mesaPane, "snap", 0, 150, Interpolator.EASE_OUT, t -> {
+                    mesaPane.setTranslateX(dx * t);
+                    mesaPane.setTranslateY(dy * t);
+                }, () -> {
                     mesaPane.setLayoutX(finalX);
                     mesaPane.setLayoutY(finalY);
                     mesaPane.setTranslateX(0);
                     mesaPane.setTranslateY(0);
                     mesa.actualizarPosicion(finalX, finalY);
+                    mesaMovida(mesa);
 
                     System.out.println("📍 Mesa " + mesa.getIdentificador()
                             + " reposicionada: (" + finalX + ", " + finalY + ")");
                 });
-
-                ScaleTransition scale = new ScaleTransition(Duration.millis(200), mesaPane);
-                scale.setToX(1.0);
-                scale.setToY(1.0);
-                scale.setInterpolator(Interpolator.EASE_OUT);
-
-                FadeTransition fade = new FadeTransition(Duration.millis(200), mesaPane);
-                fade.setToValue(1.0);
-
-                Timeline shadowAnim = new Timeline(
-                        new KeyFrame(Duration.millis(200),
-                                new KeyValue(sombra.radiusProperty(), 8, Interpolator.EASE_OUT),
-                                new KeyValue(sombra.offsetYProperty(), 3, Interpolator.EASE_OUT)
-                        )
-                );
-
-                ParallelTransition parallel = new ParallelTransition(snap, scale, fade);
-                parallel.play();
-                shadowAnim.play();
+                animador.escalar(mesaPane, 1.0, 200);
+                animador.opacidad(mesaPane, 1.0, 200);
             } else {
                 // Si no hubo drag (fue solo un clic), restaurar escala
-                ScaleTransition scale = new ScaleTransition(Duration.millis(150), mesaPane);
-                scale.setToX(1.0);
-                scale.setToY(1.0);
-
-                FadeTransition fade = new FadeTransition(Duration.millis(150), mesaPane);
-                fade.setToValue(1.0);
-
-                Timeline shadowAnim = new Timeline(
-                        new KeyFrame(Duration.millis(150),
-                                new KeyValue(sombra.radiusProperty(), 8, Interpolator.EASE_OUT),
-                                new KeyValue(sombra.offsetYProperty(), 3, Interpolator.EASE_OUT)
-                        )
-                );
-
-                ParallelTransition parallel = new ParallelTransition(scale, fade);
-                parallel.play();
-                shadowAnim.play();
+                animador.escalar(mesaPane, 1.0, 150);
+                animador.opacidad(mesaPane, 1.0, 150);
             }
+            fondo.setEffect(SOMBRA_MESA);
         });
     }
 
-
+    /**
+     * Rastro del arrastre: un anillo fijo de círculos que se reutilizan en
+     * vez de crear un nodo y una transición por cada movimiento del mouse.
+     */
     private void crearEfectoRastro(double x, double y) {
-        Circle rastro = new Circle(5);
-        rastro.setFill(Color.rgb(255, 193, 7, 0.4));
-        rastro.setCenterX(x + 45);
-        rastro.setCenterY(y + 45);
-
-        panelMesas.getChildren().add(0, rastro);
-
-        FadeTransition fade = new FadeTransition(Duration.millis(500), rastro);
-        fade.setFromValue(0.4);
-        fade.setToValue(0);
-        fade.setOnFinished(e -> panelMesas.getChildren().remove(rastro));
-        fade.play();
+        Circle punto = rastro[rastroPos];
+        if (punto == null) {
+            punto = new Circle(5, Color.rgb(255, 193, 7));
+            punto.setMouseTransparent(true);
+            rastro[rastroPos] = punto;
+        }
+        rastroPos = (rastroPos + 1) % MAX_RASTRO;
+
+        punto.setCenterX(x + 45);
+        punto.setCenterY(y + 45);
+        if (punto.getParent() != panelMesas) {
+            panelMesas.getChildren().add(0, punto);
+        }
+        Circle p = punto;
+        p.setOpacity(0.4);
+        animador.animar(p, "opacidad", 0, 500, Interpolator.LINEAR, t -> p.setOpacity(0.4 * (1 - t)), null);
     }
 
     /**
-     * ⭐ MODIFICADO: Ahora también verifica colisión con zona de facturación
+     * ⭐ MODIFICADO: Ahora también verifica colisión con zona de facturación.
+     * Consulta el índice espacial: solo se revisan las celdas vecinas.
      */
     private boolean hayColision(double x, double y, Long mesaIdActual) {
-        double x1 = x - MARGEN_ENTRE_MESAS;
-        double y1 = y - MARGEN_ENTRE_MESAS;
-        double x2 = x + MESA_SIZE + MARGEN_ENTRE_MESAS;
-        double y2 = y + MESA_SIZE + MARGEN_ENTRE_MESAS;
-
-        // ⭐ Verificar colisión con zona de facturación
-        if (zonaFacturacion != null && zonaFacturacion.isVisible()) {
-            double zonaX1 = zonaFacturacion.getLayoutX();
-            double zonaY1 = zonaFacturacion.getLayoutY();
-            double zonaX2 = zonaX1 + ZONA_FACTURACION_SIZE;
-            double zonaY2 = zonaY1 + ZONA_FACTURACION_SIZE;
-
-            boolean colisionX = x1 < zonaX2 && x2 > zonaX1;
-            boolean colisionY = y1 < zonaY2 && y2 > zonaY1;
-
-            if (colisionX && colisionY) {
-                return true; // Hay colisión con zona de facturación
-            }
-        }
-
-        // Verificar colisión con otras mesas
-        for (Mesa otraMesa : salonActual.getMesas()) {
-            if (otraMesa.getId().equals(mesaIdActual)) {
-                continue;
-            }
-
-            StackPane otraMesaPane = mapaMesasVista.get(otraMesa.getId());
-            if (otraMesaPane == null) {
-                continue;
-            }
-
-            double otroX = otraMesaPane.getLayoutX();
-            double otroY = otraMesaPane.getLayoutY();
-
-            double otroX1 = otroX;
-            double otroY1 = otroY;
-            double otroX2 = otroX + MESA_SIZE;
-            double otroY2 = otroY + MESA_SIZE;
+        return indice.hayColision(
+                x - MARGEN_ENTRE_MESAS, y - MARGEN_ENTRE_MESAS,
+                x + MESA_SIZE + MARGEN_ENTRE_MESAS, y + MESA_SIZE + MARGEN_ENTRE_MESAS,
+                mesaIdActual);
+    }
 
-            boolean colisionX = x1 < otroX2 && x2 > otroX1;
-            boolean colisionY = y1 < otroY2 && y2 > otroY1;
+    /**
+     * Hueco libre más cercano a (x, y) alineado a la grilla, o null si el
+     * salón está lleno.
+     */
+    private double[] espacioLibreCercano(double x, double y) {
+        return indice.libreMasCercano(x, y, MESA_SIZE, MESA_SIZE, MARGEN_ENTRE_MESAS, PASO_GRILLA,
+                MARGEN_BORDE, MARGEN_BORDE,
+                panelMesas.getWidth() - MESA_SIZE - MARGEN_BORDE,
+                panelMesas.getHeight() - MESA_SIZE - MARGEN_BORDE);
+    }
 
-            if (colisionX && colisionY) {
-                return true;
-            }
-        }
+    private void configurarMenuContextual(StackPane mesaPane, Mesa mesa) {
+        ContextMenu menu = crearMenuMesa(mesa);
 
-        return false;
+        mesaPane.setOnContextMenuRequested(e -> {
+            menu.show(mesaPane, e.getScreenX(), e.getScreenY());
+        });
     }
 
-    private void configurarMenuContextual(StackPane mesaPane, Mesa mesa) {
+    private ContextMenu crearMenuMesa(Mesa mesa) {
         ContextMenu menu = new ContextMenu();
         menu.setStyle("-fx-background-color: white; -fx-padding: 5; -fx-effect: dropshadow(gaussian, rgba(0,0,0,0.2), 10, 0, 0, 3);");
 
@@ -1007,10 +1116,7 @@ public class VistaSalonesController implements Initializable {
         itemEliminar.setOnAction(e -> eliminarMesa(mesa));
 
         menu.getItems().addAll(itemEditar, itemEliminar);
-
-        mesaPane.setOnContextMenuRequested(e -> {
-            menu.show(mesaPane, e.getScreenX(), e.getScreenY());
-        });
+        return menu;
     }
 
     private void editarIdentificadorMesa(Mesa mesa) {
@@ -1073,12 +1179,19 @@ public class VistaSalonesController implements Initializable {
             Map<String, Object> response = RestClient.parseResponse(jsonResponse);
 
             if (Boolean.TRUE.equals(response.get("success"))) {
+                indice.quitar(mesa.getId());
+                if (disenoPendiente != null) {
+                    disenoPendiente.quitar(mesa.getId());
+                }
                 StackPane mesaPane = mapaMesasVista.get(mesa.getId());
                 if (mesaPane != null) {
                     animarSalidaMesa(mesaPane, () -> {
                         salonActual.getMesas().remove(mesa);
                         mostrarMesasEnPanel(salonActual);
                     });
+                } else if (enPlano()) {
+                    salonActual.getMesas().remove(mesa);
+                    mostrarMesasEnPanel(salonActual);
                 }
 
                 Mensaje.showSuccess("Éxito", I18n.isSpanish()
@@ -1094,30 +1207,21 @@ public class VistaSalonesController implements Initializable {
     }
 
     private void animarSalidaMesa(StackPane mesaPane, Runnable callback) {
-        ScaleTransition scale = new ScaleTransition(Duration.millis(300), mesaPane);
-        scale.setToX(0);
-        scale.setToY(0);
-        scale.setInterpolator(Interpolator.EASE_IN);
-
-        FadeTransition fade = new FadeTransition(Duration.millis(300), mesaPane);
-        fade.setToValue(0);
-
-        RotateTransition rotate = new RotateTransition(Duration.millis(300), mesaPane);
-        rotate.setByAngle(180);
-
-        ParallelTransition parallel = new ParallelTransition(scale, fade, rotate);
-        parallel.setOnFinished(e -> {
-            if (callback != null) {
-                callback.run();
-            }
-        });
-        parallel.play();
+        double escala = mesaPane.getScaleX(), opacidad = mesaPane.getOpacity(), giro = mesaPane.getRotate();
+        animador.detener(mesaPane);
+        animador.animar(mesaPane, "salida", 0, 300, Interpolator.EASE_IN, t -> {
+            mesaPane.setScaleX(escala * (1 - t));
+            mesaPane.setScaleY(escala * (1 - t));
+            mesaPane.setOpacity(opacidad * (1 - t));
+            mesaPane.setRotate(giro + 180 * t);
+        }, callback);
     }
 
     // ==================== EVENTOS DE BOTONES ====================
     @FXML
     private void onVolver(ActionEvent event) {
-        if (modoEdicion) {
+        guardadoDelay.stop();
+        if (disenoPendiente != null && disenoPendiente.hayPendientes()) {
             boolean confirmar = Mensaje.showConfirmation(
                     "Confirmar",
                     I18n.isSpanish()
@@ -1126,6 +1230,8 @@ public class VistaSalonesController implements Initializable {
             );
             if (confirmar) {
                 guardarDisenoSilencioso();
+            } else {
+                disenoPendiente.descartar();
             }
         }
         FlowController.getInstance().goToView("MenuPrincipal", "RestUNA - Menú Principal", 1200, 800);
@@ -1142,65 +1248,171 @@ public class VistaSalonesController implements Initializable {
             return;
         }
 
-        try {
-            List<Mesa> mesasActualizadas = new ArrayList<>();
-            for (Mesa mesa : salonActual.getMesas()) {
-                mesasActualizadas.add(mesa.toUpdateDTO());
+        guardadoDelay.stop();
+        if (disenoPendiente == null) {
+            // No se movió nada en este salón
+            mostrarGuardado();
+            return;
+        }
+
+        // Se encadena tras el guardado automático que pueda estar en vuelo:
+        // el éxito se muestra solo cuando el backend respondió a ambos
+        TableLayoutWriter diseno = disenoPendiente;
+        CompletableFuture<TableLayoutWriter.Resultado> previo = diseno.getEnvioEnCurso();
+        diseno.flushAsync().whenComplete((r, error) -> {
+            if (!vistaActiva()) return;
+            if (error != null) {
+                if (IoScheduler.isCancelacion(error)) return;
+                Log.warn("Salones", "Error al guardar diseño: " + error.getMessage());
+                Mensaje.showError("Error", "Error al guardar diseño:\n" + error.getMessage());
+            } else if (r.getError() != null) {
+                Mensaje.showError("Error", r.getError());
+            } else if (r.getRechazo() != null) {
+                reportarRechazo(r);
+            } else if (!r.getConflictos().isEmpty()) {
+                reportarConflictos(r.getConflictos());
+            } else if (previoGuardado(previo)) {
+                mostrarGuardado();
             }
+            // Si el envío previo tuvo conflicto o rechazo, ya lo avisó su propio callback
+        });
+    }
 
-            String jsonResponse = RestClient.put("/salones/mesas/posiciones", mesasActualizadas);
-            Map<String, Object> response = RestClient.parseResponse(jsonResponse);
+    /** El envío previo terminó sin conflictos ni rechazo (un error de red se reintentó en el siguiente). */
+    private static boolean previoGuardado(CompletableFuture<TableLayoutWriter.Resultado> previo) {
+        if (previo.isCompletedExceptionally()) return true;
+        TableLayoutWriter.Resultado p = previo.getNow(null);
+        return p == null || (p.getRechazo() == null && p.getConflictos().isEmpty());
+    }
 
-            if (Boolean.TRUE.equals(response.get("success"))) {
-                mostrarAnimacionGuardado();
+    private void mostrarGuardado() {
+        mostrarAnimacionGuardado();
+        Mensaje.showSuccess("Éxito", I18n.isSpanish()
+                ? "✅ Diseño guardado correctamente."
+                : "✅ Design saved successfully.");
+    }
 
-                Mensaje.showSuccess("Éxito", I18n.isSpanish()
-                        ? "✅ Diseño guardado correctamente."
-                        : "✅ Design saved successfully.");
-            } else {
-                Mensaje.showError("Error", response.get("message").toString());
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            Mensaje.showError("Error", "Error al guardar diseño:\n" + e.getMessage());
-        }
+    /** false tras salir de la pantalla: los callbacks globales ya no muestran nada. */
+    private boolean vistaActiva() {
+        return panelMesas.getScene() != null;
     }
 
     private void mostrarAnimacionGuardado() {
         String estiloOriginal = panelMesas.getStyle();
-
-        Timeline flash = new Timeline(
-                new KeyFrame(Duration.ZERO, e -> {
-                    panelMesas.setStyle(estiloOriginal + "-fx-border-color: #28a745; -fx-border-width: 4;");
-                }),
-                new KeyFrame(Duration.millis(200), e -> {
-                    panelMesas.setStyle(estiloOriginal);
-                }),
-                new KeyFrame(Duration.millis(400), e -> {
-                    panelMesas.setStyle(estiloOriginal + "-fx-border-color: #28a745; -fx-border-width: 4;");
-                }),
-                new KeyFrame(Duration.millis(600), e -> {
-                    panelMesas.setStyle(estiloOriginal);
-                })
-        );
-        flash.play();
+        String estiloFlash = estiloOriginal + "-fx-border-color: #28a745; -fx-border-width: 4;";
+
+        // Dos destellos de 200 ms; el estilo solo se toca al cambiar de fase
+        int[] fase = {-1};
+        animador.animar(panelMesas, "guardado", 0, 800, Interpolator.LINEAR, t -> {
+            int f = Math.min(3, (int) (t * 4));
+            if (f != fase[0]) {
+                fase[0] = f;
+                panelMesas.setStyle(f % 2 == 0 ? estiloFlash : estiloOriginal);
+            }
+        }, () -> panelMesas.setStyle(estiloOriginal));
     }
 
+    /**
+     * Envía en segundo plano solo las mesas movidas; sin cambios no hace nada.
+     */
     private void guardarDisenoSilencioso() {
-        if (salonActual == null || salonActual.getMesas().isEmpty()) {
+        guardadoDelay.stop();
+        if (disenoPendiente == null || !disenoPendiente.hayPendientes()) {
             return;
         }
+        Long salonId = disenoPendiente.getSalonId();
+        disenoPendiente.flushAsync().whenComplete((r, error) -> {
+            if (error != null) {
+                Log.warn("Salones", "Error al guardar diseño del salón " + salonId + ": " + error.getMessage());
+            } else if (!r.isOk()) {
+                Log.warn("Salones", "Diseño del salón " + salonId + ": error=" + r.getError()
+                        + ", rechazo=" + r.getRechazo() + ", conflictos=" + r.getConflictos().size());
+            }
+        });
+    }
 
-        try {
-            List<Mesa> mesasActualizadas = new ArrayList<>();
-            for (Mesa mesa : salonActual.getMesas()) {
-                mesasActualizadas.add(mesa.toUpdateDTO());
+    // ==================== GUARDADO INCREMENTAL DEL DISEÑO ====================
+    private TableLayoutWriter diseno() {
+        if (disenoPendiente == null || !Objects.equals(disenoPendiente.getSalonId(), salonActual.getId())) {
+            enviarDiseno(); // lo que quedara del salón anterior
+            disenoPendiente = new TableLayoutWriter(salonActual.getId());
+        }
+        return disenoPendiente;
+    }
+
+    private void mesaMovida(Mesa mesa) {
+        if (salonActual == null) {
+            return;
+        }
+        diseno().marcar(mesa);
+        // Reinicia la espera: el diseño se guarda cuando se deja de mover mesas
+        guardadoDelay.stop();
+        guardadoDelay.playFromStart();
+    }
+
+    /** Guarda lo pendiente en segundo plano y avisa si hubo conflictos. */
+    private void enviarDiseno() {
+        guardadoDelay.stop();
+        TableLayoutWriter diseno = disenoPendiente;
+        if (diseno == null || !diseno.hayPendientes()) {
+            return;
+        }
+        diseno.flushAsync().whenComplete((r, error) -> {
+            if (error != null) {
+                if (IoScheduler.isCancelacion(error)) return;
+                Log.warn("Salones", "Error al guardar diseño: " + error.getMessage());
+                return;
+            }
+            boolean mismoSalon = vistaActiva() && salonActual != null
+                    && Objects.equals(salonActual.getId(), diseno.getSalonId());
+            if (r.getError() != null) {
+                Log.warn("Salones", "Diseño no guardado (queda pendiente): " + r.getError());
+            } else if (!mismoSalon) {
+                if (!r.isOk()) {
+                    Log.warn("Salones", "Diseño del salón " + diseno.getSalonId() + ": rechazo=" + r.getRechazo()
+                            + ", conflictos=" + r.getConflictos().size());
+                }
+            } else if (r.getRechazo() != null) {
+                reportarRechazo(r);
+            } else if (!r.getConflictos().isEmpty()) {
+                reportarConflictos(r.getConflictos());
             }
+        });
+    }
 
-            RestClient.put("/salones/mesas/posiciones", mesasActualizadas);
-        } catch (Exception e) {
-            System.err.println("Error al guardar diseño: " + e.getMessage());
+    /**
+     * Otra terminal movió estas mesas antes: se avisa y se recarga el salón
+     * para mostrar las posiciones y versiones actuales.
+     */
+    private void reportarConflictos(List<Mesa> conflictos) {
+        StringBuilder mesas = new StringBuilder();
+        for (Mesa m : conflictos) {
+            mesas.append("\n• ").append(m.getIdentificador());
         }
+        Mensaje.showWarning(
+                I18n.isSpanish() ? "Conflicto" : "Conflict",
+                (I18n.isSpanish()
+                        ? "Estas mesas fueron movidas desde otra terminal y no se guardaron:"
+                        : "These tables were moved from another terminal and were not saved:")
+                + mesas);
+        cargarMesasSalon(salonActual);
+    }
+
+    /**
+     * El backend rechazó el guardado (no por conflicto): se muestra su
+     * mensaje y se recarga el salón, descartando esas posiciones locales.
+     */
+    private void reportarRechazo(TableLayoutWriter.Resultado r) {
+        StringBuilder mesas = new StringBuilder();
+        for (Mesa m : r.getRechazadas()) {
+            mesas.append("\n• ").append(m.getIdentificador());
+        }
+        Mensaje.showError("Error",
+                (I18n.isSpanish()
+                        ? "El servidor rechazó las nuevas posiciones de estas mesas:"
+                        : "The server rejected the new positions of these tables:")
+                + mesas + "\n\n" + r.getRechazo());
+        cargarMesasSalon(salonActual);
     }
 
     private void agregarNuevaMesa(double x, double y) {
@@ -1224,10 +1436,23 @@ public class VistaSalonesController implements Initializable {
                     panelMesas.getHeight() - MESA_SIZE - MARGEN_BORDE));
 
             if (hayColision(posX, posY, -1L)) {
-                Mensaje.showWarning("Error", I18n.isSpanish()
-                        ? "No hay espacio suficiente en esa ubicación. Intente en otro lugar."
-                        : "Not enough space at that location. Try another place.");
-                return;
+                double[] libre = espacioLibreCercano(posX, posY);
+                if (libre == null) {
+                    Mensaje.showWarning("Error", I18n.isSpanish()
+                            ? "No hay espacio suficiente en esa ubicación. Intente en otro lugar."
+                            : "Not enough space at that location. Try another place.");
+                    return;
+                }
+                boolean usarLibre = Mensaje.showConfirmation(
+                        I18n.isSpanish() ? "Sin espacio" : "No space",
+                        I18n.isSpanish()
+                        ? "No hay espacio suficiente en esa ubicación.\n¿Colocar la mesa en el espacio libre más cercano?"
+                        : "Not enough space at that location.\nPlace the table in the nearest free spot?");
+                if (!usarLibre) {
+                    return;
+                }
+                posX = libre[0];
+                posY = libre[1];
             }
 
             try {
@@ -1258,6 +1483,8 @@ public class VistaSalonesController implements Initializable {
         StackPane mesaPane = mapaMesasVista.get(mesa.getId());
         if (mesaPane != null) {
             animarSeleccionMesa(mesaPane);
+        } else if (enPlano()) {
+            plano.animarSeleccion(mesa);
         }
 
         Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
@@ -1305,16 +1532,7 @@ public class VistaSalonesController implements Initializable {
     }
 
     private void animarSeleccionMesa(StackPane mesaPane) {
-        ScaleTransition scale1 = new ScaleTransition(Duration.millis(100), mesaPane);
-        scale1.setToX(1.15);
-        scale1.setToY(1.15);
-
-        ScaleTransition scale2 = new ScaleTransition(Duration.millis(100), mesaPane);
-        scale2.setToX(1.0);
-        scale2.setToY(1.0);
-
-        SequentialTransition seq = new SequentialTransition(scale1, scale2);
-        seq.play();
+        animador.rebote(mesaPane, 1.15, 200);
     }
 
     // ==================== ACTUALIZACIÓN DE TEXTOS ====================
@@ -1333,4 +1551,10 @@ public class VistaSalonesController implements Initializable {
         lblOcupada.setText(esEspanol ? "Ocupada" : "Occupied");
         lblEdicion.setText(esEspanol ? "Modo Edición" : "Edit Mode");
     }
-}
\ No newline at end of file
+
+    private static DropShadow sombra(double radio, double offsetY, double alfa) {
+        DropShadow sombra = new DropShadow(radio, Color.rgb(0, 0, 0, alfa));
+        sombra.setOffsetY(offsetY);
+        return sombra;
+    }
+}
@@ -22,6 +22,10 @@ public class Mesa {
     private String estado; // LIBRE, OCUPADA
     private Long version;
     
+    // Última posición confirmada por el backend (transient: no viaja en JSON)
+    private transient Double posicionXGuardada;
+    private transient Double posicionYGuardada;
+    
     // Clase interna para manejar la referencia mínima al salón
     public static class SalonReference {
         private Long id;
@@ -144,10 +148,30 @@ public class Mesa {
      * Actualiza la posición de la mesa (para drag & drop)
      */
     public void actualizarPosicion(Double x, Double y) {
+        if (posicionXGuardada == null) {
+            // Primera vez que se mueve desde que se cargó: la actual es la guardada
+            marcarPosicionGuardada();
+        }
         this.posicionX = x;
         this.posicionY = y;
     }
     
+    /**
+     * Verifica si la posición cambió desde la última vez que se guardó
+     */
+    public boolean isPosicionModificada() {
+        return posicionXGuardada != null
+                && (!posicionXGuardada.equals(getPosicionX()) || !posicionYGuardada.equals(getPosicionY()));
+    }
+    
+    /**
+     * Toma la posición actual como la guardada en el backend
+     */
+    public void marcarPosicionGuardada() {
+        this.posicionXGuardada = getPosicionX();
+        this.posicionYGuardada = getPosicionY();
+    }
+    
     /**
      * Crea una copia simple de la mesa para enviar al backend
      * (solo con los campos necesarios para actualizar)
@@ -157,6 +181,7 @@ public class Mesa {
         dto.setId(this.id);
         dto.setPosicionX(this.posicionX);
         dto.setPosicionY(this.posicionY);
+        dto.setVersion(this.version); // para control de concurrencia optimista
         return dto;
     }
     
@@ -61,6 +61,11 @@ public class Salon {
     public boolean isBarra() { return "BARRA".equals(this.tipo); }
     public boolean cobraServicio() { return "S".equals(this.cobraServicio); }
     public boolean isActivo() { return "A".equals(this.estado); }
+
+    /** En listados resumidos no vienen los bytes; tipoImagen indica que existe. */
+    public boolean tieneImagen() {
+        return (imagenMesa != null && imagenMesa.length > 0) || (tipoImagen != null && !tipoImagen.isBlank());
+    }
     
     @Override
     public String toString() { return nombre; }
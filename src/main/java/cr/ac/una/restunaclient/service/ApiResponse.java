@@ -0,0 +1,274 @@
+package cr.ac.una.restunaclient.service;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.util.function.Consumer;
+
+/**
+ * Respuesta tipada del backend: { "success": ..., "message": ..., "data": ... }.
+ *
+ * A diferencia de {@link RestClient#parseResponse(String)} (que arma un Map y
+ * obliga a re-serializar "data" para convertirlo a POJO), aquí el envelope se
+ * lee en una sola pasada con un JsonReader y "data" se decodifica directo al
+ * tipo destino.
+ *
+ * Mantiene la misma tolerancia que parseResponse:
+ *  - Objeto JSON sin "success" -> success = true
+ *  - Arreglo JSON suelto       -> se toma como "data"
+ *  - "true" / "false"          -> success sin data
+ *  - Texto plano / HTML        -> success = false, message = texto (raw = true)
+ *
+ * @param <T> tipo de "data"
+ */
+public class ApiResponse<T> {
+
+    private boolean success;
+    private String message;
+    private T data;
+    private boolean raw;
+    private boolean dataNoLista;
+
+    /** Tope de caracteres que se leen de un cuerpo que no es JSON. */
+    private static final int MAX_TEXTO = 64 * 1024;
+
+    private ApiResponse() {}
+
+    public boolean isSuccess() { return success; }
+    public String getMessage() { return message; }
+    public T getData() { return data; }
+
+    /** true si el backend no devolvió JSON (HTML de error, texto plano...). */
+    public boolean isRaw() { return raw; }
+
+    /**
+     * true si en {@link #decodeEach} "data" no era un arreglo (p. ej. un
+     * objeto de error): no se entregó ningún elemento, igual que la lista
+     * vacía que devolvía extractList.
+     */
+    public boolean isDataNoLista() { return dataNoLista; }
+
+    /** Crea una respuesta fallida con el mensaje indicado. */
+    public static <T> ApiResponse<T> error(String message) {
+        ApiResponse<T> r = new ApiResponse<>();
+        r.success = false;
+        r.message = message;
+        return r;
+    }
+
+    // ==================== DECODIFICACIÓN ====================
+
+    /**
+     * Decodifica una respuesta ya leída como String.
+     */
+    public static <T> ApiResponse<T> decode(String body, Type dataType, Gson gson) {
+        return decode(new StringReader(body == null ? "" : body), dataType, gson);
+    }
+
+    /**
+     * Decodifica en streaming desde un Reader (p. ej. el contenido de la
+     * entidad HTTP). Nunca arma un árbol intermedio ni un String del cuerpo.
+     */
+    public static <T> ApiResponse<T> decode(Reader body, Type dataType, Gson gson) {
+        @SuppressWarnings("unchecked")
+        TypeAdapter<T> adapter = (TypeAdapter<T>) gson.getAdapter(TypeToken.get(dataType));
+        ApiResponse<T> out = new ApiResponse<>();
+        try {
+            BufferedReader br = toBuffered(body);
+            int first = firstNonBlank(br);
+            if (first == -1) {
+                return error("Respuesta vacía del servidor");
+            }
+            if (first != '{' && first != '[') {
+                return fromPlainText(readLimited(br));
+            }
+
+            JsonReader in = new JsonReader(br);
+            in.setLenient(true);
+            if (first == '{') {
+                readEnvelope(in, out, (reader) -> {
+                    out.data = adapter.read(reader);
+                });
+            } else {
+                out.success = true;
+                out.message = "OK";
+                out.data = adapter.read(in);
+            }
+            return out;
+        } catch (IOException | RuntimeException ex) {
+            return invalid(ex);
+        }
+    }
+
+    /**
+     * Decodifica "data" (un arreglo) elemento por elemento, entregando cada uno
+     * al consumidor sin acumular la lista. La memoria pico no crece con el
+     * tamaño del resultado. "data" de la respuesta es la cantidad entregada.
+     * Si "data" no es un arreglo no se entrega nada y se marca
+     * {@link #isDataNoLista()}.
+     */
+    public static <E> ApiResponse<Integer> decodeEach(Reader body, Type elementType, Gson gson, Consumer<E> onElement) {
+        @SuppressWarnings("unchecked")
+        TypeAdapter<E> adapter = (TypeAdapter<E>) gson.getAdapter(TypeToken.get(elementType));
+        ApiResponse<Integer> out = new ApiResponse<>();
+        int[] count = {0};
+        try {
+            BufferedReader br = toBuffered(body);
+            int first = firstNonBlank(br);
+            if (first == -1) {
+                return error("Respuesta vacía del servidor");
+            }
+            if (first != '{' && first != '[') {
+                return fromPlainText(readLimited(br));
+            }
+
+            JsonReader in = new JsonReader(br);
+            in.setLenient(true);
+            if (first == '{') {
+                readEnvelope(in, out, (reader) -> readEach(reader, adapter, onElement, count, out));
+            } else {
+                out.success = true;
+                out.message = "OK";
+                readEach(in, adapter, onElement, count, out);
+            }
+            out.data = count[0];
+            return out;
+        } catch (IOException | RuntimeException ex) {
+            return invalid(ex);
+        }
+    }
+
+    private static <E> void readEach(JsonReader in, TypeAdapter<E> adapter, Consumer<E> onElement,
+                                     int[] count, ApiResponse<?> out) throws IOException {
+        if (in.peek() != JsonToken.BEGIN_ARRAY) {
+            // "data" no es lista (p. ej. un objeto de error): lista vacía
+            in.skipValue();
+            out.dataNoLista = true;
+            return;
+        }
+        in.beginArray();
+        while (in.hasNext()) {
+            onElement.accept(adapter.read(in));
+            count[0]++;
+        }
+        in.endArray();
+    }
+
+    /** Lector del valor de "data" dentro del envelope. */
+    private interface DataReader {
+        void read(JsonReader in) throws IOException;
+    }
+
+    private static void readEnvelope(JsonReader in, ApiResponse<?> out, DataReader dataReader) throws IOException {
+        boolean successVisto = false;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            switch (name) {
+                case "success":
+                    if (in.peek() == JsonToken.BOOLEAN) {
+                        out.success = in.nextBoolean();
+                        successVisto = true;
+                    } else if (in.peek() == JsonToken.STRING) {
+                        out.success = Boolean.parseBoolean(in.nextString());
+                        successVisto = true;
+                    } else {
+                        in.skipValue();
+                    }
+                    break;
+                case "message":
+                    JsonToken t = in.peek();
+                    if (t == JsonToken.STRING || t == JsonToken.NUMBER) {
+                        out.message = in.nextString();
+                    } else if (t == JsonToken.BOOLEAN) {
+                        out.message = String.valueOf(in.nextBoolean());
+                    } else {
+                        in.skipValue();
+                    }
+                    break;
+                case "data":
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    } else {
+                        dataReader.read(in);
+                    }
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+
+        // Igual que parseResponse: si no viene "success", se asume éxito
+        if (!successVisto) {
+            out.success = true;
+        }
+    }
+
+    // ---------------------- Util ----------------------
+
+    private static BufferedReader toBuffered(Reader r) {
+        return (r instanceof BufferedReader) ? (BufferedReader) r : new BufferedReader(r);
+    }
+
+    /** Devuelve el primer carácter no blanco sin consumirlo (-1 si no hay). */
+    private static int firstNonBlank(BufferedReader br) throws IOException {
+        while (true) {
+            br.mark(1);
+            int c = br.read();
+            if (c == -1) return -1;
+            if (!Character.isWhitespace(c)) {
+                br.reset();
+                return c;
+            }
+        }
+    }
+
+    /** Lee a lo sumo MAX_TEXTO caracteres (para mensajes de texto/HTML). */
+    private static String readLimited(BufferedReader br) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buf = new char[2048];
+        int n;
+        while (sb.length() < MAX_TEXTO && (n = br.read(buf)) != -1) {
+            sb.append(buf, 0, Math.min(n, MAX_TEXTO - sb.length()));
+        }
+        return sb.toString().trim();
+    }
+
+    private static <T> ApiResponse<T> invalid(Exception ex) {
+        ApiResponse<T> err = error("JSON inválido: " + ex.getMessage());
+        err.raw = true;
+        return err;
+    }
+
+    private static <T> ApiResponse<T> fromPlainText(String txt) {
+        if ("true".equalsIgnoreCase(txt)) {
+            ApiResponse<T> ok = new ApiResponse<>();
+            ok.success = true;
+            ok.message = "OK";
+            return ok;
+        }
+        if ("false".equalsIgnoreCase(txt)) {
+            return error("Operación no exitosa");
+        }
+        if (txt.length() >= 2 && txt.startsWith("\"") && txt.endsWith("\"")) {
+            txt = txt.substring(1, txt.length() - 1);
+        }
+        ApiResponse<T> err = error(txt);
+        err.raw = true;
+        return err;
+    }
+
+    @Override
+    public String toString() {
+        return "ApiResponse{success=" + success + ", message=" + message + ", raw=" + raw + "}";
+    }
+}
@@ -0,0 +1,327 @@
+package cr.ac.una.restunaclient.service;
+
+import com.google.gson.reflect.TypeToken;
+import cr.ac.una.restunaclient.model.GrupoProducto;
+import cr.ac.una.restunaclient.model.Producto;
+import cr.ac.una.restunaclient.util.IoScheduler;
+import cr.ac.una.restunaclient.util.Log;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Catálogo de productos y grupos compartido por las pantallas de venta.
+ *
+ * Se carga una sola vez (/productos, /grupos y /grupos/ventas, en paralelo)
+ * y arma índices por id, por grupo, de menú rápido, por ventas y de texto
+ * ({@link ProductSearchIndex}). {@link #precalentar()} lo carga en segundo
+ * plano (tras el login) para que el menú rápido salga de memoria.
+ * Las consultas devuelven vistas de solo lectura sobre esos índices: no
+ * copian ni recorren la lista.
+ *
+ * Los índices se reconstruyen completos y se publican de un solo golpe,
+ * así que quien está leyendo nunca ve un catálogo a medias; cada foto
+ * lleva un número de versión ({@link #getVersion()}). Un
+ * POST/PUT/DELETE sobre /productos o /grupos (ver {@link ResponseCache})
+ * marca el catálogo como vencido y la siguiente lectura lo recarga.
+ *
+ * Las pantallas de mantenimiento (ProductosController, GruposProductoController)
+ * siguen trabajando con sus propias copias porque editan los objetos.
+ */
+public final class CatalogService {
+
+    private static final CatalogService INSTANCE = new CatalogService();
+    private static final String TAG = "Catalogo";
+
+    private static final Type TIPO_PRODUCTOS = new TypeToken<List<Producto>>(){}.getType();
+    private static final Type TIPO_GRUPOS = new TypeToken<List<GrupoProducto>>(){}.getType();
+    private static final Type TIPO_GRUPOS_VENTAS = new TypeToken<List<Map<String, Object>>>(){}.getType();
+
+    /** Pasado este tiempo se vuelve a pedir (normalmente contesta la caché / 304). */
+    private static final long TTL = 60_000;
+
+    /** Hilos virtuales para las peticiones secundarias de la carga (sin límite del IoScheduler). */
+    private static final ExecutorService PARALELO =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("restuna-catalogo-", 0).factory());
+
+    private static final Comparator<Producto> POR_VENTAS_DESC =
+            Comparator.comparingLong((Producto p) -> p.getTotalVentas() == null ? 0L : p.getTotalVentas()).reversed();
+
+    private volatile Indices indices = Indices.VACIO;
+    private volatile boolean vencido = true;
+    private volatile long cargadoEn = 0;
+    private long versiones = 0;
+    private final AtomicReference<CompletableFuture<CatalogService>> precarga = new AtomicReference<>();
+
+    private CatalogService() {
+        ResponseCache.getInstance().addInvalidationListener(raiz -> {
+            if ("/productos".equals(raiz) || "/grupos".equals(raiz)) {
+                vencido = true;
+            }
+        });
+    }
+
+    public static CatalogService getInstance() {
+        return INSTANCE;
+    }
+
+    // ==================== CARGA ====================
+
+    /**
+     * Garantiza que el catálogo esté cargado y vigente (bloqueante: llamar
+     * fuera del hilo de JavaFX o usar {@link #cargarAsync()}).
+     * @throws Exception si el backend no responde o devuelve error
+     */
+    public synchronized CatalogService cargar() throws Exception {
+        if (!vencido && System.currentTimeMillis() - cargadoEn < TTL) {
+            return this;
+        }
+
+        // Las tres peticiones viajan a la vez; /productos en este mismo hilo.
+        // Las otras dos no pasan por el IoScheduler: cargar() ya suele correr
+        // en una tarea suya y esperarlas ahí podría agotar los permisos.
+        CompletableFuture<ApiResponse<List<GrupoProducto>>> grupos = pedir("/grupos", TIPO_GRUPOS);
+        CompletableFuture<ApiResponse<List<Map<String, Object>>>> ventas = pedir("/grupos/ventas", TIPO_GRUPOS_VENTAS);
+
+        ApiResponse<List<Producto>> prods = RestClient.getTyped("/productos", TIPO_PRODUCTOS);
+        if (!prods.isSuccess()) {
+            throw new Exception(prods.getMessage() != null ? prods.getMessage() : "No se pudieron cargar los productos");
+        }
+
+        // Si /grupos o /grupos/ventas fallan, se conserva lo anterior
+        Indices previo = indices;
+        List<GrupoProducto> listaGrupos = datos(grupos, previo.grupos);
+        List<Map<String, Object>> listaVentas = datos(ventas, null);
+        listaVentas = listaVentas != null ? ordenarPorVentas(listaVentas) : previo.gruposPorVentas;
+
+        indices = new Indices(++versiones, prods.getData() != null ? prods.getData() : List.of(), listaGrupos, listaVentas);
+        vencido = false;
+        cargadoEn = System.currentTimeMillis();
+        Log.info(TAG, "Catálogo v" + indices.version + ": " + indices.productos.size() + " productos, "
+                + indices.grupos.size() + " grupos, " + indices.gruposPorVentas.size() + " grupos por ventas");
+        return this;
+    }
+
+    /**
+     * Carga asíncrona; el future se completa en el hilo de JavaFX.
+     */
+    public CompletableFuture<CatalogService> cargarAsync() {
+        return RestClient.callAsync(this::cargar);
+    }
+
+    /**
+     * Carga en segundo plano que sobrevive a la navegación (se llama tras
+     * el login y al abrir el menú rápido). Si ya hay una en curso devuelve
+     * esa misma; el future se completa en el hilo de JavaFX.
+     */
+    public CompletableFuture<CatalogService> precalentar() {
+        CompletableFuture<CatalogService> enCurso = precarga.get();
+        if (enCurso != null && !enCurso.isDone()) return enCurso;
+
+        CompletableFuture<CatalogService> nueva =
+                RestClient.callAsync(IoScheduler.getInstance().getScopeGlobal(), this::cargar);
+        precarga.set(nueva);
+        nueva.whenComplete((c, error) -> {
+            if (error != null && !IoScheduler.isCancelacion(error)) {
+                Log.warn(TAG, "No se pudo precargar el catálogo: " + error.getMessage());
+            }
+        });
+        return nueva;
+    }
+
+    /** true si hay catálogo y no venció (leerlo no dispara peticiones). */
+    public boolean isVigente() {
+        return isCargado() && !vencido && System.currentTimeMillis() - cargadoEn < TTL;
+    }
+
+    /** Si venció, lo recarga en segundo plano; mientras tanto se sigue leyendo la foto actual. */
+    public void refrescarSiVencido() {
+        if (!isVigente()) precalentar();
+    }
+
+    /** Fuerza la recarga en la próxima llamada a {@link #cargar()}. */
+    public void invalidar() {
+        vencido = true;
+    }
+
+    public boolean isCargado() {
+        return indices != Indices.VACIO;
+    }
+
+    /** Versión de la foto actual; cambia con cada recarga. */
+    public long getVersion() {
+        return indices.version;
+    }
+
+    // ==================== CONSULTAS (vistas sin copia) ====================
+
+    public List<Producto> getProductos() {
+        return indices.productos;
+    }
+
+    public List<GrupoProducto> getGrupos() {
+        return indices.grupos;
+    }
+
+    public Producto getProducto(Long id) {
+        return id == null ? null : indices.porId.get(id);
+    }
+
+    public GrupoProducto getGrupo(Long id) {
+        return id == null ? null : indices.gruposPorId.get(id);
+    }
+
+    /** Productos del grupo en el orden del backend; null -> todos. */
+    public List<Producto> getProductosDeGrupo(Long grupoId) {
+        if (grupoId == null) return indices.productos;
+        return indices.porGrupo.getOrDefault(grupoId, List.of());
+    }
+
+    /** Productos del grupo ordenados por totalVentas (desc). */
+    public List<Producto> getProductosDeGrupoPorVentas(Long grupoId) {
+        if (grupoId == null) return indices.porVentas;
+        return indices.porGrupoVentas.getOrDefault(grupoId, List.of());
+    }
+
+    /** Productos marcados para menú rápido (menuRapido = "S"). */
+    public List<Producto> getMenuRapido() {
+        return indices.menuRapido;
+    }
+
+    /** Todo el catálogo ordenado por totalVentas (desc). */
+    public List<Producto> getProductosPorVentas() {
+        return indices.porVentas;
+    }
+
+    /**
+     * Grupos de /grupos/ventas ({id, nombre, totalVentasGrupo, productos?})
+     * ordenados por totalVentasGrupo (desc). Lista vacía si aún no se cargó.
+     */
+    public List<Map<String, Object>> getGruposPorVentas() {
+        return indices.gruposPorVentas;
+    }
+
+    /** Índice de búsqueda por texto sobre todo el catálogo. */
+    public ProductSearchIndex getBuscador() {
+        return indices.busqueda;
+    }
+
+    /** Datos de una petición paralela, o el valor previo si falló. */
+    private static <T> CompletableFuture<ApiResponse<T>> pedir(String endpoint, Type tipo) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return RestClient.<T>getTyped(endpoint, tipo);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, PARALELO);
+    }
+
+    private static <T> T datos(CompletableFuture<ApiResponse<T>> peticion, T previo) {
+        try {
+            ApiResponse<T> r = peticion.get();
+            return r.isSuccess() && r.getData() != null ? r.getData() : previo;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return previo;
+        } catch (ExecutionException e) {
+            Log.warn(TAG, "Falló una parte del catálogo: " + e.getCause().getMessage());
+            return previo;
+        }
+    }
+
+    private static List<Map<String, Object>> ordenarPorVentas(List<Map<String, Object>> grupos) {
+        List<Map<String, Object>> ordenados = new ArrayList<>(grupos);
+        ordenados.sort(Comparator.comparingLong((Map<String, Object> g) -> aLong(g.get("totalVentasGrupo"))).reversed());
+        return Collections.unmodifiableList(ordenados);
+    }
+
+    private static long aLong(Object o) {
+        if (o instanceof Number n) return n.longValue();
+        try {
+            return o == null ? 0L : (long) Double.parseDouble(o.toString());
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    // ==================== ÍNDICES ====================
+
+    /**
+     * Foto inmutable del catálogo con todos sus índices.
+     */
+    private static final class Indices {
+
+        static final Indices VACIO = new Indices(0, List.of(), List.of(), List.of());
+
+        final long version;
+        final List<Producto> productos;
+        final List<GrupoProducto> grupos;
+        final Map<Long, Producto> porId;
+        final Map<Long, GrupoProducto> gruposPorId;
+        final Map<Long, List<Producto>> porGrupo;
+        final Map<Long, List<Producto>> porGrupoVentas;
+        final List<Producto> menuRapido;
+        final List<Producto> porVentas;
+        final ProductSearchIndex busqueda;
+        final List<Map<String, Object>> gruposPorVentas;
+
+        Indices(long version, List<Producto> productos, List<GrupoProducto> grupos,
+                List<Map<String, Object>> gruposPorVentas) {
+            Map<Long, GrupoProducto> gPorId = new HashMap<>();
+            for (GrupoProducto g : grupos) {
+                if (g.getId() != null) gPorId.put(g.getId(), g);
+            }
+
+            Map<Long, Producto> pPorId = new HashMap<>(productos.size() * 2);
+            Map<Long, List<Producto>> pPorGrupo = new HashMap<>();
+            List<Producto> rapido = new ArrayList<>();
+            for (Producto p : productos) {
+                if (p.getId() != null) pPorId.put(p.getId(), p);
+                Long gid = p.getGrupoId() != null ? p.getGrupoId()
+                        : (p.getGrupo() != null ? p.getGrupo().getId() : null);
+                if (gid != null) {
+                    // Enlaza el grupo para que getNombreGrupo() funcione sin buscarlo
+                    if (p.getGrupo() == null && gPorId.containsKey(gid)) p.setGrupo(gPorId.get(gid));
+                    pPorGrupo.computeIfAbsent(gid, k -> new ArrayList<>()).add(p);
+                }
+                if (p.isMenuRapido()) rapido.add(p);
+            }
+
+            Map<Long, List<Producto>> pPorGrupoVentas = new HashMap<>();
+            Map<Long, List<Producto>> pPorGrupoRO = new HashMap<>();
+            pPorGrupo.forEach((gid, lista) -> {
+                pPorGrupoRO.put(gid, Collections.unmodifiableList(lista));
+                List<Producto> ordenada = new ArrayList<>(lista);
+                ordenada.sort(POR_VENTAS_DESC);
+                pPorGrupoVentas.put(gid, Collections.unmodifiableList(ordenada));
+            });
+
+            List<Producto> ventas = new ArrayList<>(productos);
+            ventas.sort(POR_VENTAS_DESC);
+
+            this.productos = Collections.unmodifiableList(new ArrayList<>(productos));
+            this.grupos = Collections.unmodifiableList(new ArrayList<>(grupos));
+            this.porId = Collections.unmodifiableMap(pPorId);
+            this.gruposPorId = Collections.unmodifiableMap(gPorId);
+            this.porGrupo = Collections.unmodifiableMap(pPorGrupoRO);
+            this.porGrupoVentas = Collections.unmodifiableMap(pPorGrupoVentas);
+            this.menuRapido = Collections.unmodifiableList(rapido);
+            this.porVentas = Collections.unmodifiableList(ventas);
+            this.busqueda = new ProductSearchIndex(this.productos);
+            this.gruposPorVentas = gruposPorVentas;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package cr.ac.una.restunaclient.service;
+
+import cr.ac.una.restunaclient.util.IoScheduler;
+import cr.ac.una.restunaclient.util.Log;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static cr.ac.una.restunaclient.util.Propiedades.longProp;
+
+/**
+ * Cobro de una orden en un solo paso, seguro ante reintentos.
+ *
+ *   POST /facturas/checkout   (Idempotency-Key: &lt;clave&gt;)
+ *   { ...factura..., idempotencyKey }  -> crea la factura y marca la orden
+ *   como FACTURADA en la misma transacción.
+ *
+ * - Cada cobro tiene una clave generada aquí, atada a la orden y a una
+ *   huella del contenido (cliente, totales, pagos, líneas). Se reutiliza en
+ *   todos los reintentos (automáticos o del cajero) hasta que el cobro se
+ *   confirma, así el backend nunca crea dos facturas para el mismo cobro;
+ *   si el cajero cambia la venta, la huella cambia y es un cobro nuevo.
+ * - Errores de red, 408, 429 y 5xx se reintentan con espera exponencial
+ *   (-Drestuna.checkout.intentos, def. 3; -Drestuna.checkout.esperaMs,
+ *   def. 400).
+ * - Si tras los reintentos no se sabe qué pasó, se consulta la orden: si ya
+ *   está FACTURADA el cobro se da por hecho; si no, queda PENDIENTE y el
+ *   próximo intento usa la misma clave.
+ * - Si el backend no tiene /facturas/checkout (404/405), se usa el flujo
+ *   anterior (POST /facturas + POST /ordenes/{id}/facturar, o PUT del
+ *   estado). Ese POST /facturas puede no respetar la clave, así que sale
+ *   una sola vez y antes de enviarlo se busca si la orden ya tiene factura
+ *   (GET /facturas?ordenId=). Si no se puede saber, el resultado es
+ *   INCIERTO y no se reintenta solo.
+ */
+public final class CheckoutService {
+
+    private static final CheckoutService INSTANCE = new CheckoutService();
+    private static final String TAG = "Checkout";
+
+    private final int intentos = Math.max(1, (int) longProp("restuna.checkout.intentos", 3));
+    private final long esperaMs = longProp("restuna.checkout.esperaMs", 400);
+
+    /** ordenId -> cobro en curso (se borra al confirmarse). */
+    private final Map<Long, Cobro> claves = new ConcurrentHashMap<>();
+    /** Órdenes cuya factura ya se creó por el flujo anterior pero falta marcarlas. */
+    private final Set<Long> facturaCreada = ConcurrentHashMap.newKeySet();
+    /** Órdenes con un POST /facturas de resultado desconocido (flujo anterior). */
+    private final Set<Long> dudosas = ConcurrentHashMap.newKeySet();
+    /** Se apaga si el backend no tiene /facturas/checkout. */
+    private volatile boolean compuestoDisponible = true;
+
+    private CheckoutService() {}
+
+    public static CheckoutService getInstance() {
+        return INSTANCE;
+    }
+
+    // ==================== COBRO ====================
+
+    /**
+     * Cobra la orden (bloqueante).
+     * @param payload factura tal como la espera POST /facturas (ordenId, cliente, resumen, pagos, items)
+     */
+    public Resultado cobrar(Long ordenId, Map<String, Object> payload) {
+        String clave = clave(ordenId, payload);
+        Map<String, Object> body = new HashMap<>(payload);
+        body.put("idempotencyKey", clave);
+
+        if (compuestoDisponible && !facturaCreada.contains(ordenId)) {
+            Intento r = enviar("/facturas/checkout", body, clave);
+            if (r.respuesta != null && (r.respuesta.codigo() == 404 || r.respuesta.codigo() == 405)) {
+                compuestoDisponible = false;
+                Log.info(TAG, "El backend no tiene /facturas/checkout; se usa el flujo por pasos");
+            } else {
+                return cerrar(ordenId, r);
+            }
+        }
+        return cobrarPorPasos(ordenId, body, clave);
+    }
+
+    /** Cobro asíncrono en el scope global (no se cancela al navegar); completa en el hilo de JavaFX. */
+    public CompletableFuture<Resultado> cobrarAsync(Long ordenId, Map<String, Object> payload) {
+        return RestClient.callAsync(IoScheduler.getInstance().getScopeGlobal(), () -> cobrar(ordenId, payload));
+    }
+
+    /**
+     * Olvida el cobro en curso de la orden, incluida la duda sobre un POST
+     * /facturas anterior (el cajero ya verificó que no hay factura).
+     */
+    public void descartar(Long ordenId) {
+        if (ordenId == null) return;
+        claves.remove(ordenId);
+        facturaCreada.remove(ordenId);
+        dudosas.remove(ordenId);
+    }
+
+    /** Misma clave mientras no cambie el contenido del cobro. */
+    private String clave(Long ordenId, Map<String, Object> payload) {
+        String huella = huella(payload);
+        return claves.compute(ordenId, (k, c) -> c != null && c.huella().equals(huella)
+                ? c : new Cobro(huella, UUID.randomUUID().toString())).clave();
+    }
+
+    private static String huella(Map<String, Object> payload) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(RestClient.toJson(payload).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-256 siempre está en la JVM
+        }
+    }
+
+    private Resultado cerrar(Long ordenId, Intento r) {
+        if (r.respuesta == null) {
+            return reconciliar(ordenId, r.error);
+        }
+        Map<String, Object> res = RestClient.parseResponse(r.respuesta.cuerpo());
+        if (r.respuesta.isExito() && Boolean.TRUE.equals(res.get("success"))) {
+            confirmar(ordenId);
+            return new Resultado(Estado.COMPLETO, null, res.get("data"));
+        }
+        if (r.reintentable()) {
+            return reconciliar(ordenId, mensaje(res));
+        }
+        claves.remove(ordenId); // rechazado: el próximo intento es un cobro distinto
+        return new Resultado(Estado.RECHAZADO, mensaje(res), null);
+    }
+
+    /** Flujo anterior: factura y luego estado de la orden, sin repetir lo ya hecho. */
+    private Resultado cobrarPorPasos(Long ordenId, Map<String, Object> body, String clave) {
+        Object datos = null;
+        if (!facturaCreada.contains(ordenId)) {
+            // POST /facturas no es idempotente: primero ver si ya existe
+            Busqueda previa = buscarFactura(ordenId);
+            if (previa.encontrada()) {
+                Log.info(TAG, "Orden " + ordenId + " ya tenía factura; no se crea otra");
+                facturaCreada.add(ordenId);
+                datos = previa.factura();
+            } else if (!previa.sabida() && dudosas.contains(ordenId)) {
+                return incierto(ordenId, "No se pudo comprobar si la factura anterior se creó");
+            } else {
+                Intento r = enviarUnaVez("/facturas", body, clave);
+                if (r.respuesta == null || r.reintentable()) {
+                    dudosas.add(ordenId);
+                    Busqueda despues = buscarFactura(ordenId);
+                    if (!despues.encontrada()) {
+                        return incierto(ordenId, r.error != null ? r.error : mensaje(r.parse()));
+                    }
+                    datos = despues.factura();
+                } else {
+                    Map<String, Object> res = r.parse();
+                    if (!Boolean.TRUE.equals(res.get("success"))) {
+                        claves.remove(ordenId);
+                        dudosas.remove(ordenId);
+                        return new Resultado(Estado.RECHAZADO, mensaje(res), null);
+                    }
+                    datos = res.get("data");
+                }
+                facturaCreada.add(ordenId);
+                dudosas.remove(ordenId);
+            }
+        }
+
+        if (marcarFacturada(ordenId, clave) || estaFacturada(ordenId)) {
+            confirmar(ordenId);
+            return new Resultado(Estado.COMPLETO, null, datos);
+        }
+        // La factura existe; reintentar solo repetirá el cambio de estado
+        return new Resultado(Estado.PARCIAL, "No se pudo actualizar el estado de la orden", datos);
+    }
+
+    private Resultado incierto(Long ordenId, String error) {
+        Log.warn(TAG, "Factura de la orden " + ordenId + " sin confirmar (flujo anterior): " + error);
+        return new Resultado(Estado.INCIERTO, error, null);
+    }
+
+    private boolean marcarFacturada(Long ordenId, String clave) {
+        Intento r = enviar("/ordenes/" + ordenId + "/facturar", Map.of("idempotencyKey", clave), clave);
+        if (r.respuesta != null && r.respuesta.isExito() && Boolean.TRUE.equals(r.parse().get("success"))) {
+            return true;
+        }
+        try {
+            Map<String, Object> res = RestClient.parseResponse(
+                    RestClient.put("/ordenes/" + ordenId, Map.of("estado", "FACTURADA")));
+            return Boolean.TRUE.equals(res.get("success"));
+        } catch (Exception ex) {
+            Log.warn(TAG, "PUT /ordenes/" + ordenId + " falló: " + ex.getMessage());
+            return false;
+        }
+    }
+
+    // ==================== RECONCILIACIÓN ====================
+
+    /** No se sabe si el cobro llegó: lo decide el estado de la orden en el backend. */
+    private Resultado reconciliar(Long ordenId, String error) {
+        if (estaFacturada(ordenId)) {
+            Log.info(TAG, "Orden " + ordenId + " ya estaba FACTURADA; cobro confirmado al reconciliar");
+            confirmar(ordenId);
+            return new Resultado(Estado.COMPLETO, null, null);
+        }
+        Log.warn(TAG, "Cobro de la orden " + ordenId + " sin confirmar: " + error);
+        return new Resultado(Estado.PENDIENTE, error, null);
+    }
+
+    /**
+     * Factura existente de la orden: GET /facturas?ordenId= y, si eso no
+     * responde, el estado de la orden (FACTURADA implica factura).
+     */
+    private Busqueda buscarFactura(Long ordenId) {
+        try {
+            Map<String, Object> res = RestClient.parseResponse(RestClient.get("/facturas?ordenId=" + ordenId));
+            if (Boolean.TRUE.equals(res.get("success"))) {
+                Object data = res.get("data");
+                if (data instanceof Map<?, ?> f && esDeOrden(f, ordenId)) return new Busqueda(true, f);
+                if (data instanceof List<?> lista) {
+                    for (Object item : lista) {
+                        if (item instanceof Map<?, ?> f && esDeOrden(f, ordenId)) return new Busqueda(true, f);
+                    }
+                    return new Busqueda(true, null);
+                }
+            }
+        } catch (Exception ex) {
+            Log.warn(TAG, "No se pudo buscar la factura de la orden " + ordenId + ": " + ex.getMessage());
+        }
+        return estaFacturada(ordenId) ? new Busqueda(true, Map.of()) : new Busqueda(false, null);
+    }
+
+    /** Por ordenId u orden.id; no se confía en que el backend haya filtrado. */
+    private static boolean esDeOrden(Map<?, ?> factura, Long ordenId) {
+        Object id = factura.get("ordenId");
+        if (id == null && factura.get("orden") instanceof Map<?, ?> orden) id = orden.get("id");
+        return id instanceof Number n && n.longValue() == ordenId;
+    }
+
+    private boolean estaFacturada(Long ordenId) {
+        try {
+            Map<String, Object> res = RestClient.parseResponse(RestClient.get("/ordenes/" + ordenId));
+            return res.get("data") instanceof Map<?, ?> orden && "FACTURADA".equals(orden.get("estado"));
+        } catch (Exception ex) {
+            Log.warn(TAG, "No se pudo consultar la orden " + ordenId + ": " + ex.getMessage());
+            return false;
+        }
+    }
+
+    private void confirmar(Long ordenId) {
+        claves.remove(ordenId);
+        facturaCreada.remove(ordenId);
+        // La orden pasó a FACTURADA y su mesa quedó libre
+        ResponseCache.getInstance().invalidar("/ordenes");
+        ResponseCache.getInstance().invalidar("/mesas");
+    }
+
+    // ==================== ENVÍO CON REINTENTOS ====================
+
+    /** Un solo intento, para endpoints que no garantizan idempotencia. */
+    private Intento enviarUnaVez(String endpoint, Object body, String clave) {
+        try {
+            return new Intento(RestClient.postConEstado(endpoint, body, Map.of("Idempotency-Key", clave)), null);
+        } catch (Exception ex) {
+            return new Intento(null, ex.getMessage() != null ? ex.getMessage() : ex.toString());
+        }
+    }
+
+    private Intento enviar(String endpoint, Object body, String clave) {
+        Intento ultimo = null;
+        for (int i = 0; i < intentos; i++) {
+            if (i > 0) {
+                long espera = esperaMs * (1L << (i - 1));
+                try {
+                    Thread.sleep(espera + ThreadLocalRandom.current().nextLong(espera / 2 + 1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            try {
+                ultimo = new Intento(RestClient.postConEstado(endpoint, body, Map.of("Idempotency-Key", clave)), null);
+            } catch (IOException ex) {
+                ultimo = new Intento(null, ex.getMessage() != null ? ex.getMessage() : ex.toString());
+            } catch (Exception ex) {
+                return new Intento(null, ex.getMessage()); // no es de red: no se reintenta
+            }
+            if (!ultimo.reintentable()) return ultimo;
+            int n = i + 1;
+            Intento u = ultimo;
+            Log.debug(TAG, () -> endpoint + " intento " + n + "/" + intentos + " falló: "
+                    + (u.respuesta != null ? "HTTP " + u.respuesta.codigo() : u.error));
+        }
+        return ultimo != null ? ultimo : new Intento(null, "Cobro interrumpido");
+    }
+
+    private static String mensaje(Map<String, Object> res) {
+        Object m = res.get("message");
+        return m != null ? m.toString() : null;
+    }
+
+    private record Cobro(String huella, String clave) {}
+
+    /** sabida=false si no se pudo consultar; encontrada si hay factura. */
+    private record Busqueda(boolean sabida, Object factura) {
+        boolean encontrada() { return factura != null; }
+    }
+
+    private record Intento(RestClient.Respuesta respuesta, String error) {
+        boolean reintentable() {
+            if (respuesta == null) return true;
+            int c = respuesta.codigo();
+            return c == 408 || c == 429 || c >= 500;
+        }
+
+        Map<String, Object> parse() {
+            return RestClient.parseResponse(respuesta != null ? respuesta.cuerpo() : null);
+        }
+    }
+
+    // ==================== RESULTADO ====================
+
+    public enum Estado {
+        /** Factura creada y orden FACTURADA. */
+        COMPLETO,
+        /** Factura creada, pero la orden no se pudo marcar (reintentar no duplica la factura). */
+        PARCIAL,
+        /** El backend rechazó el cobro (validación, pago insuficiente...). */
+        RECHAZADO,
+        /** No se pudo confirmar; reintentar es seguro (misma clave, solo /facturas/checkout). */
+        PENDIENTE,
+        /** Flujo anterior: no se sabe si la factura se creó; verificar antes de reintentar. */
+        INCIERTO
+    }
+
+    public static final class Resultado {
+        private final Estado estado;
+        private final String mensaje;
+        private final Object datos;
+
+        private Resultado(Estado estado, String mensaje, Object datos) {
+            this.estado = estado;
+            this.mensaje = mensaje;
+            this.datos = datos;
+        }
+
+        public Estado getEstado() { return estado; }
+        public String getMensaje() { return mensaje; }
+
+        /** "data" de la respuesta (la factura), si vino. */
+        public Object getDatos() { return datos; }
+
+        public boolean isFacturada() { return estado == Estado.COMPLETO; }
+    }
+}
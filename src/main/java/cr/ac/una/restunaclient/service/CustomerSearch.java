@@ -0,0 +1,257 @@
+package cr.ac.una.restunaclient.service;
+
+import com.google.gson.reflect.TypeToken;
+import cr.ac.una.restunaclient.util.IoScheduler;
+import cr.ac.una.restunaclient.util.Log;
+
+import java.lang.reflect.Type;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static cr.ac.una.restunaclient.util.Propiedades.intProp;
+
+/**
+ * Autocompletado de clientes (/clientes/buscar?q=) para la pantalla de
+ * facturación.
+ *
+ * - Caché por prefijo: cada consulta respondida queda guardada. Se pide
+ *   con &amp;limite={@code restuna.clientes.limite} (def. 20); si la respuesta
+ *   trajo menos que eso, está completa y cualquier consulta que la extienda
+ *   ("ana" -> "ana m") se resuelve filtrando en memoria, sin red.
+ * - El límite es solo para el autocompletado: la búsqueda explícita
+ *   ({@link #buscarCompleto(String)}) pide todas las coincidencias.
+ * - Precarga: {@link #precalentar()} baja /clientes en segundo plano; si
+ *   son como mucho {@code restuna.clientes.maxLocal} (def. 3000), todo el
+ *   autocompletado se resuelve localmente; si son más, no se vuelve a
+ *   intentar hasta que pase el TTL.
+ * - Una consulta nueva cancela la que estaba en vuelo, y una respuesta
+ *   vieja nunca pisa a una más nueva.
+ * - Un POST/PUT/DELETE sobre /clientes vacía la caché.
+ *
+ * Se usa desde el hilo de JavaFX; los futures completan en ese hilo.
+ */
+public final class CustomerSearch {
+
+    private static final CustomerSearch INSTANCE = new CustomerSearch();
+    private static final String TAG = "Clientes";
+    private static final Type TIPO = new TypeToken<List<Map<String, Object>>>(){}.getType();
+
+    private static final int LIMITE = intProp("restuna.clientes.limite", 20);
+    private static final int MAX_LOCAL = intProp("restuna.clientes.maxLocal", 3000);
+    private static final int MAX_PREFIJOS = 200;
+    private static final long TTL = 120_000;
+
+    /** Prefijo normalizado -> resultados (LRU). */
+    private final LinkedHashMap<String, Entrada> cache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entrada> e) {
+            return size() > MAX_PREFIJOS;
+        }
+    };
+    private volatile Entrada todos; // /clientes completo, si es chico
+    private volatile long grandeEn; // cuándo /clientes resultó demasiado grande para precargar
+    private CompletableFuture<?> enVuelo;
+    private long secuencia;
+    private long aciertos, consultas;
+
+    private CustomerSearch() {
+        ResponseCache.getInstance().addInvalidationListener(raiz -> {
+            if ("/clientes".equals(raiz)) limpiar();
+        });
+    }
+
+    public static CustomerSearch getInstance() {
+        return INSTANCE;
+    }
+
+    // ==================== CONSULTAS ====================
+
+    /**
+     * Resultado inmediato si la caché alcanza para responder (prefijo
+     * completo ya consultado, o la precarga); vacío si hace falta la red.
+     */
+    public synchronized Optional<List<Map<String, Object>>> buscarLocal(String texto) {
+        String q = ProductSearchIndex.normalizar(texto == null ? "" : texto.trim());
+        if (q.isEmpty()) return Optional.of(List.of());
+        consultas++;
+
+        Entrada exacta = cache.get(q);
+        if (vigente(exacta)) {
+            aciertos++;
+            // Puede venir de una búsqueda completa: el autocompletado mantiene su tope
+            List<Map<String, Object>> c = exacta.clientes;
+            return Optional.of(c.size() > LIMITE ? c.subList(0, LIMITE) : c);
+        }
+        Entrada base = todos != null && vigente(todos) ? todos : null;
+        for (int n = q.length() - 1; n > 0 && base == null; n--) {
+            Entrada e = cache.get(q.substring(0, n));
+            if (vigente(e) && e.completa) base = e;
+        }
+        if (base == null) return Optional.empty();
+
+        List<Map<String, Object>> filtrados = new ArrayList<>();
+        boolean cortada = false;
+        for (Map<String, Object> c : base.clientes) {
+            if (coincide(c, q)) {
+                if (filtrados.size() >= LIMITE) {
+                    cortada = true;
+                    break;
+                }
+                filtrados.add(c);
+            }
+        }
+        cache.put(q, new Entrada(filtrados, !cortada)); // la base siempre es completa
+        aciertos++;
+        return Optional.of(filtrados);
+    }
+
+    /**
+     * Busca (caché primero, luego red). Cancela la consulta de red anterior;
+     * si otra consulta llega después, este future se cancela.
+     */
+    public synchronized CompletableFuture<List<Map<String, Object>>> buscar(String texto) {
+        Optional<List<Map<String, Object>>> local = buscarLocal(texto);
+        if (local.isPresent()) {
+            cancelarEnVuelo();
+            return CompletableFuture.completedFuture(local.get());
+        }
+
+        String q = ProductSearchIndex.normalizar(texto.trim());
+        String endpoint = "/clientes/buscar?q=" + URLEncoder.encode(texto.trim(), StandardCharsets.UTF_8)
+                + "&limite=" + LIMITE;
+        long mia = ++secuencia;
+        cancelarEnVuelo();
+        CompletableFuture<List<Map<String, Object>>> f = RestClient.callAsync(() -> {
+            ApiResponse<List<Map<String, Object>>> r = RestClient.getTyped(endpoint, TIPO);
+            if (!r.isSuccess()) throw new Exception(r.getMessage() != null ? r.getMessage() : "Error al consultar clientes");
+            return r.getData() != null ? r.getData() : List.<Map<String, Object>>of();
+        });
+        enVuelo = f;
+        return f.thenApply(clientes -> {
+            synchronized (this) {
+                cache.put(q, new Entrada(clientes, clientes.size() < LIMITE));
+                if (mia != secuencia) throw new java.util.concurrent.CancellationException("Consulta reemplazada");
+            }
+            return clientes;
+        });
+    }
+
+    /**
+     * Todas las coincidencias, sin el límite del autocompletado (botón
+     * Buscar). Usa la caché solo si tiene el conjunto completo; cancela la
+     * consulta de red anterior igual que {@link #buscar(String)}.
+     */
+    public synchronized CompletableFuture<List<Map<String, Object>>> buscarCompleto(String texto) {
+        String q = ProductSearchIndex.normalizar(texto == null ? "" : texto.trim());
+        if (q.isEmpty()) return CompletableFuture.completedFuture(List.of());
+        consultas++;
+
+        Entrada base = todos != null && vigente(todos) ? todos : null;
+        for (int n = q.length(); n > 0 && base == null; n--) {
+            Entrada e = cache.get(q.substring(0, n));
+            if (vigente(e) && e.completa) base = e;
+        }
+        if (base != null) {
+            List<Map<String, Object>> filtrados = new ArrayList<>();
+            for (Map<String, Object> c : base.clientes) {
+                if (coincide(c, q)) filtrados.add(c);
+            }
+            aciertos++;
+            cancelarEnVuelo();
+            return CompletableFuture.completedFuture(filtrados);
+        }
+
+        String endpoint = "/clientes/buscar?q=" + URLEncoder.encode(texto.trim(), StandardCharsets.UTF_8);
+        ++secuencia; // una respuesta del autocompletado ya no pisa a esta
+        cancelarEnVuelo();
+        CompletableFuture<List<Map<String, Object>>> f = RestClient.callAsync(() -> {
+            ApiResponse<List<Map<String, Object>>> r = RestClient.getTyped(endpoint, TIPO);
+            if (!r.isSuccess()) throw new Exception(r.getMessage() != null ? r.getMessage() : "Error al consultar clientes");
+            return r.getData() != null ? r.getData() : List.<Map<String, Object>>of();
+        });
+        enVuelo = f;
+        return f.thenApply(clientes -> {
+            synchronized (this) {
+                cache.put(q, new Entrada(clientes, true));
+            }
+            return clientes;
+        });
+    }
+
+    /**
+     * Baja el listado de clientes en segundo plano; si es chico, el
+     * autocompletado deja de usar la red.
+     */
+    public void precalentar() {
+        if (todos != null && vigente(todos)) return;
+        if (System.currentTimeMillis() - grandeEn < TTL) return; // sigue siendo grande: no bajarlo otra vez
+        RestClient.callAsync(IoScheduler.getInstance().getScopeGlobal(), () -> {
+            ApiResponse<List<Map<String, Object>>> r = RestClient.getTyped("/clientes", TIPO);
+            return r.isSuccess() && r.getData() != null ? r.getData() : List.<Map<String, Object>>of();
+        }).whenComplete((clientes, error) -> {
+            if (error != null) {
+                if (!IoScheduler.isCancelacion(error)) Log.warn(TAG, "No se pudo precargar clientes: " + error.getMessage());
+                return;
+            }
+            if (clientes.isEmpty() || clientes.size() > MAX_LOCAL) {
+                if (clientes.size() > MAX_LOCAL) grandeEn = System.currentTimeMillis();
+                Log.debug(TAG, () -> "Precarga omitida: " + clientes.size() + " clientes");
+                return;
+            }
+            synchronized (this) {
+                todos = new Entrada(clientes, true);
+            }
+            Log.debug(TAG, () -> "Precarga: " + clientes.size() + " clientes en memoria");
+        });
+    }
+
+    public synchronized void limpiar() {
+        cache.clear();
+        todos = null;
+    }
+
+    public synchronized String stats() {
+        return "Clientes[prefijos=" + cache.size() + ", locales=" + (todos != null ? todos.clientes.size() : 0)
+                + ", aciertos=" + aciertos + "/" + consultas + "]";
+    }
+
+    // ==================== INTERNOS ====================
+
+    private void cancelarEnVuelo() {
+        if (enVuelo != null && !enVuelo.isDone()) enVuelo.cancel(true);
+        enVuelo = null;
+    }
+
+    private static boolean vigente(Entrada e) {
+        return e != null && System.currentTimeMillis() - e.creada < TTL;
+    }
+
+    /** Mismos campos que busca el backend: nombre, correo, teléfono, cédula e id. */
+    private static boolean coincide(Map<String, Object> c, String q) {
+        for (String campo : new String[]{"nombre", "correo", "telefono", "cedula"}) {
+            Object v = c.get(campo);
+            if (v != null && ProductSearchIndex.normalizar(v.toString()).contains(q)) return true;
+        }
+        Object id = c.get("id");
+        if (id instanceof Number n) id = n.longValue();
+        return id != null && id.toString().equals(q);
+    }
+
+    private static final class Entrada {
+        final List<Map<String, Object>> clientes;
+        /** true si trae todos los clientes que coinciden (no se cortó por el límite). */
+        final boolean completa;
+        final long creada = System.currentTimeMillis();
+
+        Entrada(List<Map<String, Object>> clientes, boolean completa) {
+            this.clientes = clientes;
+            this.completa = completa;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package cr.ac.una.restunaclient.service;
+
+import cr.ac.una.restunaclient.util.Log;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import static cr.ac.una.restunaclient.util.Propiedades.intProp;
+import static cr.ac.una.restunaclient.util.Propiedades.longProp;
+
+/**
+ * Cliente HTTP compartido por toda la aplicación.
+ * Mantiene un único pool de conexiones con keep-alive para no pagar
+ * un handshake TCP nuevo en cada petición.
+ *
+ * Configurable con propiedades del sistema (-Drestuna.http.*):
+ *  - maxTotal        conexiones totales del pool (def. 40)
+ *  - maxPerRoute     conexiones por host/ruta (def. 20)
+ *  - connectTimeout  ms para conectar (def. 5000)
+ *  - responseTimeout ms esperando respuesta (def. 30000)
+ *  - keepAlive       ms máximos que se reutiliza una conexión ociosa; si el
+ *                    servidor manda un Keep-Alive menor, vale ese (def. 30000)
+ *  - idleEviction    ms de inactividad antes de cerrar la conexión (def. 60000)
+ */
+public final class HttpClientManager {
+
+    private static final String TAG = "HttpClientManager";
+    private static final int MAX_TOTAL         = intProp("restuna.http.maxTotal", 40);
+    private static final int MAX_PER_ROUTE     = intProp("restuna.http.maxPerRoute", 20);
+    private static final long CONNECT_TIMEOUT  = longProp("restuna.http.connectTimeout", 5_000);
+    private static final long RESPONSE_TIMEOUT = longProp("restuna.http.responseTimeout", 30_000);
+    private static final long KEEP_ALIVE       = longProp("restuna.http.keepAlive", 30_000);
+    private static final long IDLE_EVICTION    = longProp("restuna.http.idleEviction", 60_000);
+
+    private static volatile CloseableHttpClient client;
+    private static volatile PoolingHttpClientConnectionManager connectionManager;
+
+    private HttpClientManager() {}
+
+    /**
+     * Devuelve el cliente compartido (lo crea en el primer uso).
+     * NO se debe cerrar desde quien lo usa; solo cerrar la respuesta.
+     */
+    public static CloseableHttpClient getClient() {
+        CloseableHttpClient c = client;
+        if (c == null) {
+            synchronized (HttpClientManager.class) {
+                c = client;
+                if (c == null) {
+                    c = build();
+                    client = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    private static CloseableHttpClient build() {
+        connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(MAX_TOTAL)
+                .setMaxConnPerRoute(MAX_PER_ROUTE)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(CONNECT_TIMEOUT))
+                        .setSocketTimeout(Timeout.ofMilliseconds(RESPONSE_TIMEOUT))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(CONNECT_TIMEOUT))
+                .setResponseTimeout(Timeout.ofMilliseconds(RESPONSE_TIMEOUT))
+                .setConnectionKeepAlive(TimeValue.ofMilliseconds(KEEP_ALIVE))
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                // Se respeta el Keep-Alive del servidor, con KEEP_ALIVE como tope;
+                // si no lo manda, se usa KEEP_ALIVE (connectionKeepAlive del RequestConfig)
+                .setKeepAliveStrategy((response, context) -> {
+                    TimeValue servidor = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return TimeValue.isPositive(servidor) && servidor.toMilliseconds() < KEEP_ALIVE
+                            ? servidor : TimeValue.ofMilliseconds(KEEP_ALIVE);
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(IDLE_EVICTION))
+                .build();
+    }
+
+    /**
+     * Cierra el pool y todas sus conexiones. Se llama al salir de la app.
+     */
+    public static void shutdown() {
+        synchronized (HttpClientManager.class) {
+            if (client == null) return;
+            try {
+                client.close(CloseMode.GRACEFUL);
+            } catch (Exception e) {
+                Log.warn(TAG, "Error cerrando cliente: " + e.getMessage());
+            } finally {
+                client = null;
+                connectionManager = null;
+            }
+        }
+    }
+
+    /**
+     * Resumen del estado del pool (para diagnóstico).
+     */
+    public static String poolStats() {
+        PoolingHttpClientConnectionManager cm = connectionManager;
+        return cm == null ? "pool cerrado" : cm.getTotalStats().toString();
+    }
+}
@@ -0,0 +1,321 @@
+package cr.ac.una.restunaclient.service;
+
+import cr.ac.una.restunaclient.util.IoScheduler;
+import cr.ac.una.restunaclient.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Acumula los cambios a las líneas de una orden (agregar, cambiar cantidad,
+ * eliminar) y los envía juntos en una sola petición:
+ *
+ *   POST /ordenes/{id}/detalles/lote
+ *   { "agregar":    [ {productoId, cantidad} ],
+ *     "actualizar": [ {detalleId, cantidad} ],
+ *     "eliminar":   [ detalleId ] }
+ *
+ * Los cambios repetidos se combinan antes de enviar: dos "agregar" del mismo
+ * producto suman, la última cantidad de un detalle gana y eliminar un
+ * detalle descarta sus cambios pendientes.
+ *
+ * Si el backend no tiene el endpoint de lote (404/405), se recuerda y se
+ * cae a las llamadas individuales de siempre, una tras otra en el mismo
+ * hilo. Ver {@link #flush()} para qué pasa si falla.
+ *
+ * Hay un solo lote por orden ({@link #de(Long)}): lo que vuelve a quedar
+ * pendiente no se pierde aunque la pantalla cambie de orden y regrese.
+ */
+public final class OrderLineBatcher {
+
+    private static final String TAG = "Lotes";
+
+    /** Se apaga la primera vez que el backend no reconoce /detalles/lote. */
+    private static volatile boolean loteDisponible = true;
+
+    private static final Map<Long, OrderLineBatcher> POR_ORDEN = new ConcurrentHashMap<>();
+
+    private final Long ordenId;
+    private final LinkedHashMap<Long, Integer> nuevas = new LinkedHashMap<>();   // productoId -> cantidad
+    private final LinkedHashMap<Long, Integer> cambios = new LinkedHashMap<>();  // detalleId -> cantidad final
+    private final LinkedHashSet<Long> eliminados = new LinkedHashSet<>();        // detalleId
+
+    private OrderLineBatcher(Long ordenId) {
+        this.ordenId = ordenId;
+    }
+
+    /** El lote de la orden (se crea la primera vez). */
+    public static OrderLineBatcher de(Long ordenId) {
+        return POR_ORDEN.computeIfAbsent(ordenId, OrderLineBatcher::new);
+    }
+
+    public Long getOrdenId() {
+        return ordenId;
+    }
+
+    // ==================== ACUMULAR ====================
+
+    /** Suma unidades de un producto como línea nueva. */
+    public synchronized void agregar(Long productoId, int cantidad) {
+        if (productoId == null || cantidad == 0) return;
+        nuevas.merge(productoId, cantidad, Integer::sum);
+        if (nuevas.get(productoId) <= 0) nuevas.remove(productoId);
+    }
+
+    /** Fija la cantidad de una línea nueva aún no enviada (0 la descarta). */
+    public synchronized void fijarNuevo(Long productoId, int cantidad) {
+        if (productoId == null) return;
+        if (cantidad <= 0) nuevas.remove(productoId);
+        else nuevas.put(productoId, cantidad);
+    }
+
+    /** Descarta una línea nueva aún no enviada. */
+    public synchronized void quitarNuevo(Long productoId) {
+        nuevas.remove(productoId);
+    }
+
+    /** Cambia la cantidad de un detalle ya guardado (la última gana). */
+    public synchronized void cambiarCantidad(Long detalleId, int cantidad) {
+        if (detalleId == null || eliminados.contains(detalleId)) return;
+        cambios.put(detalleId, cantidad);
+    }
+
+    /** Elimina un detalle ya guardado; sus cambios pendientes se descartan. */
+    public synchronized void eliminar(Long detalleId) {
+        if (detalleId == null) return;
+        cambios.remove(detalleId);
+        eliminados.add(detalleId);
+    }
+
+    /** Descarta todo lo pendiente sin enviarlo (p. ej. antes de recargar la orden). */
+    public synchronized void descartar() {
+        nuevas.clear();
+        cambios.clear();
+        eliminados.clear();
+    }
+
+    public synchronized boolean hayPendientes() {
+        return !nuevas.isEmpty() || !cambios.isEmpty() || !eliminados.isEmpty();
+    }
+
+    // ==================== ENVIAR ====================
+
+    /**
+     * Envía lo acumulado (bloqueante). Lo pendiente se toma y se limpia al
+     * inicio, así que se puede seguir acumulando mientras se envía.
+     *
+     * - Si el backend rechaza el lote, esos cambios se descartan (reenviarlos
+     *   daría el mismo rechazo) y vuelven en {@link Resultado#getDescartados()}.
+     * - Si no se sabe si llegó (red, 5xx), los cambios de cantidad y las
+     *   eliminaciones vuelven a pendientes (repetirlos no duplica nada); las
+     *   líneas nuevas no, porque podrían quedar dobles: el resultado pide
+     *   recargar la orden para ver qué quedó guardado.
+     */
+    public Resultado flush() {
+        Map<Long, Integer> n, c;
+        List<Long> e;
+        synchronized (this) {
+            if (!hayPendientes()) return new Resultado(0, List.of(), false, null, false);
+            n = new LinkedHashMap<>(nuevas);
+            c = new LinkedHashMap<>(cambios);
+            e = new ArrayList<>(eliminados);
+            nuevas.clear();
+            cambios.clear();
+            eliminados.clear();
+        }
+        int total = n.size() + c.size() + e.size();
+
+        if (loteDisponible) {
+            RestClient.Respuesta r;
+            try {
+                r = RestClient.postConEstado("/ordenes/" + ordenId + "/detalles/lote", payloadLote(n, c, e), null);
+            } catch (Exception ex) {
+                Log.warn(TAG, "Fallo el envío por lote: " + ex.getMessage());
+                return incierto(n, c, e, String.valueOf(ex.getMessage()));
+            }
+            if (r.codigo() != 404 && r.codigo() != 405) {
+                Map<String, Object> res = RestClient.parseResponse(r.cuerpo());
+                if (r.isExito() && Boolean.TRUE.equals(res.get("success"))) {
+                    Log.debug(TAG, () -> "Orden " + ordenId + ": " + total + " cambios en 1 petición");
+                    return new Resultado(total, List.of(), true, null, false);
+                }
+                Object msg = res.get("message");
+                String error = msg != null ? String.valueOf(msg) : "HTTP " + r.codigo();
+                if (r.codigo() >= 500) {
+                    Log.warn(TAG, "Lote de la orden " + ordenId + " sin confirmar: " + error);
+                    return incierto(n, c, e, error);
+                }
+                Log.warn(TAG, "El backend rechazó el lote de la orden " + ordenId + ": " + error);
+                return new Resultado(0, List.of(error), true, new Descartados(n, c, e), true);
+            }
+            loteDisponible = false;
+            Log.info(TAG, "El backend no soporta /detalles/lote; se usan llamadas individuales");
+        }
+        return enviarIndividual(n, c, e, total);
+    }
+
+    /** Envío asíncrono; sobrevive a la navegación y completa en el hilo de JavaFX. */
+    public CompletableFuture<Resultado> flushAsync() {
+        return RestClient.callAsync(IoScheduler.getInstance().getScopeGlobal(), this::flush);
+    }
+
+    private Resultado incierto(Map<Long, Integer> n, Map<Long, Integer> c, List<Long> e, String error) {
+        reencolar(c, e);
+        Descartados d = n.isEmpty() ? null : new Descartados(n, Map.of(), List.of());
+        return new Resultado(0, List.of(error), true, d, true);
+    }
+
+    /**
+     * Una llamada por cambio, en el hilo actual (ya corre en una tarea del
+     * IoScheduler). Los DELETE/PUT que fallan por red vuelven a quedar
+     * pendientes; un POST no, porque pudo haber creado la línea. Lo que el
+     * backend rechaza se descarta.
+     */
+    private Resultado enviarIndividual(Map<Long, Integer> n, Map<Long, Integer> c, List<Long> e, int total) {
+        String base = "/ordenes/" + ordenId + "/detalles";
+        List<String> errores = new ArrayList<>();
+        Map<Long, Integer> nDescartadas = new LinkedHashMap<>();
+        Map<Long, Integer> cDescartados = new LinkedHashMap<>();
+        List<Long> eDescartados = new ArrayList<>();
+        boolean recargar = false;
+        int enviados = 0;
+
+        for (Long detalleId : e) {
+            try {
+                if (revisar(RestClient.delete(base + "/" + detalleId), errores)) enviados++;
+                else eDescartados.add(detalleId);
+            } catch (IOException ex) {
+                reencolar(Map.of(), List.of(detalleId));
+                errores.add(ex.getMessage());
+            } catch (Exception ex) {
+                eDescartados.add(detalleId);
+                errores.add(ex.getMessage());
+            }
+        }
+        for (Map.Entry<Long, Integer> cambio : c.entrySet()) {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("cantidad", cambio.getValue());
+            try {
+                if (revisar(RestClient.put(base + "/" + cambio.getKey(), payload), errores)) enviados++;
+                else cDescartados.put(cambio.getKey(), cambio.getValue());
+            } catch (IOException ex) {
+                reencolar(Map.of(cambio.getKey(), cambio.getValue()), List.of());
+                errores.add(ex.getMessage());
+            } catch (Exception ex) {
+                cDescartados.put(cambio.getKey(), cambio.getValue());
+                errores.add(ex.getMessage());
+            }
+        }
+        for (Map.Entry<Long, Integer> nueva : n.entrySet()) {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("ordenId", ordenId);
+            payload.put("productoId", nueva.getKey());
+            payload.put("cantidad", nueva.getValue());
+            try {
+                if (revisar(RestClient.post(base, payload), errores)) enviados++;
+                else nDescartadas.put(nueva.getKey(), nueva.getValue());
+            } catch (Exception ex) {
+                nDescartadas.put(nueva.getKey(), nueva.getValue());
+                errores.add(ex.getMessage());
+                recargar = true; // pudo haberse creado
+            }
+        }
+        int ok = enviados;
+        Log.debug(TAG, () -> "Orden " + ordenId + ": " + ok + "/" + total + " cambios en llamadas individuales");
+        boolean hayDescartes = !nDescartadas.isEmpty() || !cDescartados.isEmpty() || !eDescartados.isEmpty();
+        return new Resultado(enviados, errores, false,
+                hayDescartes ? new Descartados(nDescartadas, cDescartados, eDescartados) : null,
+                recargar || hayDescartes);
+    }
+
+    private static boolean revisar(String respuesta, List<String> errores) {
+        Map<String, Object> res = RestClient.parseResponse(respuesta);
+        if (Boolean.TRUE.equals(res.get("success"))) return true;
+        errores.add(String.valueOf(res.get("message")));
+        return false;
+    }
+
+    /**
+     * Devuelve a pendientes los cambios de cantidad y eliminaciones que no se
+     * pudieron confirmar. Lo acumulado mientras tanto gana.
+     */
+    private synchronized void reencolar(Map<Long, Integer> c, List<Long> e) {
+        c.forEach((detalleId, cantidad) -> {
+            if (!eliminados.contains(detalleId)) cambios.putIfAbsent(detalleId, cantidad);
+        });
+        for (Long detalleId : e) {
+            cambios.remove(detalleId);
+            eliminados.add(detalleId);
+        }
+    }
+
+    private Map<String, Object> payloadLote(Map<Long, Integer> n, Map<Long, Integer> c, List<Long> e) {
+        List<Map<String, Object>> agregar = new ArrayList<>();
+        n.forEach((productoId, cantidad) -> {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("productoId", productoId);
+            m.put("cantidad", cantidad);
+            agregar.add(m);
+        });
+        List<Map<String, Object>> actualizar = new ArrayList<>();
+        c.forEach((detalleId, cantidad) -> {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("detalleId", detalleId);
+            m.put("cantidad", cantidad);
+            actualizar.add(m);
+        });
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("ordenId", ordenId);
+        payload.put("agregar", agregar);
+        payload.put("actualizar", actualizar);
+        payload.put("eliminar", e);
+        return payload;
+    }
+
+    /**
+     * Resultado de un envío.
+     */
+    public static final class Resultado {
+        private final int cambios;
+        private final List<String> errores;
+        private final boolean porLote;
+        private final Descartados descartados;
+        private final boolean recargar;
+
+        private Resultado(int cambios, List<String> errores, boolean porLote, Descartados descartados, boolean recargar) {
+            this.cambios = cambios;
+            this.errores = errores;
+            this.porLote = porLote;
+            this.descartados = descartados;
+            this.recargar = recargar;
+        }
+
+        public boolean isOk() { return errores.isEmpty(); }
+        public int getCambios() { return cambios; }
+        public List<String> getErrores() { return errores; }
+
+        /** true si viajó en una sola petición. */
+        public boolean isPorLote() { return porLote; }
+
+        /** Cambios que ya no se enviarán (rechazados o de resultado incierto); null si ninguno. */
+        public Descartados getDescartados() { return descartados; }
+
+        /** true si hay que recargar los detalles de la orden para ver qué quedó guardado. */
+        public boolean isRecargar() { return recargar; }
+    }
+
+    /**
+     * Cambios descartados de un envío, para avisarle al usuario.
+     * @param nuevas productoId -> cantidad
+     * @param cambios detalleId -> cantidad
+     * @param eliminados detalleId
+     */
+    public record Descartados(Map<Long, Integer> nuevas, Map<Long, Integer> cambios, List<Long> eliminados) {}
+}
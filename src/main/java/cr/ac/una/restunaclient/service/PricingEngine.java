@@ -0,0 +1,188 @@
+package cr.ac.una.restunaclient.service;
+
+import cr.ac.una.restunaclient.model.DetalleOrden;
+import cr.ac.una.restunaclient.model.Parametros;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Totales de una orden / factura: subtotal, impuesto de ventas, servicio,
+ * descuento y total, siempre en BigDecimal (nunca desde el texto de la UI).
+ *
+ * - El subtotal se mantiene acumulado: al agregar, quitar o cambiar una
+ *   línea solo se suma la diferencia, sin volver a recorrer la orden.
+ * - El resumen se recalcula solo si algo cambió desde la última consulta.
+ * - Porcentajes de {@link Parametros}; mientras no lleguen se usan 13% de
+ *   ventas, 10% de servicio y 15% de descuento máximo.
+ *
+ * Redondeo igual al del backend: impuestos y descuento a 2 decimales
+ * HALF_UP; el descuento se aplica sobre subtotal + impuestos.
+ *
+ * Una instancia por pantalla; se usa desde el hilo de JavaFX.
+ */
+public final class PricingEngine {
+
+    private static final BigDecimal CIEN = new BigDecimal("100");
+
+    private BigDecimal porcVenta = new BigDecimal("13");
+    private BigDecimal porcServicio = new BigDecimal("10");
+    private BigDecimal descuentoMaximo = new BigDecimal("15");
+
+    /** Aporte de cada línea al subtotal la última vez que se contó. */
+    private final Map<DetalleOrden, BigDecimal> aportes = new IdentityHashMap<>();
+    private BigDecimal subtotal = BigDecimal.ZERO;
+
+    private boolean impuestoVenta = true;
+    private boolean impuestoServicio = true;
+    private BigDecimal descuentoPorcentaje = BigDecimal.ZERO;
+
+    private Resumen resumen;
+
+    private final ListChangeListener<DetalleOrden> oyente = c -> {
+        while (c.next()) {
+            for (DetalleOrden d : c.getRemoved()) quitar(d);
+            for (DetalleOrden d : c.getAddedSubList()) agregar(d);
+        }
+    };
+
+    // ==================== LÍNEAS ====================
+
+    /** Sigue las altas y bajas de la lista (las líneas que ya tiene se cuentan ahora). */
+    public void enlazar(ObservableList<DetalleOrden> lineas) {
+        reiniciar();
+        for (DetalleOrden d : lineas) agregar(d);
+        lineas.addListener(oyente);
+    }
+
+    /** Avisar tras cambiar cantidad o precio de una línea ya contada. */
+    public void lineaCambiada(DetalleOrden d) {
+        BigDecimal antes = aportes.get(d);
+        if (antes == null) return;
+        BigDecimal ahora = aporte(d);
+        if (ahora.compareTo(antes) != 0) {
+            aportes.put(d, ahora);
+            subtotal = subtotal.subtract(antes).add(ahora);
+            resumen = null;
+        }
+    }
+
+    private void agregar(DetalleOrden d) {
+        BigDecimal a = aporte(d);
+        BigDecimal previo = aportes.put(d, a);
+        if (previo != null) subtotal = subtotal.subtract(previo);
+        subtotal = subtotal.add(a);
+        resumen = null;
+    }
+
+    private void quitar(DetalleOrden d) {
+        BigDecimal a = aportes.remove(d);
+        if (a != null) {
+            subtotal = subtotal.subtract(a);
+            resumen = null;
+        }
+    }
+
+    private void reiniciar() {
+        aportes.clear();
+        subtotal = BigDecimal.ZERO;
+        resumen = null;
+    }
+
+    private static BigDecimal aporte(DetalleOrden d) {
+        if (d.getSubtotal() != null) return d.getSubtotal();
+        if (d.getPrecioUnitario() == null || d.getCantidad() == null) return BigDecimal.ZERO;
+        return d.getPrecioUnitario().multiply(BigDecimal.valueOf(d.getCantidad()));
+    }
+
+    // ==================== CONFIGURACIÓN ====================
+
+    public void setParametros(Parametros p) {
+        if (p == null) return;
+        if (p.getPorcImpuestoVenta() != null) porcVenta = p.getPorcImpuestoVenta();
+        if (p.getPorcImpuestoServicio() != null) porcServicio = p.getPorcImpuestoServicio();
+        if (p.getPorcDescuentoMaximo() != null) descuentoMaximo = p.getPorcDescuentoMaximo();
+        descuentoPorcentaje = acotar(descuentoPorcentaje);
+        resumen = null;
+    }
+
+    public void setImpuestoVenta(boolean aplica) {
+        if (aplica != impuestoVenta) {
+            impuestoVenta = aplica;
+            resumen = null;
+        }
+    }
+
+    public void setImpuestoServicio(boolean aplica) {
+        if (aplica != impuestoServicio) {
+            impuestoServicio = aplica;
+            resumen = null;
+        }
+    }
+
+    /**
+     * Fija el descuento, acotado a [0, máximo].
+     * @return el porcentaje que quedó aplicado
+     */
+    public BigDecimal setDescuentoPorcentaje(BigDecimal pct) {
+        BigDecimal acotado = acotar(pct == null ? BigDecimal.ZERO : pct);
+        if (acotado.compareTo(descuentoPorcentaje) != 0) {
+            descuentoPorcentaje = acotado;
+            resumen = null;
+        }
+        return descuentoPorcentaje;
+    }
+
+    private BigDecimal acotar(BigDecimal pct) {
+        if (pct.signum() < 0) return BigDecimal.ZERO;
+        return pct.compareTo(descuentoMaximo) > 0 ? descuentoMaximo : pct;
+    }
+
+    public BigDecimal getDescuentoMaximo() {
+        return descuentoMaximo;
+    }
+
+    // ==================== RESULTADO ====================
+
+    public BigDecimal getSubtotal() {
+        return subtotal;
+    }
+
+    public Resumen getResumen() {
+        if (resumen == null) {
+            BigDecimal iv = impuestoVenta ? porcentaje(subtotal, porcVenta) : BigDecimal.ZERO;
+            BigDecimal serv = impuestoServicio ? porcentaje(subtotal, porcServicio) : BigDecimal.ZERO;
+            BigDecimal base = subtotal.add(iv).add(serv);
+            BigDecimal desc = porcentaje(base, descuentoPorcentaje);
+            resumen = new Resumen(subtotal, iv, serv, descuentoPorcentaje, desc, base.subtract(desc));
+        }
+        return resumen;
+    }
+
+    private static BigDecimal porcentaje(BigDecimal monto, BigDecimal pct) {
+        if (pct.signum() == 0 || monto.signum() == 0) return BigDecimal.ZERO;
+        return monto.multiply(pct).divide(CIEN, 2, RoundingMode.HALF_UP);
+    }
+
+    /** Totales ya calculados; inmutable. */
+    public record Resumen(BigDecimal subtotal, BigDecimal impuestoVentas, BigDecimal impuestoServicio,
+                          BigDecimal descuentoPorcentaje, BigDecimal descuentoMonto, BigDecimal total) {
+
+        /** Forma que espera el backend en "resumen" de la factura. */
+        public Map<String, Object> aMapa() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("subtotal", subtotal);
+            m.put("impuestoVentas", impuestoVentas);
+            m.put("impuestoServicio", impuestoServicio);
+            m.put("descuentoPorcentaje", descuentoPorcentaje);
+            m.put("descuentoMonto", descuentoMonto);
+            m.put("total", total);
+            return m;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package cr.ac.una.restunaclient.service;
+
+import cr.ac.una.restunaclient.model.Producto;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Índice de búsqueda de productos (nombre, nombre corto, id y precio).
+ *
+ * - El texto de cada producto se normaliza una sola vez al construir el
+ *   índice: minúsculas y sin tildes ("cafe" encuentra "Café").
+ * - Consultas de 3+ caracteres usan trigramas: solo se verifican los
+ *   productos que contienen el trigrama menos frecuente de la consulta.
+ * - Varias palabras = todas deben aparecer (AND).
+ * - Resultados ordenados: nombre exacto, prefijo del nombre, prefijo de
+ *   una palabra, contiene; a igual rango, más vendidos primero.
+ * - {@link Sesion} recuerda el último resultado: si la consulta solo crece
+ *   (se sigue tecleando) se filtra ese resultado en vez de todo el catálogo.
+ *
+ * Es inmutable; {@link CatalogService} arma uno nuevo con cada recarga.
+ */
+public final class ProductSearchIndex {
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final char SEP = '\u0001';
+
+    private final Producto[] productos;
+    private final String[] nombres;
+    private final String[] textos;
+    private final long[] ventas;
+    private final Map<Long, int[]> trigramas;
+    private final IdentityHashMap<Producto, Integer> posiciones;
+
+    public ProductSearchIndex(List<Producto> lista) {
+        int n = lista.size();
+        productos = lista.toArray(new Producto[0]);
+        nombres = new String[n];
+        textos = new String[n];
+        ventas = new long[n];
+        posiciones = new IdentityHashMap<>(n * 2);
+
+        Map<Long, List<Integer>> tmp = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            Producto p = productos[i];
+            posiciones.put(p, i);
+            nombres[i] = normalizar(p.getNombre());
+            textos[i] = nombres[i] + SEP + normalizar(p.getNombreCorto()) + SEP
+                    + (p.getId() != null ? p.getId() : "") + SEP
+                    + (p.getPrecio() != null ? p.getPrecio().toPlainString() : "");
+            ventas[i] = p.getTotalVentas() != null ? p.getTotalVentas() : 0L;
+
+            String t = textos[i];
+            for (int k = 0; k + 3 <= t.length(); k++) {
+                char a = t.charAt(k), b = t.charAt(k + 1), c = t.charAt(k + 2);
+                if (a == SEP || b == SEP || c == SEP) continue;
+                List<Integer> post = tmp.computeIfAbsent(clave(a, b, c), x -> new ArrayList<>());
+                // los productos se recorren en orden: basta mirar el último
+                if (post.isEmpty() || post.get(post.size() - 1) != i) post.add(i);
+            }
+        }
+
+        trigramas = new HashMap<>(tmp.size() * 2);
+        tmp.forEach((k, post) -> trigramas.put(k, post.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    public int size() {
+        return productos.length;
+    }
+
+    /** Búsqueda puntual sobre todo el catálogo. */
+    public List<Producto> buscar(String consulta) {
+        return nuevaSesion().buscar(consulta);
+    }
+
+    /** Sesión de tecleo sobre todo el catálogo. */
+    public Sesion nuevaSesion() {
+        return new Sesion(Arrays.asList(productos));
+    }
+
+    /**
+     * Sesión restringida a un subconjunto (p. ej. los productos de un grupo).
+     * Con la consulta vacía se devuelve la misma lista recibida.
+     */
+    public Sesion nuevaSesion(List<Producto> universo) {
+        return new Sesion(universo);
+    }
+
+    /**
+     * Minúsculas y sin tildes/diéresis. Nunca devuelve null.
+     */
+    public static String normalizar(String s) {
+        if (s == null || s.isEmpty()) return "";
+        String d = Normalizer.normalize(s, Normalizer.Form.NFD);
+        return MARCAS.matcher(d).replaceAll("").toLowerCase().trim();
+    }
+
+    // ==================== SESIÓN ====================
+
+    /**
+     * Estado de una caja de búsqueda: guarda la última consulta y sus
+     * coincidencias para acotar incrementalmente. No es thread-safe (se usa
+     * desde el hilo de JavaFX).
+     */
+    public final class Sesion {
+
+        private final List<Producto> universo;
+        private final int[] base;
+        private String ultimaConsulta = null;
+        private int[] ultimas = null;
+
+        private Sesion(List<Producto> universo) {
+            this.universo = universo;
+            int[] b = new int[universo.size()];
+            int n = 0;
+            for (Producto p : universo) {
+                Integer pos = posiciones.get(p);
+                if (pos != null) b[n++] = pos;
+            }
+            this.base = Arrays.copyOf(b, n);
+        }
+
+        public List<Producto> buscar(String consulta) {
+            String q = normalizar(consulta);
+            if (q.isEmpty()) {
+                ultimaConsulta = null;
+                ultimas = null;
+                return universo;
+            }
+
+            String[] tokens = q.split("\\s+");
+            int[] candidatos;
+            if (ultimaConsulta != null && q.startsWith(ultimaConsulta)) {
+                candidatos = ultimas; // la consulta solo creció: el resultado se achica
+            } else {
+                candidatos = candidatosPorTrigrama(tokens);
+            }
+
+            int[] coincidencias = filtrar(candidatos, tokens);
+            ultimaConsulta = q;
+            ultimas = coincidencias;
+            return ordenar(coincidencias, q, tokens[0]);
+        }
+
+        /** Postings del trigrama más raro del token más largo, acotados al universo. */
+        private int[] candidatosPorTrigrama(String[] tokens) {
+            String largo = tokens[0];
+            for (String t : tokens) if (t.length() > largo.length()) largo = t;
+            if (largo.length() < 3) return base;
+
+            int[] menor = null;
+            for (int k = 0; k + 3 <= largo.length(); k++) {
+                int[] post = trigramas.get(clave(largo.charAt(k), largo.charAt(k + 1), largo.charAt(k + 2)));
+                if (post == null) return new int[0];
+                if (menor == null || post.length < menor.length) menor = post;
+            }
+            if (base.length == productos.length) return menor;
+
+            // Intersección con el universo (ambos arreglos ordenados)
+            int[] b = base.clone();
+            Arrays.sort(b);
+            int[] out = new int[Math.min(b.length, menor.length)];
+            int i = 0, j = 0, n = 0;
+            while (i < b.length && j < menor.length) {
+                if (b[i] == menor[j]) { out[n++] = b[i]; i++; j++; }
+                else if (b[i] < menor[j]) i++;
+                else j++;
+            }
+            return Arrays.copyOf(out, n);
+        }
+
+        private int[] filtrar(int[] candidatos, String[] tokens) {
+            int[] out = new int[candidatos.length];
+            int n = 0;
+            siguiente:
+            for (int idx : candidatos) {
+                String t = textos[idx];
+                for (String tok : tokens) {
+                    if (!t.contains(tok)) continue siguiente;
+                }
+                out[n++] = idx;
+            }
+            return Arrays.copyOf(out, n);
+        }
+
+        private List<Producto> ordenar(int[] idx, String q, String primerToken) {
+            Integer[] orden = new Integer[idx.length];
+            int[] rango = new int[idx.length];
+            for (int k = 0; k < idx.length; k++) {
+                orden[k] = k;
+                rango[k] = rango(nombres[idx[k]], q, primerToken);
+            }
+            Arrays.sort(orden, (a, b) -> {
+                if (rango[a] != rango[b]) return Integer.compare(rango[a], rango[b]);
+                int c = Long.compare(ventas[idx[b]], ventas[idx[a]]);
+                return c != 0 ? c : Integer.compare(idx[a], idx[b]);
+            });
+            List<Producto> out = new ArrayList<>(idx.length);
+            for (Integer k : orden) out.add(productos[idx[k]]);
+            return out;
+        }
+    }
+
+    // ---------------------- Util ----------------------
+
+    private static int rango(String nombre, String q, String primerToken) {
+        if (nombre.equals(q)) return 0;
+        if (nombre.startsWith(q)) return 1;
+        if (nombre.startsWith(primerToken) || nombre.contains(" " + primerToken)) return 2;
+        return 3;
+    }
+
+    private static long clave(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+}
@@ -1,20 +1,34 @@
 package cr.ac.una.restunaclient.service;
 
 import com.google.gson.*;
+import cr.ac.una.restunaclient.util.Log;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
+import static cr.ac.una.restunaclient.util.Propiedades.longProp;
+
 public class ReportesService {
 
     private static final String BASE = "http://localhost:8080/ProyectoProgra3WS";
@@ -24,7 +38,7 @@ public class ReportesService {
     private static final boolean DIRECT_MODE = true;
     private static final Map<String, String> FIXED = new HashMap<>();
      private static String preview(String s){ return (s==null)? "null" : (s.length()<=200? s : s.substring(0,200)+"..."); }
-    private static void log(String m){ System.out.println("[ReportesService] " + m); }
+    private static void log(String m){ Log.debug("ReportesService", m); }
 
     static {
         // JSON
@@ -49,6 +63,7 @@ public class ReportesService {
     }
 
     private static final Gson G = new GsonBuilder().create();
+    private static final java.lang.reflect.Type ROW_TYPE = new com.google.gson.reflect.TypeToken<Map<String,Object>>(){}.getType();
     private final Map<String, String> pathCache = new ConcurrentHashMap<>();
 
     // ---------------------- Público ----------------------
@@ -64,7 +79,7 @@ public class ReportesService {
         );
         String url  = buildUrl(path, qs);
         log("GET facturas -> " + url);
-        return extractList(httpGetText(url));
+        return consultar(url, hasta, () -> httpGetList(url));
     }
 
     public File facturasPdf(LocalDate desde, LocalDate hasta, String cajeroNombre, String estado) throws Exception {
@@ -78,7 +93,7 @@ public class ReportesService {
         );
         String url  = buildUrl(path, qs);
         log("PDF facturas -> " + url);
-        return downloadPdf(url, "facturas");
+        return consultar(url, hasta, () -> downloadPdf(url, "facturas"));
     }
 
     public List<Map<String,Object>> cierres(LocalDate fecha, String cajeroNombre) throws Exception {
@@ -86,7 +101,7 @@ public class ReportesService {
         String qs   = query("fecha", iso(fecha), "cajero", nz(cajeroNombre), "usuario", nz(cajeroNombre));
         String url  = buildUrl(path, qs);
         log("GET cierres -> " + url);
-        return extractList(httpGetText(url));
+        return consultar(url, fecha, () -> httpGetList(url));
     }
 
     public File cierrePdf(LocalDate fecha, String cajeroNombre) throws Exception {
@@ -94,7 +109,7 @@ public class ReportesService {
         String qs   = query("fecha", iso(fecha), "cajero", nz(cajeroNombre), "usuario", nz(cajeroNombre));
         String url  = buildUrl(path, qs);
         log("PDF cierre -> " + url);
-        return downloadPdf(url, "cierre-caja");
+        return consultar(url, fecha, () -> downloadPdf(url, "cierre-caja"));
     }
 
     public List<Map<String,Object>> productosTop(LocalDate desde, LocalDate hasta, String grupo, Integer top) throws Exception {
@@ -107,7 +122,7 @@ public class ReportesService {
         );
         String url  = buildUrl(path, qs);
         log("GET productosTop -> " + url);
-        return extractList(httpGetText(url));
+        return consultar(url, hasta, () -> httpGetList(url));
     }
 
     public File productosTopPdf(LocalDate desde, LocalDate hasta, String grupo, Integer top) throws Exception {
@@ -120,7 +135,7 @@ public class ReportesService {
         );
         String url  = buildUrl(path, qs);
         log("PDF productosTop -> " + url);
-        return downloadPdf(url, "productos-top");
+        return consultar(url, hasta, () -> downloadPdf(url, "productos-top"));
     }
 
     public List<Map<String,Object>> ventasPeriodo(LocalDate desde, LocalDate hasta) throws Exception {
@@ -128,7 +143,7 @@ public class ReportesService {
         String qs   = query("fechaInicio", iso(desde), "fechaFin", iso(hasta));
         String url  = buildUrl(path, qs);
         log("GET ventasPeriodo -> " + url);
-        return extractList(httpGetText(url));
+        return consultar(url, hasta, () -> httpGetList(url));
     }
 
     public File ventasPeriodoPdf(LocalDate desde, LocalDate hasta) throws Exception {
@@ -136,7 +151,7 @@ public class ReportesService {
         String qs   = query("fechaInicio", iso(desde), "fechaFin", iso(hasta));
         String url  = buildUrl(path, qs);
         log("PDF ventasPeriodo -> " + url);
-        return downloadPdf(url, "ventas-periodo");
+        return consultar(url, hasta, () -> downloadPdf(url, "ventas-periodo"));
     }
 
     public List<Map<String,Object>> ventasSalonero(LocalDate desde, LocalDate hasta, String saloneroNombre) throws Exception {
@@ -145,7 +160,7 @@ public class ReportesService {
                 "salonero", nz(saloneroNombre), "usuario", nz(saloneroNombre));
         String url  = buildUrl(path, qs);
         log("GET ventasSalonero -> " + url);
-        return extractList(httpGetText(url));
+        return consultar(url, hasta, () -> httpGetList(url));
     }
 
     public File ventasSaloneroPdf(LocalDate desde, LocalDate hasta, String saloneroNombre) throws Exception {
@@ -154,7 +169,7 @@ public class ReportesService {
                 "salonero", nz(saloneroNombre), "usuario", nz(saloneroNombre));
         String url  = buildUrl(path, qs);
         log("PDF ventasSalonero -> " + url);
-        return downloadPdf(url, "ventas-salonero");
+        return consultar(url, hasta, () -> downloadPdf(url, "ventas-salonero"));
     }
 
     public List<Map<String,Object>> clientesTop(LocalDate desde, LocalDate hasta, Integer top) throws Exception {
@@ -163,7 +178,7 @@ public class ReportesService {
                 "top", top == null? null : String.valueOf(top));
         String url  = buildUrl(path, qs);
         log("GET clientesTop -> " + url);
-        return extractList(httpGetText(url));
+        return consultar(url, hasta, () -> httpGetList(url));
     }
 
     public File clientesTopPdf(LocalDate desde, LocalDate hasta, Integer top) throws Exception {
@@ -172,7 +187,7 @@ public class ReportesService {
                 "top", top == null? null : String.valueOf(top));
         String url  = buildUrl(path, qs);
         log("PDF clientesTop -> " + url);
-        return downloadPdf(url, "clientes-top");
+        return consultar(url, hasta, () -> downloadPdf(url, "clientes-top"));
     }
 
     public List<Map<String,Object>> descuentos(LocalDate desde, LocalDate hasta, String cajeroNombre) throws Exception {
@@ -181,7 +196,7 @@ public class ReportesService {
                 "cajero", nz(cajeroNombre), "usuario", nz(cajeroNombre));
         String url  = buildUrl(path, qs);
         log("GET descuentos -> " + url);
-        return extractList(httpGetText(url));
+        return consultar(url, hasta, () -> httpGetList(url));
     }
 
     public File descuentosPdf(LocalDate desde, LocalDate hasta, String cajeroNombre) throws Exception {
@@ -190,7 +205,155 @@ public class ReportesService {
                 "cajero", nz(cajeroNombre), "usuario", nz(cajeroNombre));
         String url  = buildUrl(path, qs);
         log("PDF descuentos -> " + url);
-        return downloadPdf(url, "descuentos");
+        return consultar(url, hasta, () -> downloadPdf(url, "descuentos"));
+    }
+
+    // ---------------------- Consultas en paralelo ----------------------
+
+    /** Una consulta de este servicio, p. ej. {@code s -> s.facturas(desde, hasta, null, null)}. */
+    @FunctionalInterface
+    public interface Consulta<T> {
+        T ejecutar(ReportesService s) throws Exception;
+    }
+
+    /** Corre la consulta en un hilo virtual del scope de la pantalla; completa en el hilo de JavaFX. */
+    public <T> CompletableFuture<T> async(Consulta<T> consulta) {
+        return RestClient.callAsync(() -> consulta.ejecutar(this));
+    }
+
+    /**
+     * Lanza varias consultas independientes a la vez (p. ej. las tablas de
+     * la pantalla) sin bloquear: cada una es su propia tarea y el future
+     * combinado completa en el hilo de JavaFX cuando terminan todas. Si una
+     * falla, las demás se cancelan.
+     * @return resultados con las mismas claves y en el mismo orden
+     */
+    public <T> CompletableFuture<Map<String, T>> enParalelo(Map<String, Consulta<T>> consultas) {
+        Map<String, CompletableFuture<T>> futuros = new LinkedHashMap<>();
+        consultas.forEach((nombre, c) -> futuros.put(nombre, async(c)));
+
+        CompletableFuture<Void> todas = CompletableFuture.allOf(futuros.values().toArray(CompletableFuture[]::new));
+        futuros.values().forEach(f -> f.whenComplete((v, ex) -> {
+            if (ex != null) futuros.values().forEach(o -> o.cancel(true));
+        }));
+        return todas.thenApply(v -> {
+            Map<String, T> out = new LinkedHashMap<>();
+            futuros.forEach((nombre, f) -> out.put(nombre, f.join())); // ya completos: no bloquea
+            return out;
+        });
+    }
+
+    // ---------------------- Progreso de descargas ----------------------
+
+
+    /** Avance de una descarga de PDF; total es -1 si el servidor no lo informa. */
+    @FunctionalInterface
+    public interface Progreso {
+        void avance(long bytes, long total);
+    }
+
+    private static final int SNIFF = 160;
+    private static final int BLOQUE = 64 * 1024;
+    private static final ThreadLocal<Progreso> PROGRESO = new ThreadLocal<>();
+
+    /**
+     * Ejecuta la consulta avisando el avance de las descargas de PDF que haga
+     * (en el hilo de la descarga). Si el PDF ya estaba en caché no hay avance.
+     */
+    public <T> T conProgreso(Progreso progreso, Consulta<T> consulta) throws Exception {
+        Progreso previo = PROGRESO.get();
+        PROGRESO.set(progreso);
+        try {
+            return consulta.ejecutar(this);
+        } finally {
+            if (previo != null) PROGRESO.set(previo); else PROGRESO.remove();
+        }
+    }
+
+    // ---------------------- Caché de resultados ----------------------
+
+    /**
+     * Resultados (filas o PDF) por URL, que ya lleva todos los parámetros
+     * (rango, cajero, grupo, top). Dos pedidos iguales a la vez comparten la
+     * misma llamada. Si el rango termina antes de hoy los datos casi no
+     * cambian y duran más (-Drestuna.reportes.ttlHistoricoMs, def. 10 min);
+     * si incluye hoy, -Drestuna.reportes.ttlMs (def. 60 s). Facturar o cerrar
+     * caja descarta todo.
+     */
+    private static final long TTL_MS = longProp("restuna.reportes.ttlMs", 60_000);
+    private static final long TTL_HISTORICO_MS = longProp("restuna.reportes.ttlHistoricoMs", 600_000);
+    private static final int MAX_RESULTADOS = 64;
+
+    private static final Map<String, Resultado> RESULTADOS = new LinkedHashMap<>(32, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Resultado> e) {
+            return size() > MAX_RESULTADOS;
+        }
+    };
+    private static final Map<String, CompletableFuture<Object>> EN_VUELO = new ConcurrentHashMap<>();
+
+    static {
+        ResponseCache.getInstance().addInvalidationListener(raiz -> {
+            if (raiz.equals("/facturas") || raiz.equals("/ordenes") || raiz.equals("/cierres")) {
+                limpiarCache();
+            }
+        });
+    }
+
+    public static void limpiarCache() {
+        synchronized (RESULTADOS) {
+            RESULTADOS.clear();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T consultar(String url, LocalDate hasta, Callable<T> llamada) throws Exception {
+        synchronized (RESULTADOS) {
+            Resultado r = RESULTADOS.get(url);
+            if (r != null && r.vigente()) {
+                log("cache -> " + url);
+                return (T) r.valor;
+            }
+        }
+        CompletableFuture<Object> propio = new CompletableFuture<>();
+        CompletableFuture<Object> otro = EN_VUELO.putIfAbsent(url, propio);
+        if (otro != null) {
+            try {
+                return (T) otro.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ex ? ex : e;
+            }
+        }
+        try {
+            T valor = llamada.call();
+            Object guardado = valor instanceof List<?> l ? Collections.unmodifiableList(l) : valor;
+            boolean historico = hasta != null && hasta.isBefore(LocalDate.now());
+            synchronized (RESULTADOS) {
+                RESULTADOS.put(url, new Resultado(guardado, historico ? TTL_HISTORICO_MS : TTL_MS));
+            }
+            propio.complete(guardado);
+            return (T) guardado;
+        } catch (Exception e) {
+            propio.completeExceptionally(e);
+            throw e;
+        } finally {
+            EN_VUELO.remove(url, propio);
+        }
+    }
+
+    private static final class Resultado {
+        final Object valor;
+        final long vence;
+
+        Resultado(Object valor, long ttl) {
+            this.valor = valor;
+            this.vence = System.currentTimeMillis() + ttl;
+        }
+
+        boolean vigente() {
+            if (System.currentTimeMillis() > vence) return false;
+            return !(valor instanceof File f) || f.isFile(); // el PDF temporal pudo borrarse
+        }
     }
 
     // ---------------------- Resolución de paths ----------------------
@@ -214,41 +377,89 @@ public class ReportesService {
 
     // ---------------------- HTTP helpers ----------------------
 
-    private static String httpGetText(String url) throws Exception {
-        try (CloseableHttpClient http = HttpClients.createDefault()) {
-            HttpGet get = new HttpGet(url);
-            get.setHeader("Accept", "application/json, text/plain, */*");
-            try (CloseableHttpResponse resp = http.execute(get)) {
-                int code = resp.getCode();
-                String txt = EntityUtils.toString(resp.getEntity(), StandardCharsets.UTF_8);
-                if (code < 200 || code >= 300) {
-                    throw new RuntimeException("HTTP " + code + " en " + url + " -> " + preview(txt));
+    /**
+     * GET de un reporte JSON. Las filas se decodifican en streaming desde la
+     * entidad HTTP, sin armar el String completo ni un árbol intermedio.
+     */
+    private static List<Map<String,Object>> httpGetList(String url) throws Exception {
+        CloseableHttpClient http = HttpClientManager.getClient();
+        HttpGet get = new HttpGet(url);
+        get.setHeader("Accept", "application/json, text/plain, */*");
+        try (CloseableHttpResponse resp = http.execute(get)) {
+            int code = resp.getCode();
+            HttpEntity entity = resp.getEntity();
+            if (code < 200 || code >= 300) {
+                String txt = (entity == null) ? "" : EntityUtils.toString(entity, StandardCharsets.UTF_8);
+                throw new RuntimeException("HTTP " + code + " en " + url + " -> " + preview(txt));
+            }
+            if (entity == null) {
+                throw new RuntimeException("La respuesta no es JSON en " + url + " -> (vacía)");
+            }
+            List<Map<String,Object>> rows = new ArrayList<>();
+            try (Reader reader = new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8)) {
+                ApiResponse<Integer> r = ApiResponse.<Map<String,Object>>decodeEach(reader, ROW_TYPE, G, rows::add);
+                if (r.isRaw()) {
+                    throw new RuntimeException("La respuesta no es JSON en " + url + " -> " + preview(r.getMessage()));
                 }
-                if (!isJsonLike(txt)) {
-                    throw new RuntimeException("La respuesta no es JSON en " + url + " -> " + preview(txt));
+                if (r.isDataNoLista()) {
+                    log("data no es lista en " + url + " -> " + preview(r.getMessage()));
                 }
-                return txt;
+            } finally {
+                EntityUtils.consumeQuietly(entity);
             }
+            return rows;
         }
     }
 
-    private File downloadPdf(String url, String prefix) throws Exception {
-        try (CloseableHttpClient http = HttpClients.createDefault()) {
-            HttpGet get = new HttpGet(url);
-            get.setHeader("Accept", "application/pdf, application/octet-stream");
-            try (CloseableHttpResponse resp = http.execute(get)) {
-                int code = resp.getCode();
-                byte[] bytes = EntityUtils.toByteArray(resp.getEntity());
-                String sniff = new String(bytes, 0, Math.min(bytes.length, 160), StandardCharsets.UTF_8);
-                if (code >= 200 && code < 300 && !looksLikeHtmlError(sniff)) {
-                    File out = File.createTempFile("reporte-" + prefix + "-", ".pdf");
-                    out.deleteOnExit();
-                    try (FileOutputStream fos = new FileOutputStream(out)) {
-                        fos.write(bytes);
+    /**
+     * Descarga el PDF directo a un archivo temporal: solo los primeros bytes
+     * quedan en memoria (para detectar una página de error en vez del PDF);
+     * el resto se copia por bloques al canal del archivo, avisando el avance
+     * al {@link Progreso} activo, si hay.
+     */
+    private static File downloadPdf(String url, String prefix) throws Exception {
+        CloseableHttpClient http = HttpClientManager.getClient();
+        HttpGet get = new HttpGet(url);
+        get.setHeader("Accept", "application/pdf, application/octet-stream");
+        Progreso progreso = PROGRESO.get();
+        try (CloseableHttpResponse resp = http.execute(get)) {
+            int code = resp.getCode();
+            HttpEntity entity = resp.getEntity();
+            if (entity == null) {
+                throw new RuntimeException("El endpoint no devolvió PDF. HTTP " + code + " en " + url + " -> (vacía)");
+            }
+            long total = entity.getContentLength();
+            try (InputStream in = entity.getContent()) {
+                byte[] cabecera = in.readNBytes(SNIFF);
+                String sniff = new String(cabecera, StandardCharsets.UTF_8);
+                if (code < 200 || code >= 300 || looksLikeHtmlError(sniff)) {
+                    throw new RuntimeException("El endpoint no devolvió PDF. HTTP " + code + " en " + url + " -> " + preview(sniff));
+                }
+
+                File out = File.createTempFile("reporte-" + prefix + "-", ".pdf");
+                out.deleteOnExit();
+                try (FileChannel canal = FileChannel.open(out.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                     ReadableByteChannel origen = Channels.newChannel(in)) {
+                    long escritos = canal.write(ByteBuffer.wrap(cabecera));
+                    if (progreso != null) progreso.avance(escritos, total);
+                    ByteBuffer buf = ByteBuffer.allocate(BLOQUE);
+                    while (origen.read(buf) >= 0) {
+                        if (Thread.currentThread().isInterrupted()) {
+                            throw new InterruptedException("Descarga cancelada");
+                        }
+                        buf.flip();
+                        while (buf.hasRemaining()) escritos += canal.write(buf);
+                        buf.clear();
+                        if (progreso != null) progreso.avance(escritos, total);
                     }
-                    return out;
+                    log("PDF " + prefix + " -> " + escritos + " bytes en " + out.getName());
+                } catch (Exception e) {
+                    Files.deleteIfExists(out.toPath());
+                    throw e;
                 }
-                throw new RuntimeException("El endpoint no devolvió PDF. HTTP " + code + " en " + url + " -> " + preview(sniff));
+                return out;
+            } finally {
+                EntityUtils.consumeQuietly(entity);
             }
         }
     }
@@ -259,12 +470,6 @@ public class ReportesService {
         return x.startsWith("<!doctype") || x.contains("<html") || x.contains("http status");
     }
 
-    private static boolean isJsonLike(String t) {
-        if (t == null) return false;
-        String s = t.trim();
-        return s.startsWith("{") || s.startsWith("[");
-    }
-
     // ---------------------- Util helpers ----------------------
 
     private static String nz(String s){ return (s==null || s.isBlank())? null : s; }
@@ -286,24 +491,11 @@ public class ReportesService {
         catch (Exception e){ return s; }
     }
 
-    @SuppressWarnings("unchecked")
-    private static List<Map<String,Object>> extractList(String json) {
-        Map<String,Object> parsed = RestClient.parseResponse(json);
-        Object data = parsed.get("data");
-        if (data instanceof List) return (List<Map<String, Object>>) data;
-        if (json.trim().startsWith("[")) return G.fromJson(json, List.class);
-        return Collections.emptyList();
-    }
-    
-  
-    
-    
-  
 // Agrega este método
 public File cierreByIdPdf(Long id) throws Exception {
     String path = resolvePath("reportes.cierres.byid.pdf").replace("{id}", String.valueOf(id));
     String url = buildUrl(path, null);
     log("PDF cierreById -> " + url);
-    return downloadPdf(url, "cierre-" + id);
+    return consultar(url, null, () -> downloadPdf(url, "cierre-" + id));
 }
 }
\ No newline at end of file
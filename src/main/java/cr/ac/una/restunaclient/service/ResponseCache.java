@@ -0,0 +1,224 @@
+package cr.ac.una.restunaclient.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static cr.ac.una.restunaclient.util.Propiedades.longProp;
+
+/**
+ * Caché HTTP del lado del cliente para endpoints de catálogo.
+ *
+ * - Solo se cachean los GET cuyo path tiene una regla de TTL registrada.
+ * - Mientras la entrada está fresca se sirve sin ir a la red; vencida, se
+ *   revalida con If-None-Match / If-Modified-Since y un 304 la renueva.
+ * - LRU con presupuesto en bytes (-Drestuna.cache.maxBytes, def. 8 MB).
+ * - POST/PUT/DELETE sobre un recurso invalidan sus listados
+ *   (p. ej. PUT /productos/5 invalida /productos y /productos?grupoId=...).
+ * - Cada invalidación sube una generación: un GET que empezó antes no puede
+ *   guardar su respuesta (ya vieja) después de invalidar.
+ */
+public final class ResponseCache {
+
+    private static final ResponseCache INSTANCE = new ResponseCache();
+
+    private final long maxBytes = longProp("restuna.cache.maxBytes", 8L * 1024 * 1024);
+    private long bytesUsados = 0;
+    private long hits = 0;
+    private long revalidados = 0;
+    private long misses = 0;
+    private long generacion = 0;
+
+    /** path (sin query) -> TTL en ms */
+    private final Map<String, Long> ttlPorPath = new ConcurrentHashMap<>();
+
+    /** raíz de recurso -> otras raíces cuyos listados dependen de ella */
+    private final Map<String, List<String>> dependencias = new ConcurrentHashMap<>();
+
+    /** Avisados con la raíz del recurso cada vez que se invalida (p. ej. CatalogService). */
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    /** endpoint completo (con query) -> entrada; orden de acceso para LRU */
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>(32, 0.75f, true);
+
+    private ResponseCache() {
+        // Catálogos que cambian poco
+        setTtl("/productos", 60_000);
+        setTtl("/grupos", 60_000);
+        setTtl("/grupos/ventas", 60_000);
+        setTtl("/salones", 30_000);
+        setTtl("/salones/tipo/salon", 30_000);
+        setTtl("/parametros", 300_000);
+
+        // Los productos traen su grupo; las mesas viven dentro de los salones
+        dependencias.put("/grupos", List.of("/productos"));
+        dependencias.put("/mesas", List.of("/salones"));
+    }
+
+    public static ResponseCache getInstance() {
+        return INSTANCE;
+    }
+
+    // ==================== CONFIGURACIÓN ====================
+
+    /** Registra (o cambia) el TTL de un path. 0 o negativo lo deja sin caché. */
+    public void setTtl(String path, long ttlMillis) {
+        if (ttlMillis <= 0) {
+            ttlPorPath.remove(path);
+            invalidarPrefijo(path);
+        } else {
+            ttlPorPath.put(path, ttlMillis);
+        }
+    }
+
+    public boolean isCacheable(String endpoint) {
+        return ttlPorPath.containsKey(pathDe(endpoint));
+    }
+
+    // ==================== LECTURA / ESCRITURA ====================
+
+    public synchronized Entrada get(String endpoint) {
+        return entradas.get(endpoint);
+    }
+
+    /** Generación actual; tomarla antes de pedir y pasarla a {@link #put}. */
+    public synchronized long getGeneracion() {
+        return generacion;
+    }
+
+    /**
+     * Guarda una respuesta 200 con sus validadores (pueden ser null). Se
+     * descarta si hubo una invalidación desde que se tomó la generación.
+     */
+    public synchronized void put(String endpoint, String body, String etag, String lastModified, long generacionPedido) {
+        Long ttl = ttlPorPath.get(pathDe(endpoint));
+        if (ttl == null || body == null) return;
+        if (generacionPedido != generacion) return; // se invalidó mientras viajaba
+
+        Entrada nueva = new Entrada(body, etag, lastModified, ttl);
+        if (nueva.bytes > maxBytes) return; // no cabe ni sola
+
+        Entrada anterior = entradas.put(endpoint, nueva);
+        if (anterior != null) bytesUsados -= anterior.bytes;
+        bytesUsados += nueva.bytes;
+        desalojar();
+    }
+
+    /** El servidor respondió 304: la entrada vuelve a estar fresca. */
+    public synchronized void renovar(String endpoint) {
+        Entrada e = entradas.get(endpoint);
+        if (e != null) {
+            e.guardadaEn = System.currentTimeMillis();
+            revalidados++;
+        }
+    }
+
+    synchronized void contarHit() { hits++; }
+    synchronized void contarMiss() { misses++; }
+
+    // ==================== INVALIDACIÓN ====================
+
+    /**
+     * Invalida lo cacheado para el recurso de un endpoint mutado y sus
+     * dependientes. "/productos/5" -> "/productos*"; "/salones/mesas/3" -> "/salones*".
+     */
+    public void invalidar(String endpoint) {
+        String raiz = raizDe(endpoint);
+        if (raiz.isEmpty()) return;
+        invalidarPrefijo(raiz);
+        listeners.forEach(l -> l.accept(raiz));
+        for (String dep : dependencias.getOrDefault(raiz, List.of())) {
+            invalidarPrefijo(dep);
+            listeners.forEach(l -> l.accept(dep));
+        }
+    }
+
+    /** Registra quien mantiene datos derivados de lo cacheado y debe descartarlos. */
+    public void addInvalidationListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    public synchronized void invalidarPrefijo(String prefijo) {
+        generacion++;
+        Iterator<Map.Entry<String, Entrada>> it = entradas.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entrada> me = it.next();
+            if (me.getKey().startsWith(prefijo)) {
+                bytesUsados -= me.getValue().bytes;
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void limpiar() {
+        generacion++;
+        entradas.clear();
+        bytesUsados = 0;
+    }
+
+    public synchronized String stats() {
+        return "Cache[entradas=" + entradas.size() + ", bytes=" + bytesUsados + "/" + maxBytes
+                + ", hits=" + hits + ", 304=" + revalidados + ", misses=" + misses + "]";
+    }
+
+    // ---------------------- Internos ----------------------
+
+    private void desalojar() {
+        Iterator<Map.Entry<String, Entrada>> it = entradas.entrySet().iterator();
+        while (bytesUsados > maxBytes && it.hasNext()) {
+            bytesUsados -= it.next().getValue().bytes;
+            it.remove();
+        }
+    }
+
+    private static String pathDe(String endpoint) {
+        int q = endpoint.indexOf('?');
+        return q >= 0 ? endpoint.substring(0, q) : endpoint;
+    }
+
+    /** Primer segmento del path: "/productos/5/x" -> "/productos". */
+    private static String raizDe(String endpoint) {
+        String path = pathDe(endpoint);
+        int slash = path.indexOf('/', 1);
+        return slash > 0 ? path.substring(0, slash) : path;
+    }
+
+    /**
+     * Respuesta cacheada con sus validadores HTTP.
+     */
+    public static final class Entrada {
+        private final String body;
+        private final String etag;
+        private final String lastModified;
+        private final long ttl;
+        private final long bytes;
+        private volatile long guardadaEn;
+
+        private Entrada(String body, String etag, String lastModified, long ttl) {
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.ttl = ttl;
+            this.bytes = body.getBytes(StandardCharsets.UTF_8).length;
+            this.guardadaEn = System.currentTimeMillis();
+        }
+
+        public String getBody() { return body; }
+        public String getEtag() { return etag; }
+        public String getLastModified() { return lastModified; }
+
+        public boolean isFresca() {
+            return System.currentTimeMillis() - guardadaEn < ttl;
+        }
+
+        /** Se puede pedir un 304 solo si el servidor mandó algún validador. */
+        public boolean isRevalidable() {
+            return etag != null || lastModified != null;
+        }
+    }
+}
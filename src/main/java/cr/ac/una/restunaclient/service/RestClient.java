@@ -2,19 +2,28 @@ package cr.ac.una.restunaclient.service;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonSerializer;
 import com.google.gson.JsonPrimitive;
+import cr.ac.una.restunaclient.util.IoScheduler;
+import cr.ac.una.restunaclient.util.Log;
 import java.awt.Desktop;
 import java.io.File;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import org.apache.hc.client5.http.classic.methods.HttpDelete;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.client5.http.classic.methods.HttpPut;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.apache.hc.core5.http.io.entity.StringEntity;
 
@@ -24,16 +33,22 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import javafx.application.Platform;
 
 /**
  * Cliente REST para comunicarse con el backend WsRestUNA.
  * Maneja las peticiones HTTP y la (de)serialización JSON.
+ * Todas las peticiones usan el pool compartido de {@link HttpClientManager}.
  */
 public class RestClient {
 
     // OJO: el contexto real según tu log es /ProyectoProgra3WS y los servicios REST están en /api/*
     // Ejemplo completo: http://localhost:8080/ProyectoProgra3WS/api/usuarios/login
     private static final String BASE_URL = "http://localhost:8080/ProyectoProgra3WS/api";
+    private static final String TAG = "RestClient";
 
     private static final Gson gson;
 
@@ -66,26 +81,103 @@ public class RestClient {
                 .create();
     }
 
+    /** URL completa de un endpoint (para quien arma su propia petición). */
+    static String url(String endpoint) {
+        return BASE_URL + endpoint;
+    }
+
     /**
      * Realiza una petición GET
      * @param endpoint Endpoint (ej: "/usuarios")
      * @return Respuesta como String
      */
     public static String get(String endpoint) throws Exception {
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            HttpGet request = new HttpGet(BASE_URL + endpoint);
-            request.setHeader("Content-Type", "application/json; charset=UTF-8");
-            request.setHeader("Accept", "application/json");
-
-            try (CloseableHttpResponse response = httpClient.execute(request)) {
-                String result = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
-                System.out.println("DEBUG GET " + endpoint + " -> " + result);
-                return result;
+        if (ResponseCache.getInstance().isCacheable(endpoint)) {
+            return getCached(endpoint);
+        }
+        CloseableHttpClient httpClient = HttpClientManager.getClient();
+        HttpGet request = new HttpGet(BASE_URL + endpoint);
+        request.setHeader("Content-Type", "application/json; charset=UTF-8");
+        request.setHeader("Accept", "application/json");
+
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            String result = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+            if (Log.isDebug()) Log.debug(TAG, "GET " + endpoint + " -> " + Log.truncar(result));
+            return result;
+        }
+    }
+
+    /**
+     * GET de catálogo pasando por {@link ResponseCache}: si la entrada está
+     * fresca no se toca la red; si venció, se revalida con If-None-Match /
+     * If-Modified-Since y un 304 reutiliza el cuerpo guardado.
+     */
+    private static String getCached(String endpoint) throws Exception {
+        ResponseCache cache = ResponseCache.getInstance();
+        ResponseCache.Entrada previa = cache.get(endpoint);
+        if (previa != null && previa.isFresca()) {
+            cache.contarHit();
+            if (Log.isDebug()) Log.debug(TAG, "GET " + endpoint + " -> [cache]");
+            return previa.getBody();
+        }
+        cache.contarMiss();
+        long generacion = cache.getGeneracion();
+
+        HttpGet request = constructGet(BASE_URL + endpoint);
+        if (previa != null && previa.isRevalidable()) {
+            if (previa.getEtag() != null) request.setHeader("If-None-Match", previa.getEtag());
+            if (previa.getLastModified() != null) request.setHeader("If-Modified-Since", previa.getLastModified());
+        }
+
+        try (CloseableHttpResponse response = HttpClientManager.getClient().execute(request)) {
+            if (response.getCode() == HttpStatus.SC_NOT_MODIFIED && previa != null) {
+                EntityUtils.consumeQuietly(response.getEntity());
+                cache.renovar(endpoint);
+                if (Log.isDebug()) Log.debug(TAG, "GET " + endpoint + " -> 304 [cache]");
+                return previa.getBody();
+            }
+            String result = response.getEntity() == null ? ""
+                    : EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+            // Solo se guardan respuestas buenas; un error no debe quedar pegado el TTL
+            if (response.getCode() == HttpStatus.SC_OK && esExitosa(result)) {
+                cache.put(endpoint, result, headerValue(response, "ETag"), headerValue(response, "Last-Modified"), generacion);
             }
+            if (Log.isDebug()) Log.debug(TAG, "GET " + endpoint + " -> " + Log.truncar(result));
+            return result;
         }
     }
-    
-    
+
+    /**
+     * Cuerpo JSON válido y sin success=false (un objeto sin "success" o una
+     * lista cuentan como éxito, igual que en parseResponse). HTML, texto
+     * plano o JSON roto no se cachean aunque vengan con 200.
+     */
+    private static boolean esExitosa(String body) {
+        try {
+            JsonElement json = JsonParser.parseString(body);
+            if (json.isJsonArray()) return true;
+            if (!json.isJsonObject()) return false;
+            JsonElement success = json.getAsJsonObject().get("success");
+            return success == null || (success.isJsonPrimitive() && success.getAsJsonPrimitive().isBoolean()
+                    && success.getAsBoolean());
+        } catch (RuntimeException ex) {
+            return false;
+        }
+    }
+
+    private static String headerValue(CloseableHttpResponse response, String name) {
+        Header h = response.getFirstHeader(name);
+        return h == null ? null : h.getValue();
+    }
+
+    /**
+     * Descarta lo cacheado del recurso afectado por un POST/PUT/DELETE.
+     */
+    private static void invalidarCache(String endpoint) {
+        ResponseCache.getInstance().invalidar(endpoint);
+    }
+
+
     public static void openFile(File file) {
         if (file == null) throw new IllegalArgumentException("Archivo nulo.");
         if (!file.exists() || file.length() == 0) {
@@ -115,22 +207,49 @@ public class RestClient {
      * @return Respuesta como String
      */
     public static String post(String endpoint, Object body) throws Exception {
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            HttpPost request = new HttpPost(BASE_URL + endpoint);
-            request.setHeader("Content-Type", "application/json; charset=UTF-8");
-            request.setHeader("Accept", "application/json");
+        CloseableHttpClient httpClient = HttpClientManager.getClient();
+        HttpPost request = new HttpPost(BASE_URL + endpoint);
+        request.setHeader("Content-Type", "application/json; charset=UTF-8");
+        request.setHeader("Accept", "application/json");
 
-            String jsonBody = gson.toJson(body);
-            request.setEntity(new StringEntity(jsonBody, ContentType.APPLICATION_JSON));
+        String jsonBody = gson.toJson(body);
+        request.setEntity(new StringEntity(jsonBody, ContentType.APPLICATION_JSON));
 
-            try (CloseableHttpResponse response = httpClient.execute(request)) {
-                String result = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
-                System.out.println("DEBUG POST " + endpoint + " -> " + result);
-                return result;
-            }
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            String result = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+            if (Log.isDebug()) Log.debug(TAG, "POST " + endpoint + " -> " + Log.truncar(result));
+            invalidarCache(endpoint);
+            return result;
+        }
+    }
+
+    /**
+     * POST que además devuelve el código HTTP, con cabeceras extra (p. ej.
+     * Idempotency-Key). Lo usan los flujos que deciden si reintentar según
+     * el código.
+     */
+    public static Respuesta postConEstado(String endpoint, Object body, Map<String, String> headers) throws Exception {
+        CloseableHttpClient httpClient = HttpClientManager.getClient();
+        HttpPost request = new HttpPost(BASE_URL + endpoint);
+        request.setHeader("Content-Type", "application/json; charset=UTF-8");
+        request.setHeader("Accept", "application/json");
+        if (headers != null) headers.forEach(request::setHeader);
+        request.setEntity(new StringEntity(gson.toJson(body), ContentType.APPLICATION_JSON));
+
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            String result = response.getEntity() != null
+                    ? EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8) : "";
+            if (Log.isDebug()) Log.debug(TAG, "POST " + endpoint + " -> " + response.getCode() + " " + Log.truncar(result));
+            invalidarCache(endpoint);
+            return new Respuesta(response.getCode(), result);
         }
     }
 
+    /** Código HTTP y cuerpo de una respuesta. */
+    public record Respuesta(int codigo, String cuerpo) {
+        public boolean isExito() { return codigo >= 200 && codigo < 300; }
+    }
+
     /**
      * Realiza una petición PUT
      * @param endpoint Endpoint (ej: "/usuarios/1")
@@ -138,19 +257,19 @@ public class RestClient {
      * @return Respuesta como String
      */
     public static String put(String endpoint, Object body) throws Exception {
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            HttpPut request = new HttpPut(BASE_URL + endpoint);
-            request.setHeader("Content-Type", "application/json; charset=UTF-8");
-            request.setHeader("Accept", "application/json");
+        CloseableHttpClient httpClient = HttpClientManager.getClient();
+        HttpPut request = new HttpPut(BASE_URL + endpoint);
+        request.setHeader("Content-Type", "application/json; charset=UTF-8");
+        request.setHeader("Accept", "application/json");
 
-            String jsonBody = gson.toJson(body);
-            request.setEntity(new StringEntity(jsonBody, ContentType.APPLICATION_JSON));
+        String jsonBody = gson.toJson(body);
+        request.setEntity(new StringEntity(jsonBody, ContentType.APPLICATION_JSON));
 
-            try (CloseableHttpResponse response = httpClient.execute(request)) {
-                String result = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
-                System.out.println("DEBUG PUT " + endpoint + " -> " + result);
-                return result;
-            }
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            String result = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+            if (Log.isDebug()) Log.debug(TAG, "PUT " + endpoint + " -> " + Log.truncar(result));
+            invalidarCache(endpoint);
+            return result;
         }
     }
 
@@ -160,15 +279,90 @@ public class RestClient {
      * @return Respuesta como String
      */
     public static String delete(String endpoint) throws Exception {
-        try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
-            HttpDelete request = new HttpDelete(BASE_URL + endpoint);
-            request.setHeader("Content-Type", "application/json; charset=UTF-8");
-            request.setHeader("Accept", "application/json");
-
-            try (CloseableHttpResponse response = httpClient.execute(request)) {
-                String result = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
-                System.out.println("DEBUG DELETE " + endpoint + " -> " + result);
+        CloseableHttpClient httpClient = HttpClientManager.getClient();
+        HttpDelete request = new HttpDelete(BASE_URL + endpoint);
+        request.setHeader("Content-Type", "application/json; charset=UTF-8");
+        request.setHeader("Accept", "application/json");
+
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            String result = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+            if (Log.isDebug()) Log.debug(TAG, "DELETE " + endpoint + " -> " + Log.truncar(result));
+            invalidarCache(endpoint);
+            return result;
+        }
+    }
+
+    /**
+     * GET tipado: lee el envelope { success, message, data } en una sola
+     * pasada y decodifica "data" directo al tipo indicado, sin el paso
+     * Map -> JSON -> POJO de parseResponse. El cuerpo se decodifica en
+     * streaming desde la entidad HTTP (no se arma el String completo).
+     * @param endpoint Endpoint (ej: "/productos")
+     * @param dataType Tipo de "data" (ej: new TypeToken&lt;List&lt;Producto&gt;&gt;(){}.getType())
+     * @return Respuesta tipada
+     */
+    public static <T> ApiResponse<T> getTyped(String endpoint, java.lang.reflect.Type dataType) throws Exception {
+        return getTyped(endpoint, dataType, gson);
+    }
+
+    /**
+     * Igual que {@link #getTyped(String, java.lang.reflect.Type)} pero con un
+     * Gson propio (p. ej. el de un controlador con adaptadores de fecha más
+     * tolerantes).
+     */
+    public static <T> ApiResponse<T> getTyped(String endpoint, java.lang.reflect.Type dataType, Gson customGson) throws Exception {
+        return stream(endpoint, reader -> ApiResponse.decode(reader, dataType, customGson));
+    }
+
+    /**
+     * GET que entrega cada elemento de "data" al consumidor a medida que se
+     * decodifica, sin acumular la lista ni el cuerpo en memoria.
+     * @return Respuesta cuyo "data" es la cantidad de elementos entregados
+     */
+    public static <E> ApiResponse<Integer> getEach(String endpoint, java.lang.reflect.Type elementType,
+                                                   java.util.function.Consumer<E> onElement) throws Exception {
+        return stream(endpoint, reader -> ApiResponse.decodeEach(reader, elementType, gson, onElement));
+    }
+
+    /**
+     * Versión asíncrona de {@link #getTyped}: la decodificación también
+     * ocurre fuera del hilo de JavaFX.
+     */
+    public static <T> CompletableFuture<ApiResponse<T>> getTypedAsync(String endpoint, java.lang.reflect.Type dataType) {
+        return callAsync(() -> getTyped(endpoint, dataType));
+    }
+
+    /**
+     * Versión asíncrona de {@link #getTyped(String, java.lang.reflect.Type, Gson)}.
+     */
+    public static <T> CompletableFuture<ApiResponse<T>> getTypedAsync(String endpoint, java.lang.reflect.Type dataType, Gson customGson) {
+        return callAsync(() -> getTyped(endpoint, dataType, customGson));
+    }
+
+    /**
+     * Ejecuta un GET y pasa el contenido de la entidad (como Reader UTF-8)
+     * al decodificador. Al cerrar el Reader se consume el resto del cuerpo y
+     * la conexión vuelve al pool.
+     */
+    private static <R> ApiResponse<R> stream(String endpoint, Function<Reader, ApiResponse<R>> decoder) throws Exception {
+        if (ResponseCache.getInstance().isCacheable(endpoint)) {
+            // Los catálogos se guardan como texto; se decodifica desde la caché
+            return decoder.apply(new StringReader(getCached(endpoint)));
+        }
+        CloseableHttpClient httpClient = HttpClientManager.getClient();
+        HttpGet request = constructGet(BASE_URL + endpoint);
+
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                return ApiResponse.error("Respuesta vacía del servidor");
+            }
+            try (Reader reader = new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8)) {
+                ApiResponse<R> result = decoder.apply(reader);
+                if (Log.isDebug()) Log.debug(TAG, "GET[stream] " + endpoint + " -> " + result);
                 return result;
+            } finally {
+                EntityUtils.consumeQuietly(entity);
             }
         }
     }
@@ -257,21 +451,128 @@ public class RestClient {
     }
     // --- NUEVO: GET binario (PDF, etc.) ---
 public static byte[] getBytes(String endpoint, Map<String, String> headers) throws Exception {
-    try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
+    CloseableHttpClient httpClient = HttpClientManager.getClient();
+    HttpGet request = constructGet(BASE_URL + endpoint);
+    // headers custom (ej. Accept: application/pdf)
+    if (headers != null) {
+        headers.forEach(request::setHeader);
+    } else {
+        request.setHeader("Accept", "*/*");
+    }
+    try (CloseableHttpResponse response = httpClient.execute(request)) {
+        byte[] bytes = EntityUtils.toByteArray(response.getEntity());
+        if (Log.isDebug()) Log.debug(TAG, "GET[bytes] " + endpoint + " -> " + bytes.length + " bytes");
+        return bytes;
+    }
+}
+
+    /**
+     * GET binario que además devuelve el código HTTP (para distinguir "no
+     * existe el endpoint" de un error pasajero).
+     */
+    public static RespuestaBytes getBytesConEstado(String endpoint, Map<String, String> headers) throws Exception {
+        CloseableHttpClient httpClient = HttpClientManager.getClient();
         HttpGet request = constructGet(BASE_URL + endpoint);
-        // headers custom (ej. Accept: application/pdf)
-        if (headers != null) {
-            headers.forEach(request::setHeader);
-        } else {
-            request.setHeader("Accept", "*/*");
-        }
+        if (headers != null) headers.forEach(request::setHeader);
+        else request.setHeader("Accept", "*/*");
+
         try (CloseableHttpResponse response = httpClient.execute(request)) {
-            byte[] bytes = EntityUtils.toByteArray(response.getEntity());
-            System.out.println("DEBUG GET[bytes] " + endpoint + " -> " + bytes.length + " bytes");
-            return bytes;
+            byte[] bytes = response.getEntity() != null ? EntityUtils.toByteArray(response.getEntity()) : new byte[0];
+            if (Log.isDebug()) Log.debug(TAG, "GET[bytes] " + endpoint + " -> " + response.getCode() + " " + bytes.length + " bytes");
+            return new RespuestaBytes(response.getCode(), bytes);
+        }
+    }
+
+    /** Código HTTP y cuerpo binario de una respuesta. */
+    public record RespuestaBytes(int codigo, byte[] cuerpo) {}
+
+    // ==================== API ASÍNCRONA ====================
+
+    /**
+     * GET asíncrono. El future se completa en el hilo de JavaFX.
+     */
+    public static CompletableFuture<String> getAsync(String endpoint) {
+        return callAsync(() -> get(endpoint));
+    }
+
+    /**
+     * GET asíncrono que además parsea la respuesta fuera del hilo de JavaFX.
+     */
+    public static <T> CompletableFuture<T> getAsync(String endpoint, Function<String, T> parser) {
+        return callAsync(() -> parser.apply(get(endpoint)));
+    }
+
+    /**
+     * POST asíncrono. El future se completa en el hilo de JavaFX.
+     */
+    public static CompletableFuture<String> postAsync(String endpoint, Object body) {
+        return callAsync(() -> post(endpoint, body));
+    }
+
+    /**
+     * POST asíncrono que además parsea la respuesta fuera del hilo de JavaFX.
+     */
+    public static <T> CompletableFuture<T> postAsync(String endpoint, Object body, Function<String, T> parser) {
+        return callAsync(() -> parser.apply(post(endpoint, body)));
+    }
+
+    /**
+     * PUT asíncrono. El future se completa en el hilo de JavaFX.
+     */
+    public static CompletableFuture<String> putAsync(String endpoint, Object body) {
+        return callAsync(() -> put(endpoint, body));
+    }
+
+    /**
+     * DELETE asíncrono. El future se completa en el hilo de JavaFX.
+     */
+    public static CompletableFuture<String> deleteAsync(String endpoint) {
+        return callAsync(() -> delete(endpoint));
+    }
+
+    /**
+     * Ejecuta cualquier trabajo bloqueante en el {@link IoScheduler} (scope de
+     * la pantalla actual) y entrega el resultado (o el error) en el hilo de
+     * JavaFX, de modo que los callbacks encadenados (thenAccept,
+     * whenComplete...) pueden tocar la UI. Cancelar el future devuelto
+     * interrumpe la petición.
+     */
+    public static <T> CompletableFuture<T> callAsync(Callable<T> work) {
+        return callAsync(IoScheduler.getInstance().getScopeActual(), work);
+    }
+
+    /**
+     * Igual que {@link #callAsync(Callable)} pero en el scope indicado (p. ej.
+     * el global, para trabajo que no debe cancelarse al navegar).
+     */
+    public static <T> CompletableFuture<T> callAsync(IoScheduler.Scope scope, Callable<T> work) {
+        CompletableFuture<T> io = IoScheduler.getInstance().submit(scope, work);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        io.whenComplete((value, ex) -> runOnFx(() -> {
+            if (ex != null) {
+                result.completeExceptionally(ex);
+            } else {
+                result.complete(value);
+            }
+        }));
+        result.whenComplete((value, ex) -> {
+            if (result.isCancelled()) io.cancel(true);
+        });
+        return result;
+    }
+
+    private static void runOnFx(Runnable r) {
+        if (Platform.isFxApplicationThread()) {
+            r.run();
+            return;
+        }
+        try {
+            Platform.runLater(r);
+        } catch (IllegalStateException toolkitNoIniciado) {
+            // Sin JavaFX (p. ej. uso desde consola): completamos en este mismo hilo
+            r.run();
         }
     }
-}
 
 // en RestClient
 public static Gson getGson() {
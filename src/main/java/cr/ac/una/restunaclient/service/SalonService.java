@@ -0,0 +1,184 @@
+package cr.ac.una.restunaclient.service;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import cr.ac.una.restunaclient.model.Salon;
+import cr.ac.una.restunaclient.util.ImageCache;
+import cr.ac.una.restunaclient.util.Log;
+import javafx.scene.image.Image;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Salones sin arrastrar la imagen de mesa en cada listado.
+ *
+ * - {@link #listarResumen(String)} pide el listado con ?resumen=true y lo
+ *   decodifica con un Gson que ignora "imagenMesa": aunque el backend la
+ *   mande igual, el Base64 se salta sin convertirlo a byte[].
+ * - {@link #getImagen(Salon, double, double)} trae la imagen solo cuando el
+ *   salón se va a dibujar: primero de disco (~/.restuna/cache/salones, por
+ *   id + versión), si no de GET /salones/{id}/imagen y, si el backend no
+ *   tiene ese endpoint (404/405), del salón completo (GET /salones/{id}).
+ *
+ * El mantenimiento de salones (SalonesController) sigue usando el listado
+ * completo porque reenvía la imagen al guardar.
+ */
+public final class SalonService {
+
+    private static final SalonService INSTANCE = new SalonService();
+    private static final String TAG = "Salones";
+
+    private static final Type TIPO_SALONES = new TypeToken<List<Salon>>(){}.getType();
+
+    private final Gson gsonResumen = RestClient.getGson().newBuilder()
+            .addDeserializationExclusionStrategy(new ExclusionStrategy() {
+                @Override
+                public boolean shouldSkipField(FieldAttributes f) {
+                    return f.getDeclaringClass() == Salon.class && "imagenMesa".equals(f.getName());
+                }
+
+                @Override
+                public boolean shouldSkipClass(Class<?> clazz) {
+                    return false;
+                }
+            })
+            .create();
+
+    private final Path dirCache = Paths.get(System.getProperty("user.home"), ".restuna", "cache", "salones");
+
+    /** Se apaga si el backend no tiene GET /salones/{id}/imagen. */
+    private volatile boolean endpointImagen = true;
+
+    private SalonService() {}
+
+    public static SalonService getInstance() {
+        return INSTANCE;
+    }
+
+    // ==================== LISTADOS ====================
+
+    /**
+     * Listado liviano (sin bytes de imagen). Bloqueante.
+     * @param endpoint p. ej. "/salones" o "/salones/tipo/salon"
+     */
+    public ApiResponse<List<Salon>> listarResumen(String endpoint) throws Exception {
+        String url = endpoint + (endpoint.contains("?") ? "&" : "?") + "resumen=true";
+        return RestClient.getTyped(url, TIPO_SALONES, gsonResumen);
+    }
+
+    /** Versión asíncrona de {@link #listarResumen(String)}. */
+    public CompletableFuture<ApiResponse<List<Salon>>> listarResumenAsync(String endpoint) {
+        return RestClient.callAsync(() -> listarResumen(endpoint));
+    }
+
+    // ==================== IMAGEN ====================
+
+    /**
+     * Imagen de mesa del salón ya escalada (pasa por {@link ImageCache}).
+     * Bloqueante si hay que ir a disco o al backend. null si no tiene.
+     */
+    public Image getImagen(Salon salon, double ancho, double alto) {
+        if (salon == null || salon.getId() == null || !salon.tieneImagen()) return null;
+        return ImageCache.getInstance().get(clave(salon), ancho, alto, () -> getImagenBytes(salon));
+    }
+
+    /** Versión asíncrona de {@link #getImagen(Salon, double, double)}. */
+    public CompletableFuture<Image> getImagenAsync(Salon salon, double ancho, double alto) {
+        return RestClient.callAsync(() -> getImagen(salon, ancho, alto));
+    }
+
+    /**
+     * Bytes de la imagen: disco, luego backend. Un archivo vacío en disco
+     * significa "este salón/versión no tiene imagen" y solo se escribe si
+     * el backend lo confirma; si la descarga falla no se guarda nada.
+     */
+    public byte[] getImagenBytes(Salon salon) {
+        if (salon.getImagenMesa() != null && salon.getImagenMesa().length > 0) {
+            return salon.getImagenMesa(); // ya vino en el listado completo
+        }
+        Path archivo = dirCache.resolve(clave(salon) + ".img");
+        try {
+            if (Files.exists(archivo)) {
+                return Files.readAllBytes(archivo);
+            }
+        } catch (IOException e) {
+            Log.warn(TAG, "No se pudo leer " + archivo + ": " + e.getMessage());
+        }
+
+        byte[] bytes = descargar(salon.getId());
+        if (bytes != null) guardar(salon, archivo, bytes);
+        return bytes;
+    }
+
+    /**
+     * @return la imagen, un arreglo vacío si el backend confirma que no
+     *         tiene, o null si no se pudo saber (error de red, respuesta rara)
+     */
+    private byte[] descargar(Long salonId) {
+        if (endpointImagen) {
+            try {
+                RestClient.RespuestaBytes r = RestClient.getBytesConEstado(
+                        "/salones/" + salonId + "/imagen", Map.of("Accept", "image/*"));
+                if (r.codigo() == 204) return new byte[0];
+                if (r.codigo() == 200 && esImagen(r.cuerpo())) return r.cuerpo();
+                if (r.codigo() != 404 && r.codigo() != 405) {
+                    Log.warn(TAG, "Respuesta inesperada de la imagen del salón " + salonId + ": HTTP " + r.codigo());
+                    return null;
+                }
+                endpointImagen = false;
+                Log.info(TAG, "Sin /salones/{id}/imagen en el backend; se usa el salón completo");
+            } catch (Exception e) {
+                Log.warn(TAG, "Fallo la descarga de imagen del salón " + salonId + ": " + e.getMessage());
+                return null;
+            }
+        }
+        try {
+            ApiResponse<Salon> r = RestClient.getTyped("/salones/" + salonId, Salon.class);
+            if (!r.isSuccess() || r.getData() == null) return null;
+            byte[] imagen = r.getData().getImagenMesa();
+            return imagen != null ? imagen : new byte[0];
+        } catch (Exception e) {
+            Log.warn(TAG, "Fallo la carga del salón " + salonId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Escribe de forma atómica y borra las versiones anteriores del mismo salón. */
+    private void guardar(Salon salon, Path archivo, byte[] bytes) {
+        try {
+            Files.createDirectories(dirCache);
+            try (DirectoryStream<Path> viejos = Files.newDirectoryStream(dirCache, "salon-" + salon.getId() + "-v*.img")) {
+                for (Path p : viejos) Files.deleteIfExists(p);
+            }
+            Path tmp = Files.createTempFile(dirCache, "salon", ".tmp");
+            Files.write(tmp, bytes);
+            Files.move(tmp, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Log.warn(TAG, "No se pudo guardar la imagen en disco: " + e.getMessage());
+        }
+    }
+
+    private static String clave(Salon salon) {
+        return "salon-" + salon.getId() + "-v" + (salon.getVersion() != null ? salon.getVersion() : 0);
+    }
+
+    /** PNG, JPEG o GIF por sus bytes mágicos. */
+    private static boolean esImagen(byte[] b) {
+        if (b == null || b.length < 4) return false;
+        boolean png = (b[0] & 0xFF) == 0x89 && b[1] == 'P' && b[2] == 'N' && b[3] == 'G';
+        boolean jpg = (b[0] & 0xFF) == 0xFF && (b[1] & 0xFF) == 0xD8;
+        boolean gif = b[0] == 'G' && b[1] == 'I' && b[2] == 'F';
+        return png || jpg || gif;
+    }
+}
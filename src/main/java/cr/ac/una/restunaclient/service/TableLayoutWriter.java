@@ -0,0 +1,238 @@
+package cr.ac.una.restunaclient.service;
+
+import cr.ac.una.restunaclient.model.Mesa;
+import cr.ac.una.restunaclient.util.IoScheduler;
+import cr.ac.una.restunaclient.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Guarda el diseño de un salón enviando solo las mesas que se movieron.
+ *
+ *   PUT /salones/mesas/posiciones
+ *   [ {id, posicionX, posicionY, version} ]
+ *
+ * Las mesas se marcan con {@link #marcar(Mesa)} al soltarlas; las que
+ * vuelven a su posición guardada se descartan solas. Cada mesa viaja con
+ * su version para que el backend rechace las que otra terminal movió
+ * mientras tanto.
+ *
+ * La respuesta se interpreta de forma tolerante:
+ * - "data": lista de {id, version} -> se actualizan las versiones locales.
+ * - "conflictos" (arriba o dentro de "data"): ids o {id, posicionX,
+ *   posicionY, version} de las mesas rechazadas; si traen la posición del
+ *   backend, se aplica localmente.
+ * Si el backend no devuelve nada de eso, un success=true confirma todo.
+ * Un success=false sin conflictos es un rechazo del backend: esas mesas no
+ * se reintentan y el resultado trae su mensaje para mostrarlo.
+ *
+ * Los envíos asíncronos se encadenan: uno nuevo espera al que está en vuelo,
+ * así "Guardar" no da por guardado lo que todavía viaja.
+ */
+public final class TableLayoutWriter {
+
+    private static final String TAG = "Diseño";
+
+    private final Long salonId;
+    private final LinkedHashMap<Long, Mesa> pendientes = new LinkedHashMap<>();
+    private CompletableFuture<Resultado> enVuelo = CompletableFuture.completedFuture(null);
+
+    public TableLayoutWriter(Long salonId) {
+        this.salonId = salonId;
+    }
+
+    public Long getSalonId() {
+        return salonId;
+    }
+
+    // ==================== ACUMULAR ====================
+
+    /** Anota una mesa movida (o la quita si volvió a su posición guardada). */
+    public synchronized void marcar(Mesa mesa) {
+        if (mesa == null || mesa.getId() == null) return;
+        if (mesa.isPosicionModificada()) pendientes.put(mesa.getId(), mesa);
+        else pendientes.remove(mesa.getId());
+    }
+
+    /** Olvida una mesa (p. ej. eliminada). */
+    public synchronized void quitar(Long mesaId) {
+        pendientes.remove(mesaId);
+    }
+
+    /** Descarta todo lo pendiente sin enviarlo. */
+    public synchronized void descartar() {
+        pendientes.clear();
+    }
+
+    public synchronized boolean hayPendientes() {
+        return !pendientes.isEmpty();
+    }
+
+    // ==================== ENVIAR ====================
+
+    /**
+     * Envía lo pendiente (bloqueante). Lo que falle por red vuelve a quedar
+     * pendiente; lo que el backend rechaza (por conflicto o no), no.
+     */
+    public Resultado flush() {
+        List<Mesa> mesas;
+        synchronized (this) {
+            if (pendientes.isEmpty()) return new Resultado(0, List.of(), null, List.of(), null);
+            mesas = new ArrayList<>(pendientes.values());
+            pendientes.clear();
+        }
+
+        List<Mesa> dtos = new ArrayList<>(mesas.size());
+        for (Mesa m : mesas) dtos.add(m.toUpdateDTO());
+
+        Map<String, Object> res;
+        try {
+            res = RestClient.parseResponse(RestClient.put("/salones/mesas/posiciones", dtos));
+        } catch (Exception ex) {
+            Log.warn(TAG, "Fallo el guardado del salón " + salonId + ": " + ex.getMessage());
+            reencolar(mesas);
+            return new Resultado(0, List.of(), ex.getMessage(), List.of(), null);
+        }
+
+        List<Mesa> conflictos = aplicarConflictos(mesas, res);
+        if (!Boolean.TRUE.equals(res.get("success")) && conflictos.isEmpty()) {
+            // Reenviar lo mismo daría el mismo rechazo: se descarta y se avisa
+            String motivo = res.get("message") != null ? String.valueOf(res.get("message")) : "Rechazado por el backend";
+            Log.warn(TAG, "El backend rechazó el diseño del salón " + salonId + ": " + motivo);
+            return new Resultado(0, List.of(), null, mesas, motivo);
+        }
+
+        aplicarVersiones(mesas, res.get("data"));
+        int guardadas = 0;
+        for (int i = 0; i < mesas.size(); i++) {
+            Mesa m = mesas.get(i);
+            if (conflictos.contains(m)) continue;
+            guardadas++;
+            Mesa dto = dtos.get(i);
+            if (dto.getPosicionX().equals(m.getPosicionX()) && dto.getPosicionY().equals(m.getPosicionY())) {
+                m.marcarPosicionGuardada();
+            } else {
+                marcar(m); // se volvió a mover mientras viajaba
+            }
+        }
+        Log.debug(TAG, () -> "Salón " + salonId + ": " + mesas.size() + " mesas enviadas, "
+                + conflictos.size() + " en conflicto");
+        return new Resultado(guardadas, conflictos, null, List.of(), null);
+    }
+
+    /**
+     * Envío asíncrono encadenado tras el que esté en vuelo; sobrevive a la
+     * navegación y completa en el hilo de JavaFX.
+     */
+    public synchronized CompletableFuture<Resultado> flushAsync() {
+        CompletableFuture<Resultado> envio = enVuelo.handle((r, e) -> null)
+                .thenCompose(x -> RestClient.callAsync(IoScheduler.getInstance().getScopeGlobal(), this::flush));
+        enVuelo = envio;
+        return envio;
+    }
+
+    /** El último envío asíncrono pedido (ya completado si no hay ninguno en vuelo). */
+    public synchronized CompletableFuture<Resultado> getEnvioEnCurso() {
+        return enVuelo;
+    }
+
+    private synchronized void reencolar(List<Mesa> mesas) {
+        for (Mesa m : mesas) pendientes.putIfAbsent(m.getId(), m);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Mesa> aplicarConflictos(List<Mesa> mesas, Map<String, Object> res) {
+        Object lista = res.get("conflictos");
+        if (lista == null && res.get("data") instanceof Map<?, ?> data) {
+            lista = data.get("conflictos");
+        }
+        if (!(lista instanceof List<?> items)) return List.of();
+
+        List<Mesa> conflictos = new ArrayList<>();
+        for (Object item : items) {
+            Long id = item instanceof Map<?, ?> m ? aLong(m.get("id")) : aLong(item);
+            Mesa mesa = buscar(mesas, id);
+            if (mesa == null) continue;
+            conflictos.add(mesa);
+            if (item instanceof Map<?, ?> m) {
+                Map<String, Object> remota = (Map<String, Object>) m;
+                if (remota.get("posicionX") instanceof Number x && remota.get("posicionY") instanceof Number y) {
+                    mesa.setPosicionX(x.doubleValue());
+                    mesa.setPosicionY(y.doubleValue());
+                    mesa.marcarPosicionGuardada();
+                }
+                Long version = aLong(remota.get("version"));
+                if (version != null) mesa.setVersion(version);
+            }
+        }
+        return conflictos;
+    }
+
+    private static void aplicarVersiones(List<Mesa> mesas, Object data) {
+        if (!(data instanceof List<?> items)) return;
+        for (Object item : items) {
+            if (!(item instanceof Map<?, ?> m)) continue;
+            Mesa mesa = buscar(mesas, aLong(m.get("id")));
+            Long version = aLong(m.get("version"));
+            if (mesa != null && version != null) mesa.setVersion(version);
+        }
+    }
+
+    private static Mesa buscar(List<Mesa> mesas, Long id) {
+        if (id == null) return null;
+        for (Mesa m : mesas) {
+            if (id.equals(m.getId())) return m;
+        }
+        return null;
+    }
+
+    private static Long aLong(Object o) {
+        if (o instanceof Number n) return n.longValue();
+        if (o instanceof String s) {
+            try {
+                return Long.parseLong(s.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resultado de un envío.
+     */
+    public static final class Resultado {
+        private final int guardadas;
+        private final List<Mesa> conflictos;
+        private final String error;
+        private final List<Mesa> rechazadas;
+        private final String rechazo;
+
+        private Resultado(int guardadas, List<Mesa> conflictos, String error, List<Mesa> rechazadas, String rechazo) {
+            this.guardadas = guardadas;
+            this.conflictos = conflictos;
+            this.error = error;
+            this.rechazadas = rechazadas;
+            this.rechazo = rechazo;
+        }
+
+        public boolean isOk() { return error == null && rechazo == null && conflictos.isEmpty(); }
+        public int getGuardadas() { return guardadas; }
+
+        /** Mesas que otra terminal movió; ya traen la posición del backend si vino en la respuesta. */
+        public List<Mesa> getConflictos() { return conflictos; }
+
+        /** Mensaje si el envío falló (lo enviado quedó pendiente otra vez). */
+        public String getError() { return error; }
+
+        /** Mesas que el backend rechazó sin conflicto; ya no quedan pendientes. */
+        public List<Mesa> getRechazadas() { return rechazadas; }
+
+        /** Mensaje del backend al rechazar el envío (null si no lo rechazó). */
+        public String getRechazo() { return rechazo; }
+    }
+}
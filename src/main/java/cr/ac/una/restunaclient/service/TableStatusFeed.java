@@ -0,0 +1,344 @@
+package cr.ac.una.restunaclient.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+import cr.ac.una.restunaclient.util.IoScheduler;
+import cr.ac.una.restunaclient.util.Log;
+import javafx.application.Platform;
+import org.apache.hc.client5.http.classic.methods.HttpGet;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static cr.ac.una.restunaclient.util.Propiedades.longProp;
+
+/**
+ * Cambios de estado de las mesas (LIBRE/OCUPADA) de un salón sin recargar
+ * el plano completo.
+ *
+ * Cada suscripción corre en un hilo daemon propio (no ocupa cupos del
+ * IoScheduler) y entrega solo las mesas que cambiaron, en el hilo de JavaFX:
+ * - SSE: GET /salones/{id}/mesas/eventos (text/event-stream), cada evento
+ *   con {id|mesaId, estado, version} o una lista de ellos. Se reconecta
+ *   si se corta.
+ * - Si el backend no tiene ese endpoint (404/405 o no responde
+ *   text/event-stream), se recuerda y se cae a un sondeo
+ *   de GET /salones/{id}/mesas cada -Drestuna.mesas.pollMs (def. 5000) con
+ *   If-None-Match: mientras nada cambie el backend puede responder 304 sin
+ *   cuerpo. Cuando llega la lista, se decodifica solo id/estado/version y
+ *   se compara con el último estado conocido. Otros errores (5xx, red)
+ *   solo esperan más antes de reintentar.
+ * - {@link #publicarLocal} entrega al instante los cambios hechos en esta
+ *   misma terminal. Con -Drestuna.mesas.feed=local no se usa la red: sirve
+ *   de stub para probar la pantalla sin backend. Otros valores: auto
+ *   (def.), sse, poll.
+ */
+public final class TableStatusFeed {
+
+    private static final TableStatusFeed INSTANCE = new TableStatusFeed();
+    private static final String TAG = "MesasFeed";
+
+    private static final Type TIPO_ESTADOS = new TypeToken<List<EstadoMesa>>(){}.getType();
+
+    private final long pollMs = longProp("restuna.mesas.pollMs", 5_000);
+    private final long sseTimeoutMs = longProp("restuna.mesas.sseTimeout", 120_000);
+    private final String modo = System.getProperty("restuna.mesas.feed", "auto").trim().toLowerCase();
+    private final Gson gson = RestClient.getGson();
+
+    /** Se apaga si el backend no tiene /mesas/eventos. */
+    private volatile boolean sseDisponible = true;
+
+    private final Map<Long, List<Suscripcion>> porSalon = new ConcurrentHashMap<>();
+
+    private TableStatusFeed() {}
+
+    public static TableStatusFeed getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Estado de una mesa tal como llega del backend (solo lo necesario).
+     */
+    public static final class Cambio {
+        private final Long mesaId;
+        private final String estado;
+        private final Long version;
+
+        public Cambio(Long mesaId, String estado, Long version) {
+            this.mesaId = mesaId;
+            this.estado = estado;
+            this.version = version;
+        }
+
+        public Long getMesaId() { return mesaId; }
+        public String getEstado() { return estado; }
+        public Long getVersion() { return version; }
+    }
+
+    /** Forma reducida de Mesa para el sondeo. */
+    private static final class EstadoMesa {
+        Long id;
+        String estado;
+        Long version;
+    }
+
+    // ==================== SUSCRIPCIÓN ====================
+
+    /**
+     * Empieza a escuchar el salón. La suscripción se cierra sola al salir de
+     * la pantalla actual (scope del {@link IoScheduler}).
+     * @param estadosIniciales id -> estado ya dibujado (solo se avisan diferencias)
+     * @param listener recibe los cambios en el hilo de JavaFX
+     */
+    public Suscripcion suscribir(Long salonId, Map<Long, String> estadosIniciales, Consumer<List<Cambio>> listener) {
+        Suscripcion s = new Suscripcion(salonId, estadosIniciales, listener);
+        porSalon.computeIfAbsent(salonId, k -> new CopyOnWriteArrayList<>()).add(s);
+        IoScheduler.getInstance().getScopeActual().alCancelar(s::close);
+        if (!"local".equals(modo)) {
+            Thread t = new Thread(s::correr, "restuna-mesas-" + salonId);
+            t.setDaemon(true);
+            s.hilo = t;
+            t.start();
+        }
+        return s;
+    }
+
+    /**
+     * Cambio hecho desde esta terminal (p. ej. al crear o cancelar una
+     * orden): se entrega ya a quien escuche el salón, sin esperar al backend.
+     */
+    public void publicarLocal(Long salonId, Long mesaId, String estado) {
+        if (salonId == null || mesaId == null) return;
+        List<Suscripcion> subs = porSalon.get(salonId);
+        if (subs == null) return;
+        for (Suscripcion s : subs) {
+            s.aplicar(List.of(new Cambio(mesaId, estado, null)));
+        }
+    }
+
+    /**
+     * Una suscripción activa; {@link #close()} la detiene.
+     */
+    public final class Suscripcion implements AutoCloseable {
+        private final Long salonId;
+        private final Map<Long, String> conocidos;
+        private final Consumer<List<Cambio>> listener;
+        private volatile boolean cerrada;
+        private volatile Thread hilo;
+        private volatile HttpGet enCurso;
+        private String etag;
+
+        private Suscripcion(Long salonId, Map<Long, String> iniciales, Consumer<List<Cambio>> listener) {
+            this.salonId = salonId;
+            this.conocidos = new HashMap<>(iniciales != null ? iniciales : Map.of());
+            this.listener = listener;
+        }
+
+        public Long getSalonId() {
+            return salonId;
+        }
+
+        @Override
+        public void close() {
+            if (cerrada) return;
+            cerrada = true;
+            List<Suscripcion> subs = porSalon.get(salonId);
+            if (subs != null) subs.remove(this);
+            HttpGet r = enCurso;
+            if (r != null) r.cancel();
+            Thread t = hilo;
+            if (t != null) t.interrupt();
+        }
+
+        private void correr() {
+            long espera = 1_000;
+            while (!cerrada) {
+                try {
+                    if (sseDisponible && !"poll".equals(modo)) {
+                        if (escucharSse()) {
+                            espera = 1_000; // se cortó tras conectar bien: reconectar pronto
+                        } else if (!"sse".equals(modo)) {
+                            sseDisponible = false;
+                            Log.info(TAG, "Sin /mesas/eventos en el backend; se sondea cada " + pollMs + " ms");
+                        } else {
+                            // Forzado a SSE sin endpoint: reintentar sin martillar al backend
+                            espera = Math.min(Math.max(espera * 2, 1_000), 30_000);
+                        }
+                    } else {
+                        sondear();
+                        espera = pollMs;
+                    }
+                } catch (Exception e) {
+                    if (cerrada) return;
+                    Log.debug(TAG, () -> "Salón " + salonId + ": " + e.getMessage());
+                    espera = Math.min(Math.max(espera * 2, 1_000), 30_000); // backoff ante errores de red
+                }
+                dormir(espera);
+            }
+        }
+
+        /**
+         * true si llegó a conectarse como SSE (aunque luego se corte); false
+         * si el backend no tiene el endpoint (404/405 o no responde
+         * text/event-stream). Otros códigos son errores pasajeros y lanzan.
+         */
+        private boolean escucharSse() throws Exception {
+            HttpGet req = new HttpGet(RestClient.url("/salones/" + salonId + "/mesas/eventos"));
+            req.setHeader("Accept", "text/event-stream");
+            req.setConfig(RequestConfig.custom()
+                    .setResponseTimeout(Timeout.ofMilliseconds(sseTimeoutMs))
+                    .build());
+            enCurso = req;
+            try (CloseableHttpResponse resp = HttpClientManager.getClient().execute(req)) {
+                HttpEntity entity = resp.getEntity();
+                String tipo = entity != null && entity.getContentType() != null ? entity.getContentType() : "";
+                int codigo = resp.getCode();
+                if (codigo == HttpStatus.SC_NOT_FOUND || codigo == HttpStatus.SC_METHOD_NOT_ALLOWED
+                        || codigo == HttpStatus.SC_OK && !tipo.startsWith("text/event-stream")) {
+                    EntityUtils.consumeQuietly(entity);
+                    return false;
+                }
+                if (codigo != HttpStatus.SC_OK) {
+                    EntityUtils.consumeQuietly(entity);
+                    throw new IOException("HTTP " + codigo + " en /mesas/eventos");
+                }
+                Log.debug(TAG, () -> "Salón " + salonId + ": escuchando eventos");
+                try (BufferedReader in = new BufferedReader(new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8))) {
+                    StringBuilder data = new StringBuilder();
+                    String linea;
+                    while (!cerrada && (linea = in.readLine()) != null) {
+                        if (linea.isEmpty()) {
+                            if (data.length() > 0) aplicar(parsearEvento(data.toString()));
+                            data.setLength(0);
+                        } else if (linea.startsWith("data:")) {
+                            if (data.length() > 0) data.append('\n');
+                            data.append(linea.substring(5).trim());
+                        }
+                        // "event:", "id:", "retry:" y comentarios (":") se ignoran
+                    }
+                }
+                return true;
+            } catch (Exception e) {
+                if (cerrada) return true;
+                throw e;
+            } finally {
+                enCurso = null;
+            }
+        }
+
+        private void sondear() throws Exception {
+            HttpGet req = new HttpGet(RestClient.url("/salones/" + salonId + "/mesas"));
+            req.setHeader("Accept", "application/json");
+            if (etag != null) req.setHeader("If-None-Match", etag);
+            enCurso = req;
+            try (CloseableHttpResponse resp = HttpClientManager.getClient().execute(req)) {
+                HttpEntity entity = resp.getEntity();
+                if (resp.getCode() == HttpStatus.SC_NOT_MODIFIED || entity == null) {
+                    EntityUtils.consumeQuietly(entity);
+                    return;
+                }
+                Header h = resp.getFirstHeader("ETag");
+                etag = h != null ? h.getValue() : null;
+                ApiResponse<List<EstadoMesa>> r;
+                try (Reader reader = new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8)) {
+                    r = ApiResponse.decode(reader, TIPO_ESTADOS, gson);
+                } finally {
+                    EntityUtils.consumeQuietly(entity);
+                }
+                if (!r.isSuccess() || r.getData() == null) return;
+
+                List<Cambio> cambios = new ArrayList<>();
+                for (EstadoMesa m : r.getData()) {
+                    cambios.add(new Cambio(m.id, m.estado, m.version));
+                }
+                aplicar(cambios);
+            } finally {
+                enCurso = null;
+            }
+        }
+
+        /** Filtra lo que ya se conocía y entrega el resto en el hilo de JavaFX. */
+        private void aplicar(List<Cambio> cambios) {
+            List<Cambio> nuevos = new ArrayList<>();
+            synchronized (conocidos) {
+                for (Cambio c : cambios) {
+                    if (c.getMesaId() == null || c.getEstado() == null) continue;
+                    if (!Objects.equals(conocidos.put(c.getMesaId(), c.getEstado()), c.getEstado())) {
+                        nuevos.add(c);
+                    }
+                }
+            }
+            if (nuevos.isEmpty() || cerrada) return;
+            Log.debug(TAG, () -> "Salón " + salonId + ": " + nuevos.size() + " mesas cambiaron");
+            enFx(() -> {
+                if (!cerrada) listener.accept(nuevos);
+            });
+        }
+
+        private void dormir(long ms) {
+            try {
+                Thread.sleep(ms);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cerrada = true;
+            }
+        }
+    }
+
+    // ---------------------- Util ----------------------
+
+    private List<Cambio> parsearEvento(String json) {
+        List<Cambio> out = new ArrayList<>();
+        try {
+            JsonElement e = JsonParser.parseString(json);
+            if (e.isJsonObject() && e.getAsJsonObject().has("data")) {
+                e = e.getAsJsonObject().get("data"); // envelope {success, data}
+            }
+            JsonArray items = e.isJsonArray() ? e.getAsJsonArray() : new JsonArray();
+            if (e.isJsonObject()) items.add(e);
+            for (JsonElement it : items) {
+                if (!it.isJsonObject()) continue;
+                JsonObject o = it.getAsJsonObject();
+                Long id = o.has("mesaId") ? o.get("mesaId").getAsLong()
+                        : o.has("id") ? o.get("id").getAsLong() : null;
+                String estado = o.has("estado") && !o.get("estado").isJsonNull() ? o.get("estado").getAsString() : null;
+                Long version = o.has("version") && !o.get("version").isJsonNull() ? o.get("version").getAsLong() : null;
+                out.add(new Cambio(id, estado, version));
+            }
+        } catch (Exception ex) {
+            Log.debug(TAG, () -> "Evento ignorado: " + Log.truncar(json));
+        }
+        return out;
+    }
+
+    private static void enFx(Runnable r) {
+        try {
+            Platform.runLater(r);
+        } catch (IllegalStateException toolkitNoIniciado) {
+            r.run();
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package cr.ac.una.restunaclient.util;
+
+import javafx.animation.AnimationTimer;
+import javafx.animation.Interpolator;
+import javafx.scene.Node;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Reloj de animaciones compartido por toda la interfaz.
+ *
+ * - Un solo AnimationTimer mueve todos los tweens, pulsos y callbacks por
+ *   cuadro; cuando no queda nada activo se detiene (CPU ~0 en reposo).
+ * - Los tweens se reciclan: un nodo tiene a lo sumo uno por canal
+ *   ("escala", "opacidad"...) y pedir otro en el mismo canal reemplaza al
+ *   anterior en vez de apilar transiciones.
+ * - Todo va atado a un nodo: si el nodo sale de la escena, su animación se
+ *   descarta sola (no quedan pulsos sobre nodos ya borrados).
+ * - Los pulsos duran un número fijo de ciclos y se actualizan a ~30 fps;
+ *   al terminar el nodo vuelve a escala 1 y el reloj puede detenerse.
+ *
+ * Solo se usa desde el hilo de JavaFX.
+ */
+public final class Animador {
+
+    private static final Animador INSTANCE = new Animador();
+
+    private static final long NANOS_POR_MS = 1_000_000L;
+    private static final long NANOS_CUADRO_PULSO = 33 * NANOS_POR_MS;
+    /** Un nodo que nunca llegó a la escena en este tiempo se descarta. */
+    private static final long NANOS_SIN_ESCENA = 2_000 * NANOS_POR_MS;
+    private static final int MAX_LIBRES = 64;
+
+    private final List<Tween> tweens = new ArrayList<>();
+    private final List<Pulso> pulsos = new ArrayList<>();
+    private final List<Cuadro> cuadros = new ArrayList<>();
+    private final ArrayDeque<Tween> libres = new ArrayDeque<>();
+
+    private long ultimoPulso;
+    private boolean corriendo;
+    private final AnimationTimer reloj = new AnimationTimer() {
+        @Override
+        public void handle(long ahora) {
+            tick(ahora);
+        }
+    };
+
+    private Animador() {}
+
+    public static Animador getInstance() {
+        return INSTANCE;
+    }
+
+    // ==================== TWEENS ====================
+
+    /**
+     * Anima de 0 a 1 (ya interpolado) durante duracionMs, tras retrasoMs.
+     * Reemplaza la animación del mismo nodo y canal si la hay.
+     * @param paso recibe el avance en [0, 1] en cada cuadro
+     * @param alTerminar puede ser null; no corre si se reemplaza o se descarta
+     */
+    public void animar(Node nodo, String canal, double retrasoMs, double duracionMs,
+                       Interpolator interp, DoubleConsumer paso, Runnable alTerminar) {
+        Tween t = buscar(nodo, canal);
+        if (t == null) {
+            t = libres.isEmpty() ? new Tween() : libres.pop();
+            tweens.add(t);
+        }
+        t.nodo = nodo;
+        t.canal = canal;
+        t.inicio = -1;
+        t.retraso = (long) (retrasoMs * NANOS_POR_MS);
+        t.duracion = Math.max(1, (long) (duracionMs * NANOS_POR_MS));
+        t.interp = interp != null ? interp : Interpolator.LINEAR;
+        t.paso = paso;
+        t.alTerminar = alTerminar;
+        t.visto = nodo.getScene() != null;
+        arrancar();
+    }
+
+    /** Escala uniforme desde la actual hasta el valor dado. */
+    public void escalar(Node nodo, double hacia, double ms) {
+        double desde = nodo.getScaleX();
+        animar(nodo, "escala", 0, ms, Interpolator.EASE_OUT, t -> {
+            double v = desde + (hacia - desde) * t;
+            nodo.setScaleX(v);
+            nodo.setScaleY(v);
+        }, null);
+    }
+
+    /** Opacidad desde la actual hasta el valor dado. */
+    public void opacidad(Node nodo, double hacia, double ms) {
+        double desde = nodo.getOpacity();
+        animar(nodo, "opacidad", 0, ms, Interpolator.LINEAR, t -> nodo.setOpacity(desde + (hacia - desde) * t), null);
+    }
+
+    /** Sube la escala hasta pico y vuelve a 1 (p. ej. al seleccionar). */
+    public void rebote(Node nodo, double pico, double ms) {
+        animar(nodo, "escala", 0, ms, Interpolator.LINEAR, t -> {
+            double v = 1 + (pico - 1) * (t < 0.5 ? t * 2 : (1 - t) * 2);
+            nodo.setScaleX(v);
+            nodo.setScaleY(v);
+        }, null);
+    }
+
+    /** Corre la acción tras ms (p. ej. quitar un efecto); se reinicia si se pide de nuevo. */
+    public void despues(Node nodo, String canal, double ms, Runnable accion) {
+        animar(nodo, canal, 0, ms, Interpolator.LINEAR, t -> { }, accion);
+    }
+
+    // ==================== PULSOS Y CUADROS ====================
+
+    /**
+     * Pulso de escala entre 1 y 1 + amplitud (ida y vuelta en periodoMs cada
+     * tramo) durante la cantidad de ciclos dada. Se descarta antes si el nodo
+     * sale de la escena.
+     */
+    public void pulso(Node nodo, double amplitud, double periodoMs, int ciclos) {
+        for (Pulso p : pulsos) {
+            if (p.nodo == nodo) return;
+        }
+        Pulso p = new Pulso();
+        p.nodo = nodo;
+        p.amplitud = amplitud;
+        p.periodo = (long) (periodoMs * NANOS_POR_MS);
+        p.ciclos = Math.max(1, ciclos);
+        p.inicio = -1;
+        p.visto = nodo.getScene() != null;
+        pulsos.add(p);
+        arrancar();
+    }
+
+    /**
+     * Callback en cada cuadro mientras devuelva true (p. ej. un Canvas que
+     * se redibuja). Se descarta al salir el nodo de la escena.
+     */
+    public void alCuadro(Node nodo, LongPredicate tick) {
+        Cuadro c = new Cuadro();
+        c.nodo = nodo;
+        c.tick = tick;
+        c.visto = nodo.getScene() != null;
+        cuadros.add(c);
+        arrancar();
+    }
+
+    /**
+     * Lleva al final la animación del canal, si la hay: aplica el último
+     * paso y corre su alTerminar ya, en vez de descartarlo.
+     */
+    public void terminar(Node nodo, String canal) {
+        Tween t = buscar(nodo, canal);
+        if (t == null) return;
+        tweens.remove(t);
+        DoubleConsumer paso = t.paso;
+        Runnable fin = t.alTerminar;
+        reciclar(t);
+        paso.accept(1.0);
+        if (fin != null) fin.run();
+    }
+
+    /** Detiene todo lo que anima al nodo (sin correr los alTerminar). */
+    public void detener(Node nodo) {
+        for (int i = tweens.size() - 1; i >= 0; i--) {
+            if (tweens.get(i).nodo == nodo) reciclar(tweens.remove(i));
+        }
+        pulsos.removeIf(p -> p.nodo == nodo);
+        cuadros.removeIf(c -> c.nodo == nodo);
+    }
+
+    public String stats() {
+        return "Animador[tweens=" + tweens.size() + ", pulsos=" + pulsos.size()
+                + ", cuadros=" + cuadros.size() + ", corriendo=" + corriendo + "]";
+    }
+
+    // ==================== RELOJ ====================
+
+    private void arrancar() {
+        if (!corriendo) {
+            corriendo = true;
+            reloj.start();
+        }
+    }
+
+    private void tick(long ahora) {
+        for (int i = 0; i < tweens.size(); i++) {
+            Tween t = tweens.get(i);
+            if (t.inicio < 0) t.inicio = ahora;
+            if (descartar(t.nodo, t.visto, t.inicio, ahora)) {
+                tweens.remove(i--);
+                reciclar(t);
+                continue;
+            }
+            t.visto |= t.nodo.getScene() != null;
+            long transcurrido = ahora - t.inicio - t.retraso;
+            if (transcurrido < 0) continue;
+            double avance = Math.min(1.0, transcurrido / (double) t.duracion);
+            t.paso.accept(t.interp.interpolate(0.0, 1.0, avance));
+            if (avance >= 1.0) {
+                Runnable fin = t.alTerminar;
+                tweens.remove(i--);
+                reciclar(t);
+                if (fin != null) fin.run(); // puede pedir otra animación
+            }
+        }
+
+        if (!pulsos.isEmpty() && ahora - ultimoPulso >= NANOS_CUADRO_PULSO) {
+            ultimoPulso = ahora;
+            for (int i = 0; i < pulsos.size(); i++) {
+                Pulso p = pulsos.get(i);
+                if (p.inicio < 0) p.inicio = ahora;
+                if (descartar(p.nodo, p.visto, p.inicio, ahora)) {
+                    pulsos.remove(i--);
+                    continue;
+                }
+                p.visto |= p.nodo.getScene() != null;
+                if (ahora - p.inicio >= p.ciclos * 2 * p.periodo) {
+                    p.nodo.setScaleX(1);
+                    p.nodo.setScaleY(1);
+                    pulsos.remove(i--);
+                    continue;
+                }
+                double fase = ((ahora - p.inicio) % (2 * p.periodo)) / (double) (2 * p.periodo);
+                double v = 1 + p.amplitud * (0.5 - 0.5 * Math.cos(2 * Math.PI * fase));
+                p.nodo.setScaleX(v);
+                p.nodo.setScaleY(v);
+            }
+        }
+
+        for (int i = 0; i < cuadros.size(); i++) {
+            Cuadro c = cuadros.get(i);
+            if (c.inicio == 0) c.inicio = ahora;
+            if (descartar(c.nodo, c.visto, c.inicio, ahora) || !c.tick.test(ahora)) {
+                cuadros.remove(i--);
+                continue;
+            }
+            c.visto |= c.nodo.getScene() != null;
+        }
+
+        if (tweens.isEmpty() && pulsos.isEmpty() && cuadros.isEmpty()) {
+            reloj.stop();
+            corriendo = false;
+        }
+    }
+
+    /** El nodo salió de la escena, o nunca llegó a ella. */
+    private static boolean descartar(Node nodo, boolean visto, long inicio, long ahora) {
+        if (nodo.getScene() != null) return false;
+        return visto || ahora - inicio > NANOS_SIN_ESCENA;
+    }
+
+    private Tween buscar(Node nodo, String canal) {
+        for (Tween t : tweens) {
+            if (t.nodo == nodo && t.canal.equals(canal)) return t;
+        }
+        return null;
+    }
+
+    private void reciclar(Tween t) {
+        t.nodo = null;
+        t.paso = null;
+        t.alTerminar = null;
+        if (libres.size() < MAX_LIBRES) libres.push(t);
+    }
+
+    private static final class Tween {
+        Node nodo;
+        String canal;
+        long inicio, retraso, duracion;
+        Interpolator interp;
+        DoubleConsumer paso;
+        Runnable alTerminar;
+        boolean visto;
+    }
+
+    private static final class Pulso {
+        Node nodo;
+        double amplitud;
+        long periodo, inicio;
+        int ciclos;
+        boolean visto;
+    }
+
+    private static final class Cuadro {
+        Node nodo;
+        LongPredicate tick;
+        long inicio;
+        boolean visto;
+    }
+}
@@ -1,6 +1,10 @@
 package cr.ac.una.restunaclient.util;
 
 import cr.ac.una.restunaclient.model.Usuario;
+import cr.ac.una.restunaclient.service.CatalogService;
+import cr.ac.una.restunaclient.service.CustomerSearch;
+import cr.ac.una.restunaclient.service.ReportesService;
+import cr.ac.una.restunaclient.service.ResponseCache;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -57,6 +61,11 @@ public class AppContext {
     public void logout() {
         usuarioLogueado = null;
         context.clear();
+        // El próximo usuario no debe ver datos cacheados de esta sesión
+        ResponseCache.getInstance().limpiar();
+        CatalogService.getInstance().invalidar();
+        CustomerSearch.getInstance().limpiar();
+        ReportesService.limpiarCache();
     }
     
     /**
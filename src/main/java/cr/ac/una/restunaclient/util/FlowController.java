@@ -3,6 +3,7 @@ package cr.ac.una.restunaclient.util;
 import cr.ac.una.restunaclient.util.I18n;
 import cr.ac.una.restunaclient.util.Mensaje;
 import cr.ac.una.restunaclient.util.AppContext;
+import cr.ac.una.restunaclient.service.HttpClientManager;
 
 import javafx.animation.FadeTransition;
 import javafx.fxml.FXMLLoader;
@@ -79,6 +80,7 @@ public class FlowController {
      */
     public void showMenuPrincipal() {
         try {
+            IoScheduler.getInstance().abrirScopePantalla("MenuPrincipal");
             Parent root = loadView("MenuPrincipal");
 
             boolean firstShow = (mainStage.getScene() == null);
@@ -109,6 +111,8 @@ public class FlowController {
      */
     public void goToView(String fxmlName, String title) {
         try {
+            // Cancela las peticiones en vuelo de la pantalla que se abandona
+            IoScheduler.getInstance().abrirScopePantalla(fxmlName);
             Parent root = loadView(fxmlName);
             // si no existe escena aún (caso raro), créala con el último tamaño normal
             if (mainStage.getScene() == null) {
@@ -133,6 +137,7 @@ public class FlowController {
      */
     public void goToView(String fxmlName, String title, double width, double height) {
         try {
+            IoScheduler.getInstance().abrirScopePantalla(fxmlName);
             Parent root = loadView(fxmlName);
 
             if (mainStage.getScene() == null) {
@@ -339,6 +344,8 @@ public class FlowController {
      */
     public void exitApp() {
         AppContext.getInstance().logout();
+        IoScheduler.getInstance().shutdown();
+        HttpClientManager.shutdown();
         System.exit(0);
     }
 
@@ -415,6 +422,7 @@ public class FlowController {
         }
 
         try {
+            IoScheduler.getInstance().abrirScopePantalla(fxmlName);
             Parent newContent = loadViewNode(fxmlName);
 
             contentPane.getChildren().clear();
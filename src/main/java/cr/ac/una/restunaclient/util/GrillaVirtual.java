@@ -0,0 +1,161 @@
+package cr.ac.una.restunaclient.util;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.scene.Node;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.StackPane;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Grilla de tarjetas virtualizada (reemplazo de un TilePane dentro de un
+ * ScrollPane para listas grandes).
+ *
+ * Por dentro es una ListView de filas de alto fijo: solo existen las filas
+ * visibles y al hacer scroll se reciclan. Cada fila reutiliza sus tarjetas
+ * (creadas con la fábrica una sola vez) y solo les enlaza el dato nuevo.
+ * Cambiar los items o el ancho no crea tarjetas: solo reparte los datos en
+ * filas según las columnas que caben.
+ *
+ * @param <T> tipo de dato de cada tarjeta
+ */
+public class GrillaVirtual<T> extends StackPane {
+
+    private final double anchoTarjeta;
+    private final double altoTarjeta;
+    private final double espacio;
+    private final Supplier<? extends Region> fabrica;
+    private final BiConsumer<Region, T> enlazar;
+    private Consumer<T> onTarjeta;
+
+    private final ListView<List<T>> lista = new ListView<>();
+    private final ObservableList<List<T>> filas = FXCollections.observableArrayList();
+    private List<T> items = List.of();
+    private int columnas = 1;
+
+    /**
+     * @param fabrica crea una tarjeta vacía (se llama solo al crear filas)
+     * @param enlazar pinta el dato en una tarjeta ya creada
+     */
+    public GrillaVirtual(double anchoTarjeta, double altoTarjeta, double espacio,
+                         Supplier<? extends Region> fabrica, BiConsumer<Region, T> enlazar) {
+        this.anchoTarjeta = anchoTarjeta;
+        this.altoTarjeta = altoTarjeta;
+        this.espacio = espacio;
+        this.fabrica = fabrica;
+        this.enlazar = enlazar;
+
+        lista.setItems(filas);
+        lista.setFixedCellSize(altoTarjeta + espacio);
+        lista.setFocusTraversable(false);
+        lista.setStyle("-fx-background-color: transparent; -fx-background-insets: 0; -fx-padding: "
+                + espacio + " 0 0 " + espacio + ";");
+        lista.setCellFactory(lv -> new Fila());
+        lista.widthProperty().addListener((o, a, b) -> recalcularColumnas());
+        getChildren().add(lista);
+    }
+
+    /**
+     * Muestra estos items (en este orden). Se copian: cambiar después la
+     * lista del llamador no afecta a las filas; para eso, volver a llamar.
+     */
+    public void setItems(List<T> items) {
+        this.items = items == null ? List.of() : new ArrayList<>(items);
+        repartir();
+        if (!filas.isEmpty()) lista.scrollTo(0);
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /** Acción al tocar una tarjeta. */
+    public void setOnTarjeta(Consumer<T> onTarjeta) {
+        this.onTarjeta = onTarjeta;
+    }
+
+    public void setPlaceholder(Node placeholder) {
+        lista.setPlaceholder(placeholder);
+    }
+
+    /** Vuelve a enlazar las tarjetas visibles (p. ej. tras cambiar la selección). */
+    public void refrescar() {
+        lista.refresh();
+    }
+
+    // ==================== INTERNOS ====================
+
+    private void recalcularColumnas() {
+        double util = lista.getWidth() - espacio - 20; // margen para la barra de scroll
+        int c = Math.max(1, (int) ((util + espacio) / (anchoTarjeta + espacio)));
+        if (c != columnas) {
+            columnas = c;
+            repartir();
+        }
+    }
+
+    private void repartir() {
+        List<List<T>> nuevas = new ArrayList<>((items.size() + columnas - 1) / columnas);
+        for (int i = 0; i < items.size(); i += columnas) {
+            nuevas.add(items.subList(i, Math.min(items.size(), i + columnas)));
+        }
+        filas.setAll(nuevas);
+    }
+
+    /** Fila reciclable: conserva sus tarjetas y solo cambia los datos. */
+    private final class Fila extends ListCell<List<T>> {
+        private final HBox caja = new HBox(espacio);
+        private final List<Region> tarjetas = new ArrayList<>();
+
+        Fila() {
+            setStyle("-fx-background-color: transparent; -fx-padding: 0;");
+            caja.setPadding(Insets.EMPTY);
+        }
+
+        @Override
+        protected void updateItem(List<T> fila, boolean empty) {
+            super.updateItem(fila, empty);
+            if (empty || fila == null) {
+                setGraphic(null);
+                return;
+            }
+            while (tarjetas.size() < fila.size()) {
+                tarjetas.add(crearTarjeta());
+            }
+            ObservableList<Node> visibles = caja.getChildren();
+            if (visibles.size() != fila.size()) {
+                visibles.setAll(tarjetas.subList(0, fila.size()));
+            }
+            for (int i = 0; i < fila.size(); i++) {
+                Region tarjeta = tarjetas.get(i);
+                T item = fila.get(i);
+                tarjeta.setUserData(item);
+                enlazar.accept(tarjeta, item);
+            }
+            setGraphic(caja);
+        }
+
+        private Region crearTarjeta() {
+            Region tarjeta = fabrica.get();
+            tarjeta.setMinSize(anchoTarjeta, altoTarjeta);
+            tarjeta.setPrefSize(anchoTarjeta, altoTarjeta);
+            tarjeta.setMaxSize(anchoTarjeta, altoTarjeta);
+            tarjeta.addEventHandler(MouseEvent.MOUSE_CLICKED, e -> {
+                @SuppressWarnings("unchecked")
+                T item = (T) tarjeta.getUserData();
+                if (item != null && onTarjeta != null) onTarjeta.accept(item);
+            });
+            return tarjeta;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package cr.ac.una.restunaclient.util;
+
+import javafx.scene.image.Image;
+import javafx.stage.Screen;
+
+import java.io.ByteArrayInputStream;
+import java.lang.ref.SoftReference;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static cr.ac.una.restunaclient.util.Propiedades.intProp;
+
+/**
+ * Caché de imágenes ya decodificadas y escaladas.
+ *
+ * - La clave es el contenido (SHA-256 de los bytes) más el tamaño pedido:
+ *   el mismo PNG en dos salones, o el mismo salón elegido varias veces,
+ *   se decodifica una sola vez.
+ * - Se decodifica directamente al tamaño en que se dibuja (por la escala de
+ *   la pantalla); nunca se guarda el bitmap a resolución completa.
+ * - LRU acotado (-Drestuna.img.max, def. 64) con SoftReference: si falta
+ *   memoria, la JVM puede soltar imágenes aunque no se haya llegado al tope.
+ */
+public final class ImageCache {
+
+    private static final ImageCache INSTANCE = new ImageCache();
+
+    private final int max = intProp("restuna.img.max", 64);
+    private long aciertos = 0;
+    private long decodificadas = 0;
+
+    private final LinkedHashMap<String, SoftReference<Image>> imagenes =
+            new LinkedHashMap<>(32, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SoftReference<Image>> e) {
+                    return size() > max;
+                }
+            };
+
+    private ImageCache() {}
+
+    public static ImageCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Imagen para los bytes dados, escalada a ancho x alto (preservando la
+     * proporción). null si no hay bytes o no se pueden decodificar.
+     */
+    public Image get(byte[] bytes, double ancho, double alto) {
+        if (bytes == null || bytes.length == 0) return null;
+        return get(hash(bytes), ancho, alto, () -> bytes);
+    }
+
+    /**
+     * Igual que {@link #get(byte[], double, double)} pero con una clave
+     * propia (p. ej. id + versión del salón); los bytes solo se piden si la
+     * imagen no está en caché.
+     */
+    public Image get(String clave, double ancho, double alto, Supplier<byte[]> bytes) {
+        String k = clave + "@" + (int) ancho + "x" + (int) alto;
+        synchronized (this) {
+            SoftReference<Image> ref = imagenes.get(k);
+            Image img = ref != null ? ref.get() : null;
+            if (img != null) {
+                aciertos++;
+                return img;
+            }
+        }
+
+        byte[] datos = bytes.get();
+        if (datos == null || datos.length == 0) return null;
+
+        double escala = escalaPantalla();
+        Image img = new Image(new ByteArrayInputStream(datos), ancho * escala, alto * escala, true, true);
+        if (img.isError()) {
+            Log.warn("ImageCache", "No se pudo decodificar " + clave + ": "
+                    + (img.getException() != null ? img.getException().getMessage() : "?"));
+            return null;
+        }
+
+        synchronized (this) {
+            imagenes.put(k, new SoftReference<>(img));
+            decodificadas++;
+        }
+        return img;
+    }
+
+    public synchronized void limpiar() {
+        imagenes.clear();
+    }
+
+    public synchronized String stats() {
+        return "Img[entradas=" + imagenes.size() + "/" + max + ", aciertos=" + aciertos
+                + ", decodificadas=" + decodificadas + "]";
+    }
+
+    // ---------------------- Util ----------------------
+
+    private static String hash(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (Exception e) {
+            // SHA-256 siempre existe; por si acaso, un hash débil más el tamaño
+            return java.util.Arrays.hashCode(bytes) + ":" + bytes.length;
+        }
+    }
+
+    private static double escalaPantalla() {
+        try {
+            return Math.max(1.0, Screen.getPrimary().getOutputScaleX());
+        } catch (Exception e) {
+            return 1.0;
+        }
+    }
+}
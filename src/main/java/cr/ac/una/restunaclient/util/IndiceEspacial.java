@@ -0,0 +1,175 @@
+package cr.ac.una.restunaclient.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grilla uniforme sobre rectángulos identificados por id (mesas, zona de
+ * facturación).
+ *
+ * Cada rectángulo se registra en las celdas que toca; una consulta solo
+ * revisa las celdas del área consultada, así que colisión y hit-testing
+ * cuestan lo mismo con 10 que con 200 mesas. Con celdas del tamaño de una
+ * mesa + margen, cada consulta toca 4 a 9 celdas.
+ *
+ * Se actualiza de forma incremental con {@link #poner} y {@link #quitar}.
+ * No es thread-safe: se usa desde el hilo de JavaFX.
+ */
+public final class IndiceEspacial {
+
+    private final double celda;
+    private final Map<Long, double[]> rects = new HashMap<>();      // id -> {x1, y1, x2, y2}
+    private final Map<Long, List<Long>> celdas = new HashMap<>();   // clave de celda -> ids
+
+    public IndiceEspacial(double celda) {
+        this.celda = celda;
+    }
+
+    // ==================== ACTUALIZACIÓN ====================
+
+    /** Agrega o mueve el rectángulo del id. */
+    public void poner(Long id, double x, double y, double ancho, double alto) {
+        double[] previo = rects.get(id);
+        double[] r = {x, y, x + ancho, y + alto};
+        if (previo != null) {
+            if (mismasCeldas(previo, r)) {
+                rects.put(id, r); // se movió dentro de las mismas celdas
+                return;
+            }
+            desregistrar(id, previo);
+        }
+        rects.put(id, r);
+        int cx2 = col(r[2]), cy2 = col(r[3]);
+        for (int cx = col(r[0]); cx <= cx2; cx++) {
+            for (int cy = col(r[1]); cy <= cy2; cy++) {
+                celdas.computeIfAbsent(clave(cx, cy), k -> new ArrayList<>(4)).add(id);
+            }
+        }
+    }
+
+    public void quitar(Long id) {
+        double[] r = rects.remove(id);
+        if (r != null) desregistrar(id, r);
+    }
+
+    public void limpiar() {
+        rects.clear();
+        celdas.clear();
+    }
+
+    public boolean contiene(Long id) {
+        return rects.containsKey(id);
+    }
+
+    public int size() {
+        return rects.size();
+    }
+
+    // ==================== CONSULTAS ====================
+
+    /**
+     * true si el rectángulo (x1, y1)-(x2, y2) se cruza con algún otro
+     * (bordes que solo se tocan no cuentan).
+     */
+    public boolean hayColision(double x1, double y1, double x2, double y2, Long ignorar) {
+        int cx2 = col(x2), cy2 = col(y2);
+        for (int cx = col(x1); cx <= cx2; cx++) {
+            for (int cy = col(y1); cy <= cy2; cy++) {
+                List<Long> ids = celdas.get(clave(cx, cy));
+                if (ids == null) continue;
+                for (Long id : ids) {
+                    if (id.equals(ignorar)) continue;
+                    double[] r = rects.get(id);
+                    if (x1 < r[2] && x2 > r[0] && y1 < r[3] && y2 > r[1]) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Ids cuyos rectángulos contienen el punto. */
+    public List<Long> enPunto(double x, double y) {
+        List<Long> ids = celdas.get(clave(col(x), col(y)));
+        if (ids == null) return List.of();
+        List<Long> res = new ArrayList<>(2);
+        for (Long id : ids) {
+            double[] r = rects.get(id);
+            if (x >= r[0] && x < r[2] && y >= r[1] && y < r[3]) {
+                res.add(id);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Posición libre más cercana a (x, y) para un rectángulo de ancho x alto
+     * separado por margen de los demás, alineada a paso y dentro de
+     * [minX, maxX] x [minY, maxY] (esquina superior izquierda). Busca en
+     * anillos crecientes alrededor del punto; null si no hay lugar.
+     */
+    public double[] libreMasCercano(double x, double y, double ancho, double alto, double margen,
+                                    double paso, double minX, double minY, double maxX, double maxY) {
+        if (maxX < minX || maxY < minY) return null;
+        double bx = ajustar(x, paso), by = ajustar(y, paso);
+        int anillos = (int) Math.ceil(Math.max(maxX - minX, maxY - minY) / paso) + 1;
+
+        double[] mejor = null;
+        double mejorDist = Double.MAX_VALUE;
+        for (int n = 0; n <= anillos; n++) {
+            for (int i = -n; i <= n; i++) {
+                for (int j = -n; j <= n; j++) {
+                    if (Math.abs(i) != n && Math.abs(j) != n) continue; // solo el borde del anillo
+                    double px = bx + i * paso, py = by + j * paso;
+                    if (px < minX || px > maxX || py < minY || py > maxY) continue;
+                    double d = (px - x) * (px - x) + (py - y) * (py - y);
+                    if (d >= mejorDist) continue;
+                    if (!hayColision(px - margen, py - margen, px + ancho + margen, py + alto + margen, null)) {
+                        mejor = new double[]{px, py};
+                        mejorDist = d;
+                    }
+                }
+            }
+            // Un anillo más lejos ya no puede mejorar la distancia encontrada
+            if (mejor != null && ((n - 1) * paso) * ((n - 1) * paso) > mejorDist) break;
+        }
+        return mejor;
+    }
+
+    /** Redondea al múltiplo de paso más cercano. */
+    public static double ajustar(double v, double paso) {
+        return Math.round(v / paso) * paso;
+    }
+
+    // ==================== INTERNOS ====================
+
+    private void desregistrar(Long id, double[] r) {
+        int cx2 = col(r[2]), cy2 = col(r[3]);
+        for (int cx = col(r[0]); cx <= cx2; cx++) {
+            for (int cy = col(r[1]); cy <= cy2; cy++) {
+                long k = clave(cx, cy);
+                List<Long> ids = celdas.get(k);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) celdas.remove(k);
+                }
+            }
+        }
+    }
+
+    private boolean mismasCeldas(double[] a, double[] b) {
+        return col(a[0]) == col(b[0]) && col(a[1]) == col(b[1])
+                && col(a[2]) == col(b[2]) && col(a[3]) == col(b[3]);
+    }
+
+    private int col(double v) {
+        return (int) Math.floor(v / celda);
+    }
+
+    private static long clave(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+}
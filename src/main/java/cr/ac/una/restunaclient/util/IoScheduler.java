@@ -0,0 +1,297 @@
+package cr.ac.una.restunaclient.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static cr.ac.una.restunaclient.util.Propiedades.intProp;
+
+/**
+ * Planificador único de E/S contra el backend (hilos virtuales de Java 21).
+ *
+ * - Cada tarea corre en su propio hilo virtual; un semáforo limita cuántas
+ *   están realmente en vuelo para no saturar el pool HTTP ni el servidor.
+ * - Las tareas pertenecen a un {@link Scope}. Cada pantalla abre el suyo
+ *   (FlowController lo hace al navegar) y al salir de ella se cancelan
+ *   las peticiones pendientes en lugar de dejarlas corriendo.
+ * - Expone la profundidad de cola y las tareas en vuelo para diagnóstico.
+ *
+ * Configurable con -Drestuna.io.maxConcurrent (def. 16) y
+ * -Drestuna.io.maxQueue (def. 256).
+ */
+public final class IoScheduler {
+
+    private static final IoScheduler INSTANCE = new IoScheduler();
+
+    private final int maxConcurrent = intProp("restuna.io.maxConcurrent", 16);
+    private final int maxQueue = intProp("restuna.io.maxQueue", 256);
+
+    private final ExecutorService executor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("restuna-io-", 0).factory());
+    private final Semaphore permisos = new Semaphore(maxConcurrent, true);
+
+    private final AtomicInteger enCola = new AtomicInteger();
+    private final AtomicInteger enVuelo = new AtomicInteger();
+    private final AtomicLong completadas = new AtomicLong();
+    private final AtomicLong canceladas = new AtomicLong();
+
+    /** Scope de la app: nunca se cancela al navegar (precargas, logs, etc.). */
+    private final Scope scopeGlobal = new Scope("global");
+    private volatile Scope scopePantalla = scopeGlobal;
+
+    private IoScheduler() {}
+
+    public static IoScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    // ==================== SCOPES ====================
+
+    /**
+     * Abre el scope de una pantalla nueva y cancela el de la anterior.
+     * Lo llama FlowController justo antes de cargar la vista.
+     */
+    public Scope abrirScopePantalla(String nombre) {
+        Scope anterior = scopePantalla;
+        Scope nuevo = new Scope(nombre);
+        scopePantalla = nuevo;
+        if (anterior != scopeGlobal) {
+            anterior.cancelar();
+        }
+        return nuevo;
+    }
+
+    /** Scope de la pantalla actual (donde caen las tareas por defecto). */
+    public Scope getScopeActual() {
+        return scopePantalla;
+    }
+
+    /** Scope que sobrevive a la navegación. */
+    public Scope getScopeGlobal() {
+        return scopeGlobal;
+    }
+
+    // ==================== ENVÍO DE TAREAS ====================
+
+    /**
+     * Ejecuta la tarea en el scope de la pantalla actual.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> work) {
+        return submit(scopePantalla, work);
+    }
+
+    /**
+     * Ejecuta la tarea en el scope indicado. El future se completa en el
+     * hilo virtual que la ejecutó (no en el de JavaFX).
+     */
+    public <T> CompletableFuture<T> submit(Scope scope, Callable<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (scope.isCancelado()) {
+            result.cancel(false);
+            return result;
+        }
+        if (enCola.incrementAndGet() > maxQueue) {
+            enCola.decrementAndGet();
+            result.completeExceptionally(new RejectedExecutionException(
+                    "Cola de E/S llena (" + maxQueue + " tareas en espera)"));
+            return result;
+        }
+
+        // true mientras la tarea cuenta en enCola; quien la saque (al tomar
+        // permiso o al cancelarse antes de correr) descuenta una sola vez
+        AtomicBoolean esperando = new AtomicBoolean(true);
+        Future<?> tarea;
+        try {
+            tarea = executor.submit(() -> ejecutar(work, result, esperando));
+        } catch (RejectedExecutionException ex) {
+            enCola.decrementAndGet();
+            result.completeExceptionally(ex);
+            return result;
+        }
+
+        scope.registrar(result, tarea);
+        result.whenComplete((v, ex) -> {
+            scope.quitar(result);
+            if (result.isCancelled()) {
+                // Si nunca llegó a correr, FutureTask no llamará a ejecutar
+                if (salirDeCola(esperando)) canceladas.incrementAndGet();
+                tarea.cancel(true); // interrumpe el hilo virtual si sigue bloqueado en E/S
+            }
+        });
+        return result;
+    }
+
+    private boolean salirDeCola(AtomicBoolean esperando) {
+        if (esperando.compareAndSet(true, false)) {
+            enCola.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private <T> void ejecutar(Callable<T> work, CompletableFuture<T> result, AtomicBoolean esperando) {
+        boolean adquirido = false;
+        boolean corrio = false;
+        try {
+            permisos.acquire();
+            adquirido = true;
+            salirDeCola(esperando);
+            enVuelo.incrementAndGet();
+
+            if (result.isDone()) return; // cancelada mientras esperaba turno (ya contada)
+            corrio = true;
+            result.complete(work.call());
+        } catch (InterruptedException ie) {
+            if (adquirido) canceladas.incrementAndGet(); // en espera: ya contada al cancelarse
+            result.cancel(false);
+        } catch (Throwable ex) {
+            if (Thread.currentThread().isInterrupted() || result.isCancelled()) {
+                canceladas.incrementAndGet();
+                result.cancel(false);
+            } else {
+                result.completeExceptionally(ex);
+            }
+        } finally {
+            if (adquirido) {
+                enVuelo.decrementAndGet();
+                permisos.release();
+                if (corrio && !result.isCancelled()) completadas.incrementAndGet();
+            } else {
+                salirDeCola(esperando);
+            }
+        }
+    }
+
+    // ==================== MÉTRICAS ====================
+
+    /** Tareas enviadas que aún esperan un permiso para ejecutarse. */
+    public int getProfundidadCola() {
+        return enCola.get();
+    }
+
+    /** Tareas que se están ejecutando en este momento. */
+    public int getEnVuelo() {
+        return enVuelo.get();
+    }
+
+    public int getMaxConcurrente() {
+        return maxConcurrent;
+    }
+
+    public long getCompletadas() {
+        return completadas.get();
+    }
+
+    public long getCanceladas() {
+        return canceladas.get();
+    }
+
+    /** Resumen de saturación para logs. */
+    public String stats() {
+        return "IO[enVuelo=" + getEnVuelo() + "/" + maxConcurrent
+                + ", cola=" + getProfundidadCola()
+                + ", completadas=" + getCompletadas()
+                + ", canceladas=" + getCanceladas()
+                + ", pantalla=" + scopePantalla.getNombre() + "]";
+    }
+
+    /** Cancela todo y detiene el ejecutor. Se llama al salir de la app. */
+    public void shutdown() {
+        scopePantalla.cancelar();
+        scopeGlobal.cancelar();
+        executor.shutdownNow();
+    }
+
+    /**
+     * true si el error proviene de una cancelación (navegación, botón
+     * Cancelar...). Los controladores lo usan para no mostrar alertas.
+     */
+    public static boolean isCancelacion(Throwable ex) {
+        Throwable t = ex;
+        while ((t instanceof CompletionException || t instanceof ExecutionException) && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t instanceof CancellationException || t instanceof InterruptedException;
+    }
+
+    // ==================== SCOPE ====================
+
+    /**
+     * Grupo de tareas que se cancelan juntas (normalmente, una pantalla).
+     */
+    public static final class Scope {
+
+        private final String nombre;
+        private final ConcurrentHashMap<CompletableFuture<?>, Future<?>> tareas = new ConcurrentHashMap<>();
+        private final CopyOnWriteArrayList<Runnable> alCancelar = new CopyOnWriteArrayList<>();
+        private volatile boolean cancelado = false;
+
+        private Scope(String nombre) {
+            this.nombre = nombre;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        public boolean isCancelado() {
+            return cancelado;
+        }
+
+        /** Peticiones de este scope todavía sin terminar. */
+        public int getActivas() {
+            return tareas.size();
+        }
+
+        private void registrar(CompletableFuture<?> result, Future<?> tarea) {
+            tareas.put(result, tarea);
+            if (cancelado) {
+                result.cancel(false);
+            }
+        }
+
+        private void quitar(CompletableFuture<?> result) {
+            tareas.remove(result);
+        }
+
+        /**
+         * Acción a correr cuando se cancele el scope (p. ej. cerrar una
+         * suscripción de larga duración). Si ya está cancelado, corre ya.
+         */
+        public void alCancelar(Runnable accion) {
+            alCancelar.add(accion);
+            if (cancelado && alCancelar.remove(accion)) {
+                accion.run();
+            }
+        }
+
+        /** Cancela todas las tareas pendientes y rechaza las nuevas. */
+        public void cancelar() {
+            cancelado = true;
+            tareas.forEach((result, tarea) -> {
+                tarea.cancel(true);
+                result.cancel(false);
+            });
+            for (Runnable r : alCancelar) {
+                if (!alCancelar.remove(r)) continue;
+                try {
+                    r.run();
+                } catch (Exception e) {
+                    Log.warn("IoScheduler", "Error al cerrar " + nombre + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package cr.ac.una.restunaclient.util;
+
+import javafx.collections.ObservableList;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Utilidades para ObservableList.
+ */
+public final class ListasObservables {
+
+    private ListasObservables() {}
+
+    /**
+     * Lleva destino al contenido de nuevos aplicando solo las diferencias:
+     * quita los que ya no vienen, reemplaza los que cambiaron (según igual)
+     * y agrega los nuevos al final. Los que no cambiaron se dejan tal cual,
+     * así una ListView solo actualiza las celdas afectadas.
+     *
+     * El orden de destino no se toca; si importa, envolverla en una SortedList.
+     * @return cantidad de elementos quitados, reemplazados o agregados
+     */
+    public static <T, K> int sincronizar(ObservableList<T> destino, Collection<? extends T> nuevos,
+                                         Function<? super T, K> clave, BiPredicate<? super T, ? super T> igual) {
+        Map<K, T> porClave = new LinkedHashMap<>();
+        for (T t : nuevos) porClave.put(clave.apply(t), t);
+
+        int cambios = 0;
+        for (int i = destino.size() - 1; i >= 0; i--) {
+            T actual = destino.get(i);
+            T nuevo = porClave.remove(clave.apply(actual));
+            if (nuevo == null) {
+                destino.remove(i);
+                cambios++;
+            } else if (!igual.test(actual, nuevo)) {
+                destino.set(i, nuevo);
+                cambios++;
+            }
+        }
+        if (!porClave.isEmpty()) {
+            destino.addAll(porClave.values());
+            cambios += porClave.size();
+        }
+        return cambios;
+    }
+
+    /** Igual que {@link #sincronizar(ObservableList, Collection, Function, BiPredicate)} con equals. */
+    public static <T, K> int sincronizar(ObservableList<T> destino, Collection<? extends T> nuevos,
+                                         Function<? super T, K> clave) {
+        return sincronizar(destino, nuevos, clave, Objects::equals);
+    }
+}
@@ -0,0 +1,190 @@
+package cr.ac.una.restunaclient.util;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static cr.ac.una.restunaclient.util.Propiedades.intProp;
+
+/**
+ * Bitácora liviana con niveles y escritura asíncrona.
+ *
+ * - Quien registra solo encola (nunca escribe a consola ni se bloquea);
+ *   un hilo daemon vacía la cola. Si la cola se llena, se descarta.
+ * - Guarda las últimas entradas en un buffer circular ({@link #recientes()}).
+ * - {@link #truncar(String)} recorta cuerpos de respuesta largos.
+ * - Con el nivel desactivado el costo es una comparación de enteros: usar
+ *   {@code if (Log.isDebug())} o las variantes con Supplier para no armar
+ *   el mensaje.
+ *
+ * Configurable con -Drestuna.log.level (TRACE, DEBUG, INFO, WARN, ERROR, OFF;
+ * def. INFO) y -Drestuna.log.maxBody (caracteres; def. 500).
+ */
+public final class Log {
+
+    public enum Level { TRACE, DEBUG, INFO, WARN, ERROR, OFF }
+
+    private static final int CAPACIDAD_COLA = 4096;
+    private static final int CAPACIDAD_BUFFER = 500;
+    private static final DateTimeFormatter HORA = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
+    private static volatile int nivel = parseNivel(System.getProperty("restuna.log.level", "INFO")).ordinal();
+    private static volatile int maxBody = intProp("restuna.log.maxBody", 500);
+
+    private static final BlockingQueue<Entrada> cola = new ArrayBlockingQueue<>(CAPACIDAD_COLA);
+    private static final AtomicLong descartadas = new AtomicLong();
+
+    private static final String[] buffer = new String[CAPACIDAD_BUFFER];
+    private static int bufferPos = 0;
+    private static int bufferSize = 0;
+
+    static {
+        Thread escritor = new Thread(Log::vaciarCola, "restuna-log");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    private Log() {}
+
+    // ==================== NIVEL ====================
+
+    public static void setLevel(Level level) {
+        nivel = level.ordinal();
+    }
+
+    public static Level getLevel() {
+        return Level.values()[nivel];
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.ordinal() >= nivel && level != Level.OFF;
+    }
+
+    public static boolean isDebug() {
+        return nivel <= Level.DEBUG.ordinal();
+    }
+
+    public static void setMaxBody(int chars) {
+        maxBody = Math.max(0, chars);
+    }
+
+    // ==================== REGISTRO ====================
+
+    public static void debug(String tag, String msg) {
+        if (nivel <= Level.DEBUG.ordinal()) encolar(Level.DEBUG, tag, msg, null);
+    }
+
+    public static void debug(String tag, Supplier<String> msg) {
+        if (nivel <= Level.DEBUG.ordinal()) encolar(Level.DEBUG, tag, msg.get(), null);
+    }
+
+    public static void info(String tag, String msg) {
+        if (nivel <= Level.INFO.ordinal()) encolar(Level.INFO, tag, msg, null);
+    }
+
+    public static void warn(String tag, String msg) {
+        if (nivel <= Level.WARN.ordinal()) encolar(Level.WARN, tag, msg, null);
+    }
+
+    public static void error(String tag, String msg, Throwable ex) {
+        if (nivel <= Level.ERROR.ordinal()) encolar(Level.ERROR, tag, msg, ex);
+    }
+
+    /**
+     * Recorta un cuerpo largo a maxBody caracteres, indicando cuánto se omitió.
+     */
+    public static String truncar(String body) {
+        if (body == null) return "null";
+        int max = maxBody;
+        if (body.length() <= max) return body;
+        return body.substring(0, max) + "... (+" + (body.length() - max) + " chars)";
+    }
+
+    /** Últimas entradas registradas (la más reciente al final). */
+    public static List<String> recientes() {
+        synchronized (buffer) {
+            List<String> out = new ArrayList<>(bufferSize);
+            int inicio = (bufferPos - bufferSize + CAPACIDAD_BUFFER) % CAPACIDAD_BUFFER;
+            for (int i = 0; i < bufferSize; i++) {
+                out.add(buffer[(inicio + i) % CAPACIDAD_BUFFER]);
+            }
+            return out;
+        }
+    }
+
+    /** Entradas perdidas porque la cola estaba llena. */
+    public static long getDescartadas() {
+        return descartadas.get();
+    }
+
+    // ==================== INTERNOS ====================
+
+    private static void encolar(Level level, String tag, String msg, Throwable ex) {
+        Entrada e = new Entrada(System.currentTimeMillis(), level, tag, msg, ex, Thread.currentThread().getName());
+        if (!cola.offer(e)) {
+            descartadas.incrementAndGet();
+        }
+    }
+
+    private static void vaciarCola() {
+        while (true) {
+            try {
+                Entrada e = cola.take();
+                String linea = e.formatear();
+                synchronized (buffer) {
+                    buffer[bufferPos] = linea;
+                    bufferPos = (bufferPos + 1) % CAPACIDAD_BUFFER;
+                    if (bufferSize < CAPACIDAD_BUFFER) bufferSize++;
+                }
+                PrintStream out = e.level.ordinal() >= Level.WARN.ordinal() ? System.err : System.out;
+                out.println(linea);
+                if (e.error != null) e.error.printStackTrace(out);
+            } catch (InterruptedException ie) {
+                return;
+            } catch (Exception ignore) {
+                // nunca dejar morir al escritor
+            }
+        }
+    }
+
+    private static final class Entrada {
+        final long millis;
+        final Level level;
+        final String tag;
+        final String msg;
+        final Throwable error;
+        final String hilo;
+
+        Entrada(long millis, Level level, String tag, String msg, Throwable error, String hilo) {
+            this.millis = millis;
+            this.level = level;
+            this.tag = tag;
+            this.msg = msg;
+            this.error = error;
+            this.hilo = hilo;
+        }
+
+        String formatear() {
+            LocalTime hora = LocalTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+            return HORA.format(hora) + " " + level + " [" + tag + "] (" + hilo + ") " + msg;
+        }
+    }
+
+    // ---------------------- Util ----------------------
+
+    private static Level parseNivel(String s) {
+        try {
+            return Level.valueOf(s.trim().toUpperCase());
+        } catch (Exception e) {
+            return Level.INFO;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package cr.ac.una.restunaclient.util;
 
 import org.apache.pdfbox.Loader;                 // <-- NUEVO
+import org.apache.pdfbox.io.IOUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.printing.PDFPageable;
 
@@ -9,14 +10,15 @@ import javax.print.PrintServiceLookup;
 import javax.print.attribute.HashPrintRequestAttributeSet;
 import java.awt.print.PrinterException;
 import java.awt.print.PrinterJob;
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.nio.file.Files;
 
 public final class PdfPrinter {
     private PdfPrinter(){}
 
-    /** Imprime bytes PDF a la impresora predeterminada. */
+    /**
+     * Imprime bytes PDF a la impresora predeterminada. Para reportes grandes
+     * usar {@link #print(File)}: no carga el documento completo en memoria.
+     */
     public static void print(byte[] pdfBytes) throws Exception {
         if (pdfBytes == null || pdfBytes.length == 0)
             throw new IllegalArgumentException("PDF vacío.");
@@ -26,17 +28,17 @@ public final class PdfPrinter {
         }
     }
 
-    /** Imprime un archivo PDF a la impresora predeterminada. */
+    /**
+     * Imprime un archivo PDF a la impresora predeterminada. El documento se
+     * lee del disco a medida que se necesita y los buffers intermedios de
+     * PDFBox van a archivos temporales, no al heap.
+     */
     public static void print(File pdfFile) throws Exception {
         if (pdfFile == null || !pdfFile.exists())
             throw new IllegalArgumentException("Archivo PDF no encontrado.");
-        // Puedes cargar directo desde File con Loader
-        try (PDDocument doc = Loader.loadPDF(pdfFile)) {      // <-- CAMBIO
+        try (PDDocument doc = Loader.loadPDF(pdfFile, IOUtils.createTempFileOnlyStreamCache())) {
             doPrint(doc);
         }
-        // (si prefieres seguir con bytes, también sirve:)
-        // byte[] bytes = Files.readAllBytes(pdfFile.toPath());
-        // print(bytes);
     }
 
     private static void doPrint(PDDocument doc) throws Exception {
@@ -0,0 +1,597 @@
+package cr.ac.una.restunaclient.util;
+
+import cr.ac.una.restunaclient.model.Mesa;
+import javafx.geometry.Bounds;
+import javafx.geometry.Point2D;
+import javafx.scene.Cursor;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Label;
+import javafx.scene.effect.ColorAdjust;
+import javafx.scene.effect.DropShadow;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.WritableImage;
+import javafx.scene.input.ContextMenuEvent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.transform.Transform;
+import javafx.stage.Screen;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Plano de mesas dibujado en un solo Canvas, para salones con muchas mesas.
+ *
+ * En lugar de un StackPane con sombra, imagen, etiqueta y animaciones por
+ * mesa:
+ * - Fondo + sombra, imagen e indicador de ocupada se pintan una vez como
+ *   sprites (snapshot) y se reutilizan para todas las mesas; las etiquetas
+ *   se cachean por texto.
+ * - La entrada, el pulso de ocupadas, el rastro de arrastre y la selección
+ *   corren en el reloj compartido de {@link Animador}. El canvas se suelta
+ *   del reloj cuando no hay nada que animar y al salir de la escena.
+ * - El pulso de ocupadas dura unos pocos ciclos cuando una mesa pasa a
+ *   ocupada; después el indicador queda fijo y el reloj se detiene.
+ * - Clic, arrastre y menú contextual se resuelven por hit-testing (con el
+ *   {@link IndiceEspacial} del controlador si se da) y se delegan al
+ *   controlador con callbacks.
+ *
+ * Se ve igual que la vista por nodos de VistaSalonesController (mismos
+ * colores y tamaños), sin las transiciones de hover.
+ */
+public final class PlanoMesasCanvas extends Canvas {
+
+    /** Valida si una mesa puede quedar en (x, y); lo implementa el controlador. */
+    public interface Colision {
+        boolean hay(double x, double y, Long mesaId);
+    }
+
+    private enum Estado { LIBRE, OCUPADA, EDICION }
+
+    /** Imagen pre-renderizada y su desplazamiento respecto al punto de anclaje. */
+    private static final class Sprite {
+        final Image img;
+        final double dx, dy, ancho, alto;
+
+        Sprite(Image img, double dx, double dy, double ancho, double alto) {
+            this.img = img;
+            this.dx = dx;
+            this.dy = dy;
+            this.ancho = ancho;
+            this.alto = alto;
+        }
+    }
+
+    private static final long NANOS_ENTRADA = 400_000_000L;
+    private static final long NANOS_PULSO = 1_000_000_000L;
+    private static final int CICLOS_PULSO = 3;
+    private static final long NANOS_SELECCION = 200_000_000L;
+    private static final long NANOS_RASTRO = 500_000_000L;
+    private static final long NANOS_CUADRO_PULSO = 33_000_000L; // ~30 fps para el pulso
+    private static final int MAX_RASTRO = 24;
+
+    private final double tamMesa;
+    private final double margen;
+    private final double tamImagen;
+
+    private List<Mesa> mesas = List.of();
+    private final Map<Long, Integer> orden = new HashMap<>(); // id -> posición de dibujo
+    private IndiceEspacial indice;
+    private boolean modoEdicion;
+    private Image imagenMesa;
+
+    private final Map<Estado, Sprite> fondos = new EnumMap<>(Estado.class);
+    private final Map<Estado, Sprite> fondosElevados = new EnumMap<>(Estado.class);
+    private final Map<String, Sprite> etiquetas = new HashMap<>();
+    private Sprite spriteImagen;
+    private Sprite spriteIndicador;
+    private double escala = 1.0;
+
+    // Interacción
+    private Mesa hover;
+    private Mesa arrastrada;
+    private boolean huboArrastre;
+    private double offX, offY;           // puntero - esquina de la mesa al presionar
+    private double arrX, arrY;           // posición de la mesa (edición) o del puntero (facturación)
+    private Mesa seleccionada;
+    private long inicioSeleccion;
+    private final ArrayDeque<double[]> rastro = new ArrayDeque<>(); // {x, y, nanos}
+
+    private Colision colision = (x, y, id) -> false;
+    private Consumer<Mesa> onClic;
+    private Consumer<Mesa> onMovida;
+    private BiConsumer<Mesa, Point2D> onSoltada;
+    private Consumer<Point2D> onArrastre;
+    private BiConsumer<Mesa, ContextMenuEvent> onMenu;
+
+    // Reloj compartido
+    private long inicioEntrada = -1;
+    private long inicioPulso = -1;
+    private int ocupadasPrevias;
+    private long ultimoCuadro;
+    private boolean sucio = true;
+    private boolean corriendo;
+    private int registro; // invalida el callback anterior al detener y volver a arrancar
+
+    public PlanoMesasCanvas(double tamMesa, double margen, double tamImagen) {
+        this.tamMesa = tamMesa;
+        this.margen = margen;
+        this.tamImagen = tamImagen;
+
+        widthProperty().addListener((o, a, b) -> solicitarCuadro());
+        heightProperty().addListener((o, a, b) -> solicitarCuadro());
+        sceneProperty().addListener((o, a, b) -> {
+            if (b == null) detener();
+            else solicitarCuadro();
+        });
+
+        setOnMouseMoved(this::alMover);
+        setOnMouseExited(e -> {
+            if (arrastrada == null) cambiarHover(null);
+        });
+        setOnMousePressed(this::alPresionar);
+        setOnMouseDragged(this::alArrastrar);
+        setOnMouseReleased(this::alSoltar);
+        setOnMouseClicked(this::alClic);
+        setOnContextMenuRequested(e -> {
+            Mesa m = mesaEn(e.getX(), e.getY());
+            if (m != null && modoEdicion && onMenu != null) {
+                onMenu.accept(m, e);
+                e.consume();
+            }
+        });
+    }
+
+    // ==================== CONFIGURACIÓN ====================
+
+    /** Reemplaza las mesas a dibujar y reproduce la entrada. */
+    public void setMesas(List<Mesa> mesas, boolean modoEdicion) {
+        this.mesas = mesas != null ? mesas : List.of();
+        this.modoEdicion = modoEdicion;
+        orden.clear();
+        for (int i = 0; i < this.mesas.size(); i++) {
+            orden.put(this.mesas.get(i).getId(), i);
+        }
+        hover = null;
+        arrastrada = null;
+        seleccionada = null;
+        rastro.clear();
+        inicioEntrada = -1;
+        inicioPulso = -1;
+        ocupadasPrevias = 0;
+        solicitarCuadro();
+    }
+
+    public void setImagenMesa(Image imagen) {
+        if (imagen != imagenMesa) {
+            imagenMesa = imagen;
+            spriteImagen = null;
+            solicitarCuadro();
+        }
+    }
+
+    /**
+     * Índice espacial del controlador para el hit-testing; sin él se recorren
+     * todas las mesas.
+     */
+    public void setIndice(IndiceEspacial indice) {
+        this.indice = indice;
+    }
+
+    public void setColision(Colision colision) {
+        this.colision = colision != null ? colision : (x, y, id) -> false;
+    }
+
+    /** Clic simple sobre una mesa (modo normal). */
+    public void setOnMesaClic(Consumer<Mesa> handler) {
+        this.onClic = handler;
+    }
+
+    /** Mesa reubicada por arrastre (modo edición), ya con la posición ajustada a la grilla. */
+    public void setOnMesaMovida(Consumer<Mesa> handler) {
+        this.onMovida = handler;
+    }
+
+    /** Mesa ocupada arrastrada y soltada en un punto (modo normal). */
+    public void setOnMesaSoltada(BiConsumer<Mesa, Point2D> handler) {
+        this.onSoltada = handler;
+    }
+
+    /** Posición del puntero mientras se arrastra para facturar; null al terminar. */
+    public void setOnArrastre(Consumer<Point2D> handler) {
+        this.onArrastre = handler;
+    }
+
+    /** Menú contextual sobre una mesa (modo edición). */
+    public void setOnMenuMesa(BiConsumer<Mesa, ContextMenuEvent> handler) {
+        this.onMenu = handler;
+    }
+
+    /** Mesa cuyo rectángulo contiene el punto (la de más arriba), o null. */
+    public Mesa mesaEn(double x, double y) {
+        if (indice != null && !(arrastrada != null && modoEdicion)) {
+            int mejor = -1;
+            for (Long id : indice.enPunto(x, y)) {
+                Integer pos = orden.get(id);
+                if (pos != null && pos > mejor) mejor = pos;
+            }
+            return mejor >= 0 ? mesas.get(mejor) : null;
+        }
+        for (int i = mesas.size() - 1; i >= 0; i--) {
+            Mesa m = mesas.get(i);
+            double mx = m == arrastrada && modoEdicion ? arrX : m.getPosicionX();
+            double my = m == arrastrada && modoEdicion ? arrY : m.getPosicionY();
+            if (x >= mx && x < mx + tamMesa && y >= my && y < my + tamMesa) {
+                return m;
+            }
+        }
+        return null;
+    }
+
+    /** Pequeño rebote de selección sobre una mesa. */
+    public void animarSeleccion(Mesa mesa) {
+        seleccionada = mesa;
+        inicioSeleccion = -1;
+        solicitarCuadro();
+    }
+
+    /** Fuerza un redibujo (p. ej. tras cambiar el estado de una mesa). */
+    public void solicitarCuadro() {
+        sucio = true;
+        if (!corriendo && getScene() != null) {
+            corriendo = true;
+            int actual = ++registro;
+            Animador.getInstance().alCuadro(this, ahora -> actual == registro && tick(ahora));
+        }
+    }
+
+    public void detener() {
+        corriendo = false;
+        registro++;
+    }
+
+    // ==================== EVENTOS ====================
+
+    private void alMover(MouseEvent e) {
+        cambiarHover(mesaEn(e.getX(), e.getY()));
+    }
+
+    private void cambiarHover(Mesa m) {
+        if (m != hover) {
+            hover = m;
+            setCursor(m != null ? Cursor.HAND : Cursor.DEFAULT);
+            solicitarCuadro();
+        }
+    }
+
+    private void alPresionar(MouseEvent e) {
+        if (e.getButton() != MouseButton.PRIMARY) return;
+        Mesa m = mesaEn(e.getX(), e.getY());
+        if (m == null) return;
+        arrastrada = m;
+        huboArrastre = false;
+        offX = e.getX() - m.getPosicionX();
+        offY = e.getY() - m.getPosicionY();
+        arrX = modoEdicion ? m.getPosicionX() : e.getX();
+        arrY = modoEdicion ? m.getPosicionY() : e.getY();
+        if (modoEdicion) setCursor(Cursor.CLOSED_HAND);
+        solicitarCuadro();
+    }
+
+    private void alArrastrar(MouseEvent e) {
+        if (arrastrada == null || e.getButton() != MouseButton.PRIMARY) return;
+
+        if (modoEdicion) {
+            double nx = limitar(e.getX() - offX, getWidth());
+            double ny = limitar(e.getY() - offY, getHeight());
+            if (!colision.hay(nx, ny, arrastrada.getId())) {
+                arrX = nx;
+                arrY = ny;
+                huboArrastre = true;
+                agregarRastro(nx + tamMesa / 2, ny + tamMesa / 2);
+            }
+        } else if (arrastrada.isOcupada()) {
+            // Solo las ocupadas se arrastran a la zona de facturación
+            if (!huboArrastre) setCursor(Cursor.CLOSED_HAND);
+            huboArrastre = true;
+            arrX = e.getX();
+            arrY = e.getY();
+            if (onArrastre != null) onArrastre.accept(new Point2D(arrX, arrY));
+        }
+        solicitarCuadro();
+    }
+
+    private void alSoltar(MouseEvent e) {
+        Mesa m = arrastrada;
+        boolean movio = huboArrastre;
+        arrastrada = null;
+        huboArrastre = false;
+        if (m == null) return;
+        setCursor(hover != null ? Cursor.HAND : Cursor.DEFAULT);
+
+        if (movio && modoEdicion) {
+            double fx = IndiceEspacial.ajustar(arrX, 10);
+            double fy = IndiceEspacial.ajustar(arrY, 10);
+            if (colision.hay(fx, fy, m.getId())) {
+                fx = arrX; // el punto de la grilla choca: se queda donde se soltó
+                fy = arrY;
+            }
+            m.actualizarPosicion(fx, fy);
+            if (onMovida != null) onMovida.accept(m);
+        } else if (movio) {
+            if (onArrastre != null) onArrastre.accept(null);
+            if (onSoltada != null) onSoltada.accept(m, new Point2D(e.getX(), e.getY()));
+        }
+        solicitarCuadro();
+    }
+
+    private void alClic(MouseEvent e) {
+        if (modoEdicion || e.getButton() != MouseButton.PRIMARY
+                || e.getClickCount() != 1 || !e.isStillSincePress()) {
+            return;
+        }
+        Mesa m = mesaEn(e.getX(), e.getY());
+        if (m != null && onClic != null) onClic.accept(m);
+    }
+
+    private double limitar(double v, double max) {
+        return Math.max(margen, Math.min(v, max - tamMesa - margen));
+    }
+
+    private void agregarRastro(double x, double y) {
+        if (rastro.size() >= MAX_RASTRO) rastro.pollFirst();
+        rastro.addLast(new double[]{x, y, -1});
+    }
+
+    // ==================== RELOJ Y DIBUJO ====================
+
+    /** Un cuadro del reloj compartido; false para soltarlo. */
+    private boolean tick(long ahora) {
+        if (inicioEntrada < 0) inicioEntrada = ahora;
+        if (seleccionada != null && inicioSeleccion < 0) inicioSeleccion = ahora;
+        for (double[] r : rastro) {
+            if (r[2] < 0) r[2] = ahora;
+        }
+        while (!rastro.isEmpty() && ahora - (long) rastro.peekFirst()[2] > NANOS_RASTRO) {
+            rastro.pollFirst();
+        }
+        if (seleccionada != null && ahora - inicioSeleccion > NANOS_SELECCION) {
+            seleccionada = null;
+            sucio = true;
+        }
+
+        boolean entrando = ahora - inicioEntrada < NANOS_ENTRADA;
+        int ocupadas = modoEdicion ? 0 : contarOcupadas();
+        if (ocupadas > ocupadasPrevias) inicioPulso = ahora; // alguna pasó a ocupada
+        ocupadasPrevias = ocupadas;
+        boolean pulsando = pulsando(ahora);
+        if (!pulsando && inicioPulso >= 0) {
+            inicioPulso = -1;
+            sucio = true; // último cuadro con el indicador en reposo
+        }
+        boolean animando = entrando || seleccionada != null || !rastro.isEmpty();
+
+        if (sucio || animando || (pulsando && ahora - ultimoCuadro >= NANOS_CUADRO_PULSO)) {
+            dibujar(ahora);
+            ultimoCuadro = ahora;
+            sucio = false;
+        }
+        if (!animando && !pulsando && !sucio) {
+            detener();
+        }
+        return corriendo;
+    }
+
+    private int contarOcupadas() {
+        int n = 0;
+        for (Mesa m : mesas) {
+            if (m.isOcupada()) n++;
+        }
+        return n;
+    }
+
+    private boolean pulsando(long ahora) {
+        return inicioPulso >= 0 && ahora - inicioPulso < CICLOS_PULSO * 2 * NANOS_PULSO;
+    }
+
+    private void dibujar(long ahora) {
+        prepararSprites();
+        GraphicsContext g = getGraphicsContext2D();
+        g.setGlobalAlpha(1.0);
+        g.clearRect(0, 0, getWidth(), getHeight());
+
+        // Rastro del arrastre en edición
+        for (double[] r : rastro) {
+            double t = r[2] < 0 ? 0 : (ahora - r[2]) / (double) NANOS_RASTRO;
+            g.setGlobalAlpha(Math.max(0, 0.4 * (1 - t)));
+            g.setFill(Color.rgb(255, 193, 7));
+            g.fillOval(r[0] - 5, r[1] - 5, 10, 10);
+        }
+
+        double entrada = Math.min(1.0, (ahora - inicioEntrada) / (double) NANOS_ENTRADA);
+        double pulso = !pulsando(ahora) ? 1.0
+                : 1.0 + 0.3 * (0.5 - 0.5 * Math.cos(2 * Math.PI * ((ahora - inicioPulso) / (double) (2 * NANOS_PULSO))));
+
+        for (Mesa m : mesas) {
+            if (m == arrastrada && modoEdicion) continue; // se dibuja al final, encima
+            double esc = m == hover ? 1.08 : 1.0;
+            if (m == seleccionada) {
+                double t = (ahora - inicioSeleccion) / (double) NANOS_SELECCION;
+                esc = 1.0 + 0.15 * (t < 0.5 ? t * 2 : (1 - t) * 2);
+            }
+            double alfa = entrada * (m == arrastrada && huboArrastre ? 0.6 : 1.0);
+            dibujarMesa(g, m, m.getPosicionX(), m.getPosicionY(), entrada * esc, alfa, m == hover, pulso);
+        }
+
+        if (arrastrada != null && huboArrastre) {
+            if (modoEdicion) {
+                dibujarMesa(g, arrastrada, arrX, arrY, 1.12, 0.85, true, 1.0);
+            } else {
+                // Fantasma bajo el puntero camino a la zona de facturación
+                dibujarMesa(g, arrastrada, arrX - tamMesa / 2, arrY - tamMesa / 2, 0.8, 0.5, true, 1.0);
+            }
+        }
+        g.setGlobalAlpha(1.0);
+    }
+
+    private void dibujarMesa(GraphicsContext g, Mesa m, double x, double y,
+                             double esc, double alfa, boolean elevada, double pulso) {
+        if (esc <= 0 || alfa <= 0) return;
+        Estado estado = modoEdicion ? Estado.EDICION : m.isOcupada() ? Estado.OCUPADA : Estado.LIBRE;
+        double cx = x + tamMesa / 2;
+        double cy = y + tamMesa / 2;
+
+        g.setGlobalAlpha(alfa);
+        dibujarSprite(g, (elevada ? fondosElevados : fondos).get(estado), cx, cy, esc);
+        if (estado == Estado.OCUPADA && spriteIndicador != null) {
+            dibujarSprite(g, spriteIndicador, cx + 30 * esc, cy - 30 * esc, esc * pulso);
+        }
+        if (spriteImagen != null) {
+            dibujarSprite(g, spriteImagen, cx, cy, esc);
+        }
+        Sprite etiqueta = etiqueta(m.getIdentificador());
+        if (etiqueta != null) {
+            dibujarSprite(g, etiqueta, cx, cy + 30 * esc, esc);
+        }
+    }
+
+    /** Dibuja el sprite con su ancla en (cx, cy), escalado alrededor de ella. */
+    private static void dibujarSprite(GraphicsContext g, Sprite s, double cx, double cy, double esc) {
+        if (s == null) return;
+        g.drawImage(s.img, cx + s.dx * esc, cy + s.dy * esc, s.ancho * esc, s.alto * esc);
+    }
+
+    // ==================== SPRITES ====================
+
+    private void prepararSprites() {
+        double actual = escalaPantalla();
+        if (actual != escala) {
+            escala = actual;
+            fondos.clear();
+            fondosElevados.clear();
+            etiquetas.clear();
+            spriteImagen = null;
+            spriteIndicador = null;
+        }
+        if (fondos.isEmpty()) {
+            for (Estado e : Estado.values()) {
+                fondos.put(e, spriteFondo(e, 8, 3));
+                fondosElevados.put(e, spriteFondo(e, 15, 6));
+            }
+        }
+        if (spriteIndicador == null) {
+            Circle indicador = new Circle(6, Color.web("#dc3545"));
+            DropShadow glow = new DropShadow();
+            glow.setColor(Color.web("#dc3545"));
+            glow.setRadius(10);
+            indicador.setEffect(glow);
+            spriteIndicador = capturar(indicador);
+        }
+        if (spriteImagen == null && imagenMesa != null) {
+            ImageView vista = new ImageView(imagenMesa);
+            vista.setFitWidth(tamImagen);
+            vista.setFitHeight(tamImagen);
+            vista.setPreserveRatio(true);
+            ColorAdjust ajuste = new ColorAdjust();
+            ajuste.setBrightness(0.1);
+            vista.setEffect(ajuste);
+            spriteImagen = capturar(vista);
+        }
+    }
+
+    private Sprite spriteFondo(Estado estado, double radioSombra, double offsetSombra) {
+        Rectangle fondo = new Rectangle(tamMesa, tamMesa);
+        fondo.setArcWidth(15);
+        fondo.setArcHeight(15);
+        switch (estado) {
+            case EDICION -> {
+                fondo.setFill(Color.web("#fff3cd"));
+                fondo.setStroke(Color.web("#ffc107"));
+            }
+            case OCUPADA -> {
+                fondo.setFill(Color.web("#f8d7da"));
+                fondo.setStroke(Color.web("#dc3545"));
+            }
+            default -> {
+                fondo.setFill(Color.web("#d4edda"));
+                fondo.setStroke(Color.web("#28a745"));
+            }
+        }
+        fondo.setStrokeWidth(3);
+        DropShadow sombra = new DropShadow();
+        sombra.setRadius(radioSombra);
+        sombra.setOffsetY(offsetSombra);
+        sombra.setColor(Color.rgb(0, 0, 0, 0.2));
+        fondo.setEffect(sombra);
+        return capturar(fondo);
+    }
+
+    private Sprite etiqueta(String texto) {
+        if (texto == null) return null;
+        return etiquetas.computeIfAbsent(texto, t -> {
+            Label lbl = new Label(t);
+            lbl.setFont(Font.font("System", FontWeight.BOLD, 13));
+            lbl.setStyle(
+                    "-fx-background-color: white; "
+                    + "-fx-padding: 4 10; "
+                    + "-fx-background-radius: 10; "
+                    + "-fx-border-color: #333; "
+                    + "-fx-border-width: 1.5; "
+                    + "-fx-border-radius: 10; "
+                    + "-fx-effect: dropshadow(gaussian, rgba(0,0,0,0.15), 3, 0, 0, 1);"
+            );
+            return capturar(lbl);
+        });
+    }
+
+    /**
+     * Snapshot del nodo a la escala de la pantalla, anclado en el centro de
+     * su contenido (sin contar sombras ni efectos).
+     */
+    private Sprite capturar(Node nodo) {
+        new Scene(new Group(nodo)); // CSS y layout para controles sueltos
+        nodo.applyCss();
+        if (nodo instanceof Parent p) {
+            p.layout();
+            p.resize(p.prefWidth(-1), p.prefHeight(-1));
+            p.layout();
+        }
+        Bounds efecto = nodo.getBoundsInParent();
+        Bounds contenido = nodo.getLayoutBounds();
+
+        SnapshotParameters params = new SnapshotParameters();
+        params.setFill(Color.TRANSPARENT);
+        params.setTransform(Transform.scale(escala, escala));
+        WritableImage img = nodo.snapshot(params, null);
+
+        double cx = contenido.getMinX() + nodo.getLayoutX() + contenido.getWidth() / 2;
+        double cy = contenido.getMinY() + nodo.getLayoutY() + contenido.getHeight() / 2;
+        return new Sprite(img, efecto.getMinX() - cx, efecto.getMinY() - cy,
+                efecto.getWidth(), efecto.getHeight());
+    }
+
+    private static double escalaPantalla() {
+        try {
+            return Math.max(1.0, Screen.getPrimary().getOutputScaleX());
+        } catch (Exception e) {
+            return 1.0;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package cr.ac.una.restunaclient.util;
+
+/**
+ * Lectura de la configuración por propiedades del sistema (-Drestuna.*).
+ * Un valor ausente o mal escrito usa el valor por defecto.
+ */
+public final class Propiedades {
+
+    private Propiedades() {}
+
+    public static int intProp(String key, int def) {
+        try {
+            return Integer.parseInt(System.getProperty(key, String.valueOf(def)).trim());
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+
+    public static long longProp(String key, long def) {
+        try {
+            return Long.parseLong(System.getProperty(key, String.valueOf(def)).trim());
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+}
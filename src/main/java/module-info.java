@@ -15,6 +15,7 @@ module cr.ac.una.restunaclient {
     requires java.base;
     requires java.desktop;
     requires org.apache.pdfbox;
+    requires org.apache.pdfbox.io;
     requires org.apache.fontbox;
           
     